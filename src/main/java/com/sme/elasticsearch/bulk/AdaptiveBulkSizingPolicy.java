@@ -0,0 +1,367 @@
+package com.sme.elasticsearch.bulk;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.rest.RestStatus;
+
+/**
+ * <p>
+ * Tunes the number of actions in a bulk request and the number of bulk requests in flight by feedback of completed bulk requests.
+ * </p>
+ * Completed bulk requests are collected into windows, every window is evaluated once:
+ * <ul>
+ * <li>rejected items (429) or failed bulk requests halve the bulk size and decrease the concurrency by one (multiplicative decrease);</li>
+ * <li>the server side time ({@link BulkResponse#getTook()}) above the target decreases the bulk size by a quarter;</li>
+ * <li>otherwise the bulk size climbs to the best throughput: it keeps the direction while the throughput grows and turns back when it falls;</li>
+ * <li>the concurrency is increased by one on a throughput plateau and reverted when the additional request does not help (additive increase).</li>
+ * </ul>
+ * Rejections and reverted increases cap the concurrency, the cap is raised by one after every {@value #RECOVERY_WINDOWS} windows without rejections,
+ * so the concurrency is probed again after the cluster recovers. The first window after rejections only measures the new baseline of throughput.
+ * The throughput of a window is the number of accepted documents per second of bulk latency multiplied by the concurrency.
+ * Decisions are kept in a bounded log, see {@link #getDecisions()}.
+ */
+public class AdaptiveBulkSizingPolicy implements BulkSizingPolicy
+{
+    private static final Logger LOGGER = LogManager.getLogger(AdaptiveBulkSizingPolicy.class);
+
+    private static final double TOLERANCE = 0.05d;
+    private static final int MAX_DECISIONS = 100;
+    private static final int RECOVERY_WINDOWS = 10;
+
+    private final int minActions;
+    private final int maxActions;
+    private final int maxConcurrentRequests;
+    private final long targetTookMillis;
+    private final int windowSize;
+
+    private volatile int bulkActions;
+    private volatile int concurrentRequests;
+
+    // guarded by this
+    private int concurrencyCeiling;
+    private boolean growing = true;
+    private Reason lastReason;
+    private double lastThroughput;
+    private boolean hasBaseline;
+    private int cleanWindows;
+    private int windowBulks;
+    private long windowActions;
+    private long windowRejected;
+    private int windowFailures;
+    private long windowLatencyNanos;
+    private long windowTookMillis;
+    private final Deque<Decision> decisions = new ArrayDeque<>();
+
+    /**
+     * Create policy.
+     *
+     * @param initialActions The initial number of actions;
+     * @param minActions The minimum number of actions;
+     * @param maxActions The maximum number of actions;
+     * @param maxConcurrentRequests The maximum number of bulk requests in flight, the policy starts with one request;
+     * @param targetTookMillis The acceptable server side time of a bulk request;
+     * @param windowSize The number of bulk requests to evaluate at once.
+     */
+    public AdaptiveBulkSizingPolicy(int initialActions, int minActions, int maxActions, int maxConcurrentRequests, long targetTookMillis, int windowSize)
+    {
+        if (minActions < 1 || minActions > initialActions || initialActions > maxActions || maxConcurrentRequests < 1 || windowSize < 1)
+        {
+            throw new IllegalArgumentException("Expects 1 <= minActions <= initialActions <= maxActions, positive concurrency and window");
+        }
+
+        this.minActions = minActions;
+        this.maxActions = maxActions;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.targetTookMillis = targetTookMillis;
+        this.windowSize = windowSize;
+        this.bulkActions = initialActions;
+        this.concurrentRequests = 1;
+        this.concurrencyCeiling = maxConcurrentRequests;
+    }
+
+    @Override
+    public int bulkActions()
+    {
+        return bulkActions;
+    }
+
+    @Override
+    public int concurrentRequests()
+    {
+        return concurrentRequests;
+    }
+
+    @Override
+    public synchronized void onResponse(int actions, long latencyNanos, BulkResponse response)
+    {
+        long rejected = 0;
+        if (response.hasFailures())
+        {
+            for (BulkItemResponse item : response.getItems())
+            {
+                if (item.isFailed() && item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS)
+                {
+                    rejected++;
+                }
+            }
+        }
+
+        windowBulks++;
+        windowActions += actions;
+        windowRejected += rejected;
+        windowLatencyNanos += latencyNanos;
+        windowTookMillis += response.getTook().millis();
+        evaluateIfFull();
+    }
+
+    @Override
+    public synchronized void onFailure(int actions, long latencyNanos, Exception failure)
+    {
+        windowBulks++;
+        windowActions += actions;
+        windowLatencyNanos += latencyNanos;
+        if (ExceptionsHelper.status(failure) == RestStatus.TOO_MANY_REQUESTS)
+        {
+            windowRejected += actions;
+        }
+        else
+        {
+            windowFailures++;
+        }
+        evaluateIfFull();
+    }
+
+    /**
+     * Get the last decisions, the oldest decision goes first.
+     *
+     * @return Returns copy of decisions.
+     */
+    public synchronized List<Decision> getDecisions()
+    {
+        return new ArrayList<>(decisions);
+    }
+
+    private void evaluateIfFull()
+    {
+        // A failed bulk request is evaluated at once to back off without waiting for the whole window
+        if (windowBulks < windowSize && windowRejected == 0 && windowFailures == 0)
+        {
+            return;
+        }
+
+        double latencySeconds = Math.max(1L, windowLatencyNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        double throughput = (windowActions - windowRejected) / latencySeconds * concurrentRequests;
+        double rejectionRate = windowActions == 0 ? 0d : windowRejected / (double) windowActions;
+        long avgLatencyMillis = TimeUnit.NANOSECONDS.toMillis(windowLatencyNanos / windowBulks);
+        long avgTookMillis = windowTookMillis / windowBulks;
+
+        boolean rejectedWindow = windowRejected > 0 || windowFailures > 0;
+        if (!rejectedWindow && ++cleanWindows >= RECOVERY_WINDOWS && concurrencyCeiling < maxConcurrentRequests)
+        {
+            // The cluster could recover since the last rejection or plateau
+            concurrencyCeiling++;
+            cleanWindows = 0;
+        }
+
+        Reason reason;
+        if (rejectedWindow)
+        {
+            reason = Reason.REJECTED;
+            bulkActions = Math.max(minActions, bulkActions / 2);
+            concurrentRequests = Math.max(1, concurrentRequests - 1);
+            concurrencyCeiling = Math.max(1, concurrentRequests);
+            growing = false;
+            cleanWindows = 0;
+        }
+        else if (avgTookMillis > targetTookMillis)
+        {
+            reason = Reason.SLOW;
+            bulkActions = Math.max(minActions, bulkActions * 3 / 4);
+            growing = false;
+        }
+        else if (!hasBaseline)
+        {
+            // Throughput under rejections is not comparable with the next window
+            reason = Reason.KEEP;
+        }
+        else if (lastReason == Reason.MORE_CONCURRENCY && throughput < lastThroughput * (1d + TOLERANCE))
+        {
+            reason = Reason.LESS_CONCURRENCY;
+            concurrentRequests--;
+            concurrencyCeiling = concurrentRequests;
+            cleanWindows = 0;
+        }
+        else if (throughput > lastThroughput * (1d + TOLERANCE))
+        {
+            reason = growing ? Reason.GROW : Reason.SHRINK;
+            step();
+        }
+        else if (throughput < lastThroughput * (1d - TOLERANCE))
+        {
+            growing = !growing;
+            reason = growing ? Reason.GROW : Reason.SHRINK;
+            step();
+        }
+        else if (concurrentRequests < Math.min(concurrencyCeiling, maxConcurrentRequests))
+        {
+            reason = Reason.MORE_CONCURRENCY;
+            concurrentRequests++;
+        }
+        else
+        {
+            reason = Reason.KEEP;
+        }
+
+        lastReason = reason;
+        lastThroughput = throughput;
+        hasBaseline = !rejectedWindow;
+        record(new Decision(System.currentTimeMillis(), reason, bulkActions, concurrentRequests, throughput, avgLatencyMillis, avgTookMillis, rejectionRate));
+
+        windowBulks = 0;
+        windowActions = 0;
+        windowRejected = 0;
+        windowFailures = 0;
+        windowLatencyNanos = 0;
+        windowTookMillis = 0;
+    }
+
+    private void step()
+    {
+        bulkActions = growing
+            ? Math.min(maxActions, Math.max(bulkActions + 1, bulkActions * 5 / 4))
+            : Math.max(minActions, bulkActions * 4 / 5);
+    }
+
+    private void record(Decision decision)
+    {
+        if (decisions.size() == MAX_DECISIONS)
+        {
+            decisions.removeFirst();
+        }
+        decisions.addLast(decision);
+        LOGGER.debug("Bulk sizing decision {}", decision);
+    }
+
+    /**
+     * The reason of a decision.
+     */
+    public enum Reason
+    {
+        /** Bulk size is increased after better throughput. */
+        GROW,
+        /** Bulk size is decreased after better throughput. */
+        SHRINK,
+        /** Bulk size is decreased after the server side time above the target. */
+        SLOW,
+        /** Bulk size and concurrency are decreased after rejected items or failed requests. */
+        REJECTED,
+        /** Concurrency is increased on a throughput plateau. */
+        MORE_CONCURRENCY,
+        /** Concurrency increase is reverted because the throughput did not grow. */
+        LESS_CONCURRENCY,
+        /** Nothing is changed. */
+        KEEP
+    }
+
+    /**
+     * The decision made after evaluation of a window.
+     */
+    public static final class Decision
+    {
+        private final long timestamp;
+        private final Reason reason;
+        private final int bulkActions;
+        private final int concurrentRequests;
+        private final double throughput;
+        private final long avgLatencyMillis;
+        private final long avgTookMillis;
+        private final double rejectionRate;
+
+        Decision(long timestamp, Reason reason, int bulkActions, int concurrentRequests, double throughput, long avgLatencyMillis, long avgTookMillis, double rejectionRate)
+        {
+            this.timestamp = timestamp;
+            this.reason = reason;
+            this.bulkActions = bulkActions;
+            this.concurrentRequests = concurrentRequests;
+            this.throughput = throughput;
+            this.avgLatencyMillis = avgLatencyMillis;
+            this.avgTookMillis = avgTookMillis;
+            this.rejectionRate = rejectionRate;
+        }
+
+        public long getTimestamp()
+        {
+            return timestamp;
+        }
+
+        public Reason getReason()
+        {
+            return reason;
+        }
+
+        /**
+         * The number of actions chosen for the next bulk requests.
+         */
+        public int getBulkActions()
+        {
+            return bulkActions;
+        }
+
+        /**
+         * The concurrency chosen for the next bulk requests.
+         */
+        public int getConcurrentRequests()
+        {
+            return concurrentRequests;
+        }
+
+        /**
+         * The measured documents per second of the evaluated window.
+         */
+        public double getThroughput()
+        {
+            return throughput;
+        }
+
+        public long getAvgLatencyMillis()
+        {
+            return avgLatencyMillis;
+        }
+
+        public long getAvgTookMillis()
+        {
+            return avgTookMillis;
+        }
+
+        public double getRejectionRate()
+        {
+            return rejectionRate;
+        }
+
+        @Override
+        public String toString()
+        {
+            return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                    .append("timestamp", timestamp)
+                    .append("reason", reason)
+                    .append("bulkActions", bulkActions)
+                    .append("concurrentRequests", concurrentRequests)
+                    .append("throughput", throughput)
+                    .append("avgLatencyMillis", avgLatencyMillis)
+                    .append("avgTookMillis", avgTookMillis)
+                    .append("rejectionRate", rejectionRate)
+                    .toString();
+        }
+    }
+}
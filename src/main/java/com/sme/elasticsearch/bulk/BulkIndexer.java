@@ -0,0 +1,522 @@
+package com.sme.elasticsearch.bulk;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesReference;
+
+import com.sme.elasticsearch.model.BaseEntity;
+
+import util.ObjectMapperUtil;
+import util.WireFormat;
+
+/**
+ * <p>
+ * Collects index, update and delete requests into bulk requests and executes them asynchronously.
+ * </p>
+ * A bulk request is flushed when it reaches the number of actions, the size in bytes or the flush interval of {@link BulkIndexerSettings}.
+ * The number of bulk requests in flight is limited by {@link BulkIndexerSettings#getConcurrentRequests()},
+ * both limits can be tuned at runtime by {@link BulkSizingPolicy},
+ * a producer thread is blocked until a running bulk request is completed when the limit is reached, so requests are never buffered without limit.
+ * <p>
+ * Unchanged entities are dropped before they reach a bulk request when {@link ContentHashFilter} is configured,
+ * hashes of indexed items are acknowledged in the filter.
+ * Written indices are invalidated in {@link com.sme.elasticsearch.search.SearchResultCache} when it is configured.
+ * </p>
+ * <p>
+ * Results of bulk requests are reported to {@link BulkProcessor.Listener}, the listener is called by http client threads,
+ * so it must not block and must not close the indexer.
+ * </p>
+ */
+public class BulkIndexer implements Closeable
+{
+    private static final Logger LOGGER = LogManager.getLogger(BulkIndexer.class);
+
+    private final BiConsumer<BulkRequest, ActionListener<BulkResponse>> consumer;
+    private final BulkIndexerSettings settings;
+    private final BulkProcessor.Listener listener;
+    private final BulkSizingPolicy sizingPolicy;
+    private final ScheduledExecutorService scheduler;
+    private final ScheduledFuture<?> flushTask;
+    private final AtomicLong executionIdGenerator = new AtomicLong();
+
+    private final ReentrantLock inFlightLock = new ReentrantLock();
+    private final Condition inFlightReleased = inFlightLock.newCondition();
+    private int inFlight;
+    // Taken and not completed bulk requests, counted under the monitor which takes them
+    private int pending;
+
+    // guarded by this
+    private BulkRequest bulkRequest;
+    private volatile boolean closed;
+
+    /**
+     * Create indexer to execute bulk requests by the given client.
+     *
+     * @param client The rest client;
+     * @param settings The settings of indexer;
+     * @param listener The listener of bulk executions.
+     */
+    public BulkIndexer(RestHighLevelClient client, BulkIndexerSettings settings, BulkProcessor.Listener listener)
+    {
+        this((request, bulkListener) -> client.bulkAsync(request, RequestOptions.DEFAULT, bulkListener), settings, listener);
+    }
+
+    /**
+     * Create indexer to execute bulk requests by the given consumer, like {@link BulkProcessor#builder(BiConsumer, BulkProcessor.Listener)} does.
+     *
+     * @param consumer The asynchronous executor of bulk requests;
+     * @param settings The settings of indexer;
+     * @param listener The listener of bulk executions.
+     */
+    public BulkIndexer(BiConsumer<BulkRequest, ActionListener<BulkResponse>> consumer, BulkIndexerSettings settings, BulkProcessor.Listener listener)
+    {
+        if (settings.getConcurrentRequests() < 1)
+        {
+            throw new IllegalArgumentException("Expects at least one concurrent request");
+        }
+
+        this.consumer = consumer;
+        this.settings = settings;
+        this.listener = listener;
+        this.sizingPolicy = settings.getSizingPolicy() != null
+            ? settings.getSizingPolicy()
+            : new FixedBulkSizingPolicy(settings.getBulkActions(), settings.getConcurrentRequests());
+        this.bulkRequest = newBulkRequest();
+
+        if (settings.getFlushIntervalMillis() > 0)
+        {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+            {
+                Thread thread = new Thread(runnable, "bulk-indexer-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.flushTask = scheduler.scheduleWithFixedDelay(this::flushSafely,
+                    settings.getFlushIntervalMillis(),
+                    settings.getFlushIntervalMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+        else
+        {
+            this.scheduler = null;
+            this.flushTask = null;
+        }
+    }
+
+    /**
+     * Index the given entity with its id.
+     *
+     * @param <T> The type of entity;
+     * @param index The index name;
+     * @param entity The entity to index.
+     */
+    public <T extends BaseEntity> void index(String index, T entity)
+    {
+        WireFormat wireFormat = settings.getWireFormat();
+        BytesReference source = ObjectMapperUtil.serializeToBytes(entity, wireFormat);
+        ContentHashFilter filter = settings.getContentHashFilter();
+        if (filter != null)
+        {
+            // Hashes are kept of the canonical json form whatever the wire format is
+            BytesReference json = wireFormat == WireFormat.JSON ? source : ObjectMapperUtil.serializeToBytes(entity, WireFormat.JSON);
+            if (!filter.isChanged(index, entity.getId(), json))
+            {
+                return;
+            }
+        }
+
+        try
+        {
+            add(new IndexRequest(index)
+                    .id(String.valueOf(entity.getId()))
+                    .source(source, wireFormat.xContentType()));
+        }
+        catch (RuntimeException e)
+        {
+            // A rejected entity is not unchanged next time
+            if (filter != null)
+            {
+                filter.forget(index, String.valueOf(entity.getId()));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Add the given request, a full bulk request is executed by the calling thread.
+     *
+     * @param request The index, update or delete request.
+     */
+    public void add(DocWriteRequest<?> request)
+    {
+        if (request.opType() == DocWriteRequest.OpType.DELETE && settings.getContentHashFilter() != null)
+        {
+            settings.getContentHashFilter().forget(request.index(), request.id());
+        }
+
+        BulkRequest fullRequest = null;
+        synchronized (this)
+        {
+            ensureOpen();
+            bulkRequest.add(request);
+            if (isFull(bulkRequest))
+            {
+                fullRequest = takeBulkRequest();
+            }
+        }
+
+        if (fullRequest != null)
+        {
+            execute(fullRequest);
+        }
+    }
+
+    /**
+     * Execute collected requests.
+     */
+    public void flush()
+    {
+        BulkRequest request;
+        synchronized (this)
+        {
+            if (bulkRequest.numberOfActions() == 0)
+            {
+                return;
+            }
+            request = takeBulkRequest();
+        }
+
+        execute(request);
+    }
+
+    /**
+     * Flush collected requests and wait until all bulk requests, including requests taken by a running flush, are completed.
+     *
+     * @param timeout The maximum time to wait;
+     * @param unit The time unit of timeout;
+     * @return Returns true if all bulk requests are completed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        BulkRequest request = null;
+        boolean closing = false;
+        synchronized (this)
+        {
+            // Closed under the same monitor as add(), so no request is added after the final flush
+            if (!closed)
+            {
+                closed = true;
+                closing = true;
+                if (bulkRequest.numberOfActions() > 0)
+                {
+                    request = takeBulkRequest();
+                }
+            }
+        }
+
+        if (closing)
+        {
+            if (flushTask != null)
+            {
+                flushTask.cancel(false);
+                scheduler.shutdown();
+            }
+            if (request != null)
+            {
+                execute(request);
+            }
+        }
+
+        // A running flush may have taken a bulk request just before the close
+        if (scheduler != null && !scheduler.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS))
+        {
+            return false;
+        }
+
+        long nanos = deadline - System.nanoTime();
+        inFlightLock.lock();
+        try
+        {
+            while (pending > 0)
+            {
+                if (nanos <= 0)
+                {
+                    return false;
+                }
+                nanos = inFlightReleased.awaitNanos(nanos);
+            }
+            return true;
+        }
+        finally
+        {
+            inFlightLock.unlock();
+        }
+    }
+
+    /**
+     * Flush collected requests and wait until all bulk requests are completed.
+     */
+    @Override
+    public void close()
+    {
+        try
+        {
+            awaitClose(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the number of bulk requests in flight.
+     *
+     * @return Returns the number of executed bulk requests.
+     */
+    public int getInFlight()
+    {
+        inFlightLock.lock();
+        try
+        {
+            return inFlight;
+        }
+        finally
+        {
+            inFlightLock.unlock();
+        }
+    }
+
+    private void execute(BulkRequest request)
+    {
+        long executionId = executionIdGenerator.incrementAndGet();
+        try
+        {
+            acquire();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while waiting for a bulk request in flight", e);
+            try
+            {
+                listener.afterBulk(executionId, request, e);
+            }
+            finally
+            {
+                completePending();
+            }
+            return;
+        }
+
+        listener.beforeBulk(executionId, request);
+        long startTime = System.nanoTime();
+        try
+        {
+            consumer.accept(request, new ActionListener<BulkResponse>()
+            {
+                @Override
+                public void onResponse(BulkResponse response)
+                {
+                    try
+                    {
+                        sizingPolicy.onResponse(request.numberOfActions(), System.nanoTime() - startTime, response);
+                        acknowledge(request, response);
+                        invalidate(request);
+                        listener.afterBulk(executionId, request, response);
+                    }
+                    finally
+                    {
+                        release();
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e)
+                {
+                    try
+                    {
+                        sizingPolicy.onFailure(request.numberOfActions(), System.nanoTime() - startTime, e);
+                        forgetAll(request);
+                        // A failed request could write some documents
+                        invalidate(request);
+                        listener.afterBulk(executionId, request, e);
+                    }
+                    finally
+                    {
+                        release();
+                    }
+                }
+            });
+        }
+        catch (RuntimeException e)
+        {
+            try
+            {
+                listener.afterBulk(executionId, request, e);
+            }
+            finally
+            {
+                release();
+            }
+        }
+    }
+
+    // Failed documents are indexed again next time even if they are not changed,
+    // items are matched by position, because a response has the concrete index of an alias
+    private void acknowledge(BulkRequest request, BulkResponse response)
+    {
+        ContentHashFilter filter = settings.getContentHashFilter();
+        if (filter != null)
+        {
+            BulkItemResponse[] items = response.getItems();
+            for (int i = 0; i < items.length; i++)
+            {
+                DocWriteRequest<?> itemRequest = request.requests().get(i);
+                if (items[i].isFailed())
+                {
+                    filter.forget(itemRequest.index(), itemRequest.id());
+                }
+                else
+                {
+                    filter.acknowledge(itemRequest.index(), itemRequest.id());
+                }
+            }
+        }
+    }
+
+    private void forgetAll(BulkRequest request)
+    {
+        ContentHashFilter filter = settings.getContentHashFilter();
+        if (filter != null)
+        {
+            for (DocWriteRequest<?> itemRequest : request.requests())
+            {
+                filter.forget(itemRequest.index(), itemRequest.id());
+            }
+        }
+    }
+
+    private void invalidate(BulkRequest request)
+    {
+        if (settings.getSearchResultCache() != null)
+        {
+            settings.getSearchResultCache().invalidate(request);
+        }
+    }
+
+    private void acquire() throws InterruptedException
+    {
+        inFlightLock.lockInterruptibly();
+        try
+        {
+            while (inFlight >= sizingPolicy.concurrentRequests())
+            {
+                inFlightReleased.await();
+            }
+            inFlight++;
+        }
+        finally
+        {
+            inFlightLock.unlock();
+        }
+    }
+
+    private void release()
+    {
+        inFlightLock.lock();
+        try
+        {
+            inFlight--;
+            pending--;
+            inFlightReleased.signalAll();
+        }
+        finally
+        {
+            inFlightLock.unlock();
+        }
+    }
+
+    private void completePending()
+    {
+        inFlightLock.lock();
+        try
+        {
+            pending--;
+            inFlightReleased.signalAll();
+        }
+        finally
+        {
+            inFlightLock.unlock();
+        }
+    }
+
+    // guarded by this
+    private BulkRequest takeBulkRequest()
+    {
+        BulkRequest request = bulkRequest;
+        bulkRequest = newBulkRequest();
+        inFlightLock.lock();
+        try
+        {
+            pending++;
+        }
+        finally
+        {
+            inFlightLock.unlock();
+        }
+        return request;
+    }
+
+    private void flushSafely()
+    {
+        try
+        {
+            flush();
+        }
+        catch (RuntimeException e)
+        {
+            LOGGER.error("Cannot flush bulk request", e);
+        }
+    }
+
+    private boolean isFull(BulkRequest request)
+    {
+        return request.numberOfActions() >= sizingPolicy.bulkActions()
+            || request.estimatedSizeInBytes() >= settings.getBulkSizeInBytes();
+    }
+
+    private BulkRequest newBulkRequest()
+    {
+        return new BulkRequest().setRefreshPolicy(settings.getRefreshPolicy());
+    }
+
+    private void ensureOpen()
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("Bulk indexer is closed");
+        }
+    }
+}
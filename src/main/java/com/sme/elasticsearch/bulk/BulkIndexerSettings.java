@@ -0,0 +1,157 @@
+package com.sme.elasticsearch.bulk;
+
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+
+import com.sme.elasticsearch.search.SearchResultCache;
+
+import util.WireFormat;
+
+/**
+ * Settings of {@link BulkIndexer}.
+ */
+public class BulkIndexerSettings
+{
+    private int bulkActions = 1000;
+    private long bulkSizeInBytes = 5 * 1024 * 1024;
+    private long flushIntervalMillis = 1000;
+    private int concurrentRequests = 2;
+    private RefreshPolicy refreshPolicy = RefreshPolicy.NONE;
+    private WireFormat wireFormat = WireFormat.getDefault();
+    private BulkSizingPolicy sizingPolicy;
+    private ContentHashFilter contentHashFilter;
+    private SearchResultCache searchResultCache;
+
+    /**
+     * Copy settings, the sizing policy, the filter and the cache are shared with the copy.
+     *
+     * @return Returns the copy of settings.
+     */
+    public BulkIndexerSettings copy()
+    {
+        BulkIndexerSettings copy = new BulkIndexerSettings();
+        copy.bulkActions = bulkActions;
+        copy.bulkSizeInBytes = bulkSizeInBytes;
+        copy.flushIntervalMillis = flushIntervalMillis;
+        copy.concurrentRequests = concurrentRequests;
+        copy.refreshPolicy = refreshPolicy;
+        copy.wireFormat = wireFormat;
+        copy.sizingPolicy = sizingPolicy;
+        copy.contentHashFilter = contentHashFilter;
+        copy.searchResultCache = searchResultCache;
+        return copy;
+    }
+
+    /**
+     * The number of actions to flush a bulk request.
+     */
+    public int getBulkActions()
+    {
+        return bulkActions;
+    }
+
+    public void setBulkActions(int bulkActions)
+    {
+        this.bulkActions = bulkActions;
+    }
+
+    /**
+     * The size of a bulk request to flush it.
+     */
+    public long getBulkSizeInBytes()
+    {
+        return bulkSizeInBytes;
+    }
+
+    public void setBulkSizeInBytes(long bulkSizeInBytes)
+    {
+        this.bulkSizeInBytes = bulkSizeInBytes;
+    }
+
+    /**
+     * The interval to flush not full bulk request, zero or negative value disables the flushing by time.
+     */
+    public long getFlushIntervalMillis()
+    {
+        return flushIntervalMillis;
+    }
+
+    public void setFlushIntervalMillis(long flushIntervalMillis)
+    {
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /**
+     * The maximum number of bulk requests executed at the same time, producers are blocked when the limit is reached.
+     */
+    public int getConcurrentRequests()
+    {
+        return concurrentRequests;
+    }
+
+    public void setConcurrentRequests(int concurrentRequests)
+    {
+        this.concurrentRequests = concurrentRequests;
+    }
+
+    public RefreshPolicy getRefreshPolicy()
+    {
+        return refreshPolicy;
+    }
+
+    public void setRefreshPolicy(RefreshPolicy refreshPolicy)
+    {
+        this.refreshPolicy = refreshPolicy;
+    }
+
+    /**
+     * The format to encode indexed entities.
+     */
+    public WireFormat getWireFormat()
+    {
+        return wireFormat;
+    }
+
+    public void setWireFormat(WireFormat wireFormat)
+    {
+        this.wireFormat = wireFormat;
+    }
+
+    /**
+     * The policy to tune the number of actions and concurrent requests, {@link FixedBulkSizingPolicy} with the configured values is used by default.
+     */
+    public BulkSizingPolicy getSizingPolicy()
+    {
+        return sizingPolicy;
+    }
+
+    public void setSizingPolicy(BulkSizingPolicy sizingPolicy)
+    {
+        this.sizingPolicy = sizingPolicy;
+    }
+
+    /**
+     * The optional filter to drop unchanged entities.
+     */
+    public ContentHashFilter getContentHashFilter()
+    {
+        return contentHashFilter;
+    }
+
+    public void setContentHashFilter(ContentHashFilter contentHashFilter)
+    {
+        this.contentHashFilter = contentHashFilter;
+    }
+
+    /**
+     * The optional cache of search responses, written indices are invalidated after every bulk request.
+     */
+    public SearchResultCache getSearchResultCache()
+    {
+        return searchResultCache;
+    }
+
+    public void setSearchResultCache(SearchResultCache searchResultCache)
+    {
+        this.searchResultCache = searchResultCache;
+    }
+}
@@ -0,0 +1,298 @@
+package com.sme.elasticsearch.bulk;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.rest.RestStatus;
+
+/**
+ * <p>
+ * Executes bulk requests and resubmits only failed items which can succeed later.
+ * </p>
+ * Items rejected by a full write queue (429) or an unavailable shard (503) are collected into a smaller bulk request
+ * and sent again after exponential backoff with jitter, while other failures like version conflicts (409) are permanent
+ * and are sent to {@link DeadLetterSink}. Items failed after the last retry and items of a bulk request refused as a whole are sent to the sink too.
+ * <p>
+ * The listener receives one {@link BulkResponse} with the last result of every item in the position of the original request,
+ * so {@link BulkRetry#execute(BulkRequest, ActionListener)} can be passed to {@link BulkIndexer} as the bulk consumer.
+ * </p>
+ */
+public class BulkRetry implements Closeable
+{
+    private static final Logger LOGGER = LogManager.getLogger(BulkRetry.class);
+
+    private final BiConsumer<BulkRequest, ActionListener<BulkResponse>> consumer;
+    private final DeadLetterSink deadLetterSink;
+    private final int maxRetries;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong retriedItems = new AtomicLong();
+    private final AtomicLong deadLetters = new AtomicLong();
+
+    /**
+     * Create retry.
+     *
+     * @param consumer The asynchronous executor of bulk requests;
+     * @param deadLetterSink The sink of permanently failed requests;
+     * @param maxRetries The maximum number of retries of an item;
+     * @param initialBackoffMillis The delay before the first retry;
+     * @param maxBackoffMillis The maximum delay between retries.
+     */
+    public BulkRetry(BiConsumer<BulkRequest, ActionListener<BulkResponse>> consumer,
+            DeadLetterSink deadLetterSink,
+            int maxRetries,
+            long initialBackoffMillis,
+            long maxBackoffMillis)
+    {
+        this.consumer = consumer;
+        this.deadLetterSink = deadLetterSink;
+        this.maxRetries = maxRetries;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "bulk-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Execute the given bulk request with retries of failed items.
+     *
+     * @param request The bulk request;
+     * @param listener The listener of the merged response.
+     */
+    public void execute(BulkRequest request, ActionListener<BulkResponse> listener)
+    {
+        int[] positions = new int[request.numberOfActions()];
+        for (int i = 0; i < positions.length; i++)
+        {
+            positions[i] = i;
+        }
+        new Execution(request, listener).send(request, positions);
+    }
+
+    /**
+     * Get the number of resubmitted items.
+     *
+     * @return Returns the number of items.
+     */
+    public long getRetriedItems()
+    {
+        return retriedItems.get();
+    }
+
+    /**
+     * Get the number of items sent to {@link DeadLetterSink}.
+     *
+     * @return Returns the number of items.
+     */
+    public long getDeadLetters()
+    {
+        return deadLetters.get();
+    }
+
+    @Override
+    public void close()
+    {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Check if the failure of an item or a whole bulk request can disappear after a while.
+     *
+     * @param status The status of failure;
+     * @return Returns true if the request can be sent again.
+     */
+    public static boolean isRetryable(RestStatus status)
+    {
+        return status == RestStatus.TOO_MANY_REQUESTS || status == RestStatus.SERVICE_UNAVAILABLE;
+    }
+
+    /**
+     * Get the exponential delay with jitter before the given retry.
+     *
+     * @param attempt The number of previous retries;
+     * @param initialBackoffMillis The delay before the first retry;
+     * @param maxBackoffMillis The maximum delay;
+     * @return Returns the delay in milliseconds.
+     */
+    public static long backoffMillis(int attempt, long initialBackoffMillis, long maxBackoffMillis)
+    {
+        long backoff = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt, 30));
+        // "Equal jitter": half of delay is fixed, another half is random to spread retries of concurrent bulks
+        return backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+    }
+
+    private long backoffMillis(int attempt)
+    {
+        return backoffMillis(attempt, initialBackoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * Keeps results of one bulk request through its retries.
+     */
+    private final class Execution
+    {
+        private final BulkRequest original;
+        private final ActionListener<BulkResponse> listener;
+        private final BulkItemResponse[] results;
+        private long tookMillis;
+        private int attempt;
+
+        private Execution(BulkRequest original, ActionListener<BulkResponse> listener)
+        {
+            this.original = original;
+            this.listener = listener;
+            this.results = new BulkItemResponse[original.numberOfActions()];
+        }
+
+        private void send(BulkRequest request, int[] positions)
+        {
+            try
+            {
+                consumer.accept(request, new ActionListener<BulkResponse>()
+                {
+                    @Override
+                    public void onResponse(BulkResponse response)
+                    {
+                        Execution.this.onResponse(request, positions, response);
+                    }
+
+                    @Override
+                    public void onFailure(Exception e)
+                    {
+                        Execution.this.onFailure(request, positions, e);
+                    }
+                });
+            }
+            catch (RuntimeException e)
+            {
+                onFailure(request, positions, e);
+            }
+        }
+
+        private void onResponse(BulkRequest request, int[] positions, BulkResponse response)
+        {
+            tookMillis += response.getTook().millis();
+
+            List<DocWriteRequest<?>> requests = request.requests();
+            BulkItemResponse[] items = response.getItems();
+            List<Integer> retries = new ArrayList<>();
+            for (int i = 0; i < items.length; i++)
+            {
+                BulkItemResponse item = items[i];
+                int position = positions[i];
+                if (!item.isFailed())
+                {
+                    results[position] = new BulkItemResponse(position, item.getOpType(), item.getResponse());
+                }
+                else if (isRetryable(item.getFailure().getStatus()) && attempt < maxRetries)
+                {
+                    results[position] = new BulkItemResponse(position, item.getOpType(), item.getFailure());
+                    retries.add(i);
+                }
+                else
+                {
+                    results[position] = new BulkItemResponse(position, item.getOpType(), item.getFailure());
+                    deadLetter(requests.get(i), item.getFailure());
+                }
+            }
+
+            if (retries.isEmpty())
+            {
+                listener.onResponse(new BulkResponse(results, tookMillis));
+                return;
+            }
+
+            BulkRequest retryRequest = newRetryRequest();
+            int[] retryPositions = new int[retries.size()];
+            for (int i = 0; i < retryPositions.length; i++)
+            {
+                int index = retries.get(i);
+                retryRequest.add(requests.get(index));
+                retryPositions[i] = positions[index];
+            }
+            retry(retryRequest, retryPositions);
+        }
+
+        private void onFailure(BulkRequest request, int[] positions, Exception e)
+        {
+            RestStatus status = ExceptionsHelper.status(e);
+            if (isRetryable(status) && attempt < maxRetries)
+            {
+                retry(request, positions);
+                return;
+            }
+
+            // Items of a refused request are reported like failed items on every attempt, so the sink receives them
+            List<DocWriteRequest<?>> requests = request.requests();
+            for (int i = 0; i < positions.length; i++)
+            {
+                DocWriteRequest<?> itemRequest = requests.get(i);
+                BulkItemResponse.Failure failure = new BulkItemResponse.Failure(itemRequest.index(), itemRequest.type(), itemRequest.id(), e);
+                results[positions[i]] = new BulkItemResponse(positions[i], itemRequest.opType(), failure);
+                deadLetter(itemRequest, failure);
+            }
+            listener.onResponse(new BulkResponse(results, tookMillis));
+        }
+
+        private void retry(BulkRequest request, int[] positions)
+        {
+            long delay = backoffMillis(attempt);
+            attempt++;
+            retriedItems.addAndGet(positions.length);
+            LOGGER.debug("Retry {} of {} items in {} ms", attempt, positions.length, delay);
+            try
+            {
+                scheduler.schedule(() -> send(request, positions), delay, TimeUnit.MILLISECONDS);
+            }
+            catch (RejectedExecutionException e)
+            {
+                // Retry is closed, so the items are failed permanently
+                onFailure(request, positions, e);
+            }
+        }
+
+        private BulkRequest newRetryRequest()
+        {
+            BulkRequest request = new BulkRequest()
+                    .setRefreshPolicy(original.getRefreshPolicy())
+                    .timeout(original.timeout());
+            request.waitForActiveShards(original.waitForActiveShards());
+            return request;
+        }
+
+        private void deadLetter(DocWriteRequest<?> request, BulkItemResponse.Failure failure)
+        {
+            deadLetters.incrementAndGet();
+            try
+            {
+                deadLetterSink.accept(request, failure);
+            }
+            catch (RuntimeException e)
+            {
+                LOGGER.error("Cannot send to dead letter sink " + request, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.sme.elasticsearch.bulk;
+
+import org.elasticsearch.action.bulk.BulkResponse;
+
+/**
+ * Decides the number of actions in a bulk request and the number of bulk requests in flight of {@link BulkIndexer}.
+ * <p>
+ * Implementations are called by producer threads and http client threads, so they must be thread safe.
+ * </p>
+ */
+public interface BulkSizingPolicy
+{
+    /**
+     * Get the number of actions to flush a bulk request.
+     *
+     * @return Returns the number of actions.
+     */
+    int bulkActions();
+
+    /**
+     * Get the maximum number of bulk requests in flight.
+     *
+     * @return Returns the number of concurrent requests.
+     */
+    int concurrentRequests();
+
+    /**
+     * Called when a bulk request is completed.
+     *
+     * @param actions The number of actions in the bulk request;
+     * @param latencyNanos The time between sending of the request and receiving of the response;
+     * @param response The response.
+     */
+    void onResponse(int actions, long latencyNanos, BulkResponse response);
+
+    /**
+     * Called when a bulk request is failed as a whole.
+     *
+     * @param actions The number of actions in the bulk request;
+     * @param latencyNanos The time between sending of the request and receiving of the failure;
+     * @param failure The failure.
+     */
+    void onFailure(int actions, long latencyNanos, Exception failure);
+}
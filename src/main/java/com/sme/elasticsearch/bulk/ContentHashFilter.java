@@ -0,0 +1,269 @@
+package com.sme.elasticsearch.bulk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.hash.MurmurHash3;
+
+import com.carrotsearch.hppc.IntLongHashMap;
+import com.carrotsearch.hppc.cursors.IntLongCursor;
+import com.sme.elasticsearch.model.BaseEntity;
+
+import util.ObjectMapperUtil;
+import util.WireFormat;
+
+/**
+ * <p>
+ * Drops documents which are not changed since they were indexed last time.
+ * </p>
+ * The filter keeps 64 bits of murmur3 hash of the document in {@link WireFormat#JSON} per index and id in primitive hash maps,
+ * about 12 bytes per document. The json form is canonical because {@link ObjectMapperUtil} sorts properties alphabetically,
+ * so the same entity always has the same hash whatever wire format is used to index it.
+ * <p>
+ * A hash of a document which passes the filter is pending until the document is indexed and {@link #acknowledge(String, String)} is called,
+ * a document failed to index must be forgotten by {@link #forget(String, String)}, {@link BulkIndexer} does both for items of bulk responses.
+ * Pending hashes skip documents of the current run, only acknowledged hashes are saved and loaded
+ * to skip unchanged documents in the next run of a sync job, so a crash never makes a not indexed document look unchanged.
+ * </p>
+ */
+public class ContentHashFilter
+{
+    private static final long SEED = 0L;
+
+    // guarded by this
+    private final Map<String, IntLongHashMap> hashes = new HashMap<>();
+    // guarded by this
+    private final Map<String, IntLongHashMap> pending = new HashMap<>();
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+
+    /**
+     * Check if the given entity is changed since the last check.
+     *
+     * @param index The index name;
+     * @param entity The entity;
+     * @return Returns true if the entity must be indexed.
+     */
+    public boolean isChanged(String index, BaseEntity entity)
+    {
+        return isChanged(index, entity.getId(), ObjectMapperUtil.serializeToBytes(entity, WireFormat.JSON));
+    }
+
+    /**
+     * Check if the given document is changed since the last check.
+     *
+     * @param index The index name;
+     * @param id The id of document;
+     * @param source The document in {@link WireFormat#JSON};
+     * @return Returns true if the document must be indexed.
+     */
+    public boolean isChanged(String index, int id, BytesReference source)
+    {
+        BytesRef bytes = source.toBytesRef();
+        long hash = MurmurHash3.hash128(bytes.bytes, bytes.offset, bytes.length, SEED, new MurmurHash3.Hash128()).h1;
+
+        checked.increment();
+        synchronized (this)
+        {
+            // A pending hash is newer than the acknowledged one
+            IntLongHashMap pendingHashes = pending.computeIfAbsent(index, k -> new IntLongHashMap());
+            IntLongHashMap indexHashes = pendingHashes.containsKey(id) ? pendingHashes : hashes.get(index);
+            int slot = indexHashes != null ? indexHashes.indexOf(id) : -1;
+            if (indexHashes != null && indexHashes.indexExists(slot) && indexHashes.indexGet(slot) == hash)
+            {
+                skipped.increment();
+                return false;
+            }
+            pendingHashes.put(id, hash);
+            return true;
+        }
+    }
+
+    /**
+     * Remember the pending hash of an indexed document, so it is saved by {@link #save(Path)}.
+     *
+     * @param index The index name;
+     * @param id The id of document, not numeric ids are ignored.
+     */
+    public void acknowledge(String index, String id)
+    {
+        int numericId;
+        try
+        {
+            numericId = Integer.parseInt(id);
+        }
+        catch (NumberFormatException e)
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            IntLongHashMap pendingHashes = pending.get(index);
+            if (pendingHashes != null && pendingHashes.containsKey(numericId))
+            {
+                hashes.computeIfAbsent(index, k -> new IntLongHashMap()).put(numericId, pendingHashes.remove(numericId));
+            }
+        }
+    }
+
+    /**
+     * Forget the hash of a document, so the document is indexed next time.
+     *
+     * @param index The index name;
+     * @param id The id of document, not numeric ids are ignored.
+     */
+    public void forget(String index, String id)
+    {
+        int numericId;
+        try
+        {
+            numericId = Integer.parseInt(id);
+        }
+        catch (NumberFormatException e)
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            IntLongHashMap indexHashes = hashes.get(index);
+            if (indexHashes != null)
+            {
+                indexHashes.remove(numericId);
+            }
+            IntLongHashMap pendingHashes = pending.get(index);
+            if (pendingHashes != null)
+            {
+                pendingHashes.remove(numericId);
+            }
+        }
+    }
+
+    /**
+     * Forget hashes of all documents of the given index, for example after the index is recreated.
+     *
+     * @param index The index name.
+     */
+    public synchronized void forget(String index)
+    {
+        hashes.remove(index);
+        pending.remove(index);
+    }
+
+    /**
+     * Get the number of acknowledged hashes.
+     *
+     * @return Returns the number of hashes.
+     */
+    public synchronized int size()
+    {
+        return hashes.values().stream().mapToInt(IntLongHashMap::size).sum();
+    }
+
+    /**
+     * Get the number of checked documents.
+     *
+     * @return Returns the number of documents.
+     */
+    public long getChecked()
+    {
+        return checked.sum();
+    }
+
+    /**
+     * Get the number of dropped unchanged documents.
+     *
+     * @return Returns the number of documents.
+     */
+    public long getSkipped()
+    {
+        return skipped.sum();
+    }
+
+    /**
+     * Get the part of dropped documents.
+     *
+     * @return Returns skip ratio from 0 to 1.
+     */
+    public double getSkipRatio()
+    {
+        long total = checked.sum();
+        return total == 0 ? 0d : skipped.sum() / (double) total;
+    }
+
+    /**
+     * Get the number of hashes of documents which are not acknowledged or forgotten yet.
+     *
+     * @return Returns the number of hashes.
+     */
+    public synchronized int getPending()
+    {
+        return pending.values().stream().mapToInt(IntLongHashMap::size).sum();
+    }
+
+    /**
+     * Save acknowledged hashes into the given file, pending hashes are not saved.
+     *
+     * @param file The file.
+     * @throws IOException when the file cannot be written.
+     */
+    public synchronized void save(Path file) throws IOException
+    {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile))))
+        {
+            out.writeInt(hashes.size());
+            for (Map.Entry<String, IntLongHashMap> entry : hashes.entrySet())
+            {
+                out.writeUTF(entry.getKey());
+                out.writeInt(entry.getValue().size());
+                for (IntLongCursor cursor : entry.getValue())
+                {
+                    out.writeInt(cursor.key);
+                    out.writeLong(cursor.value);
+                }
+            }
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load hashes saved by {@link #save(Path)}, the current acknowledged and pending hashes are replaced.
+     *
+     * @param file The file.
+     * @throws IOException when the file cannot be read.
+     */
+    public synchronized void load(Path file) throws IOException
+    {
+        hashes.clear();
+        pending.clear();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file))))
+        {
+            int indices = in.readInt();
+            for (int i = 0; i < indices; i++)
+            {
+                String index = in.readUTF();
+                int size = in.readInt();
+                IntLongHashMap indexHashes = new IntLongHashMap(size);
+                for (int j = 0; j < size; j++)
+                {
+                    indexHashes.put(in.readInt(), in.readLong());
+                }
+                hashes.put(index, indexHashes);
+            }
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.sme.elasticsearch.bulk;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+
+/**
+ * Receives requests of a bulk which cannot be completed by retries, like version conflicts, mapping errors or items rejected too many times.
+ */
+@FunctionalInterface
+public interface DeadLetterSink
+{
+    /**
+     * Accept the failed request.
+     *
+     * @param request The failed index, update or delete request;
+     * @param failure The last failure of the request.
+     */
+    void accept(DocWriteRequest<?> request, BulkItemResponse.Failure failure);
+}
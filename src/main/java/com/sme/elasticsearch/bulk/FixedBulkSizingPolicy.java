@@ -0,0 +1,40 @@
+package com.sme.elasticsearch.bulk;
+
+import org.elasticsearch.action.bulk.BulkResponse;
+
+/**
+ * Keeps the number of actions and concurrent requests configured in {@link BulkIndexerSettings}.
+ */
+public class FixedBulkSizingPolicy implements BulkSizingPolicy
+{
+    private final int bulkActions;
+    private final int concurrentRequests;
+
+    public FixedBulkSizingPolicy(int bulkActions, int concurrentRequests)
+    {
+        this.bulkActions = bulkActions;
+        this.concurrentRequests = concurrentRequests;
+    }
+
+    @Override
+    public int bulkActions()
+    {
+        return bulkActions;
+    }
+
+    @Override
+    public int concurrentRequests()
+    {
+        return concurrentRequests;
+    }
+
+    @Override
+    public void onResponse(int actions, long latencyNanos, BulkResponse response)
+    {
+    }
+
+    @Override
+    public void onFailure(int actions, long latencyNanos, Exception failure)
+    {
+    }
+}
@@ -0,0 +1,178 @@
+package com.sme.elasticsearch.client;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * <p>
+ * Runs blocking client calls like {@code client.search(request, options)} of RestHighLevelClient
+ * or {@code client.prepareSearch(index).get()} of Node client on threads of the selected mode.
+ * </p>
+ * {@link Mode#VIRTUAL} starts a virtual thread per call, a blocked virtual thread releases its carrier thread,
+ * so thousands of blocking calls can wait for responses without thousands of platform threads.
+ * Virtual threads are created by reflection, because the project is compiled for Java 8,
+ * on a runtime without virtual threads the mode falls back to a cached pool of platform threads.
+ * {@link Mode#PLATFORM} runs calls on a fixed pool, so the number of concurrent calls is limited by the pool size.
+ *
+ * <pre>
+ * try (BlockingCallExecutor executor = BlockingCallExecutor.virtual())
+ * {
+ *     CompletableFuture&lt;SearchResponse&gt; future = executor.submit(() -&gt; client.search(request, RequestOptions.DEFAULT));
+ * }
+ * </pre>
+ */
+public class BlockingCallExecutor implements Closeable
+{
+    private static final Logger LOGGER = LogManager.getLogger(BlockingCallExecutor.class);
+
+    private final ExecutorService executor;
+    private final Mode mode;
+
+    private BlockingCallExecutor(ExecutorService executor, Mode mode)
+    {
+        this.executor = executor;
+        this.mode = mode;
+    }
+
+    /**
+     * Create executor which runs every call on a new virtual thread.
+     *
+     * @return Returns executor of {@link Mode#VIRTUAL} mode or {@link Mode#PLATFORM} mode if virtual threads are not supported by the runtime.
+     */
+    public static BlockingCallExecutor virtual()
+    {
+        try
+        {
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new BlockingCallExecutor(executor, Mode.VIRTUAL);
+        }
+        catch (ReflectiveOperationException e)
+        {
+            LOGGER.warn("Virtual threads are not supported by Java {}, use platform threads", System.getProperty("java.version"));
+            return new BlockingCallExecutor(Executors.newCachedThreadPool(threadFactory("blocking-call")), Mode.PLATFORM);
+        }
+    }
+
+    /**
+     * Create executor which runs calls on a fixed pool of platform threads.
+     *
+     * @param threads The number of threads;
+     * @return Returns executor of {@link Mode#PLATFORM} mode.
+     */
+    public static BlockingCallExecutor platform(int threads)
+    {
+        return new BlockingCallExecutor(Executors.newFixedThreadPool(threads, threadFactory("blocking-call")), Mode.PLATFORM);
+    }
+
+    /**
+     * Create executor of the given mode.
+     *
+     * @param mode The mode;
+     * @param threads The number of threads of {@link Mode#PLATFORM} mode;
+     * @return Returns created executor.
+     */
+    public static BlockingCallExecutor of(Mode mode, int threads)
+    {
+        return mode == Mode.VIRTUAL ? virtual() : platform(threads);
+    }
+
+    /**
+     * Get the actual mode, it differs from the requested {@link Mode#VIRTUAL} mode on runtimes without virtual threads.
+     */
+    public Mode getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Run the given blocking call.
+     *
+     * @param <R> The type of result;
+     * @param call The blocking call;
+     * @return Returns the future completed by the result or the exception of the call.
+     */
+    public <R> CompletableFuture<R> submit(BlockingCall<R> call)
+    {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        executor.execute(() ->
+        {
+            try
+            {
+                future.complete(call.call());
+            }
+            catch (Throwable e)
+            {
+                // Errors complete the future too, otherwise a caller would wait forever
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Stop accepting calls and wait for running calls.
+     */
+    @Override
+    public void close()
+    {
+        executor.shutdown();
+        try
+        {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES))
+            {
+                LOGGER.warn("Blocking calls are not completed in a minute");
+                executor.shutdownNow();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix)
+    {
+        AtomicInteger number = new AtomicInteger();
+        return runnable ->
+        {
+            Thread thread = new Thread(runnable, prefix + "-" + number.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * The type of threads to run blocking calls.
+     */
+    public enum Mode
+    {
+        VIRTUAL,
+        PLATFORM
+    }
+
+    /**
+     * A blocking call of a client.
+     *
+     * @param <R> The type of result.
+     */
+    @FunctionalInterface
+    public interface BlockingCall<R>
+    {
+        /**
+         * Perform the call.
+         *
+         * @return Returns the result.
+         * @throws Exception when the call fails.
+         */
+        R call() throws Exception;
+    }
+}
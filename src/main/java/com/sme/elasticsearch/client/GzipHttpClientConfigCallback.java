@@ -0,0 +1,234 @@
+package com.sme.elasticsearch.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestClientBuilder;
+import org.elasticsearch.client.RestHighLevelClient;
+
+/**
+ * <p>
+ * Enables gzip compression of request and response bodies of {@link RestClient}.
+ * </p>
+ * The rest client of 7.6 has no compression option, so the callback wraps the http client built by {@link RestClientBuilder}:
+ * <ul>
+ * <li>request bodies larger than the threshold, like bulk requests, are compressed and sent with "Content-Encoding: gzip";</li>
+ * <li>every request is sent with "Accept-Encoding: gzip", compressed responses are decompressed before the rest client reads them.</li>
+ * </ul>
+ * The callback must be the last customization of the http client builder, because the wrapping builder is returned to the rest client as is.
+ *
+ * <pre>
+ * new RestHighLevelClient(RestClient.builder(host).setHttpClientConfigCallback(new GzipHttpClientConfigCallback(1024)));
+ * </pre>
+ */
+public class GzipHttpClientConfigCallback implements RestClientBuilder.HttpClientConfigCallback
+{
+    private static final String GZIP = "gzip";
+
+    private final int minSizeInBytes;
+
+    /**
+     * Create callback.
+     *
+     * @param minSizeInBytes The minimum size of request body to compress, small bodies are not worth the compression.
+     */
+    public GzipHttpClientConfigCallback(int minSizeInBytes)
+    {
+        this.minSizeInBytes = minSizeInBytes;
+    }
+
+    /**
+     * Create high level client with compression.
+     *
+     * @param hosts The hosts of cluster;
+     * @return Returns the client.
+     */
+    public static RestHighLevelClient createClient(HttpHost... hosts)
+    {
+        return new RestHighLevelClient(RestClient.builder(hosts).setHttpClientConfigCallback(new GzipHttpClientConfigCallback(1024)));
+    }
+
+    @Override
+    public HttpAsyncClientBuilder customizeHttpClient(HttpAsyncClientBuilder httpClientBuilder)
+    {
+        return new GzipHttpAsyncClientBuilder(httpClientBuilder, minSizeInBytes);
+    }
+
+    /**
+     * Builds the configured client and wraps it.
+     */
+    private static class GzipHttpAsyncClientBuilder extends HttpAsyncClientBuilder
+    {
+        private final HttpAsyncClientBuilder delegate;
+        private final int minSizeInBytes;
+
+        private GzipHttpAsyncClientBuilder(HttpAsyncClientBuilder delegate, int minSizeInBytes)
+        {
+            this.delegate = delegate;
+            this.minSizeInBytes = minSizeInBytes;
+        }
+
+        @Override
+        public CloseableHttpAsyncClient build()
+        {
+            return new GzipHttpAsyncClient(delegate.build(), minSizeInBytes);
+        }
+    }
+
+    /**
+     * Compresses requests and decompresses responses of the delegate client.
+     */
+    private static class GzipHttpAsyncClient extends CloseableHttpAsyncClient
+    {
+        private final CloseableHttpAsyncClient delegate;
+        private final int minSizeInBytes;
+
+        private GzipHttpAsyncClient(CloseableHttpAsyncClient delegate, int minSizeInBytes)
+        {
+            this.delegate = delegate;
+            this.minSizeInBytes = minSizeInBytes;
+        }
+
+        @Override
+        public boolean isRunning()
+        {
+            return delegate.isRunning();
+        }
+
+        @Override
+        public void start()
+        {
+            delegate.start();
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            delegate.close();
+        }
+
+        @Override
+        public <T> Future<T> execute(HttpAsyncRequestProducer requestProducer,
+                HttpAsyncResponseConsumer<T> responseConsumer,
+                HttpContext context,
+                FutureCallback<T> callback)
+        {
+            HttpAsyncRequestProducer producer;
+            try
+            {
+                producer = compress(requestProducer);
+            }
+            catch (IOException | HttpException e)
+            {
+                // The original producer reports the same failure to the callback
+                producer = requestProducer;
+            }
+            return delegate.execute(producer, responseConsumer, context, new DecompressingCallback<>(callback));
+        }
+
+        private HttpAsyncRequestProducer compress(HttpAsyncRequestProducer requestProducer) throws IOException, HttpException
+        {
+            HttpRequest request = requestProducer.generateRequest();
+            if (!request.containsHeader(HttpHeaders.ACCEPT_ENCODING))
+            {
+                request.addHeader(HttpHeaders.ACCEPT_ENCODING, GZIP);
+            }
+
+            if (!(request instanceof HttpEntityEnclosingRequest))
+            {
+                return HttpAsyncMethods.create(requestProducer.getTarget(), request);
+            }
+
+            HttpEntityEnclosingRequest entityRequest = (HttpEntityEnclosingRequest) request;
+            HttpEntity entity = entityRequest.getEntity();
+            // A request retried on another node is already compressed
+            if (entity != null && entity.getContentEncoding() == null && entity.getContentLength() >= minSizeInBytes)
+            {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) Math.max(64, entity.getContentLength() / 4));
+                try (GZIPOutputStream out = new GZIPOutputStream(bytes))
+                {
+                    entity.writeTo(out);
+                }
+
+                Header contentType = entity.getContentType();
+                ByteArrayEntity compressed = new ByteArrayEntity(bytes.toByteArray(), contentType != null ? ContentType.parse(contentType.getValue()) : null);
+                compressed.setContentEncoding(GZIP);
+                entityRequest.setEntity(compressed);
+            }
+            return HttpAsyncMethods.create(requestProducer.getTarget(), request);
+        }
+    }
+
+    /**
+     * Replaces compressed entity of response by decompressing one.
+     */
+    private static class DecompressingCallback<T> implements FutureCallback<T>
+    {
+        private final FutureCallback<T> delegate;
+
+        private DecompressingCallback(FutureCallback<T> delegate)
+        {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void completed(T result)
+        {
+            if (result instanceof HttpResponse)
+            {
+                HttpResponse response = (HttpResponse) result;
+                HttpEntity entity = response.getEntity();
+                Header encoding = response.getFirstHeader(HttpHeaders.CONTENT_ENCODING);
+                if (entity != null && encoding != null && GZIP.equalsIgnoreCase(encoding.getValue()))
+                {
+                    response.setEntity(new GzipDecompressingEntity(entity));
+                    response.removeHeaders(HttpHeaders.CONTENT_ENCODING);
+                    response.removeHeaders(HttpHeaders.CONTENT_LENGTH);
+                }
+            }
+            if (delegate != null)
+            {
+                delegate.completed(result);
+            }
+        }
+
+        @Override
+        public void failed(Exception ex)
+        {
+            if (delegate != null)
+            {
+                delegate.failed(ex);
+            }
+        }
+
+        @Override
+        public void cancelled()
+        {
+            if (delegate != null)
+            {
+                delegate.cancelled();
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.sme.elasticsearch.export;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+
+import com.sme.elasticsearch.index.SlicedScroll;
+
+/**
+ * <p>
+ * Exports documents of an index into NDJSON files, one json document per line.
+ * </p>
+ * Every slice of {@link SlicedScroll} is read by its own worker and written into its own file "&lt;index&gt;-&lt;slice&gt;.ndjson",
+ * so slices are read and written in parallel without coordination.
+ * Source bytes of hits are written to the file channel as they are received, hits are never decoded into model classes.
+ * Files are optionally compressed by gzip ("&lt;index&gt;-&lt;slice&gt;.ndjson.gz").
+ */
+public class NdjsonExporter
+{
+    private static final Logger LOGGER = LogManager.getLogger(NdjsonExporter.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Scroll of index order is the cheapest one
+    private static final String SORT_FIELD = "_doc";
+
+    private final RestHighLevelClient client;
+
+    private int slices = 4;
+    private int pageSize = 1000;
+    private boolean gzip;
+    private TimeValue keepAlive = TimeValue.timeValueMinutes(5);
+    private QueryBuilder query = QueryBuilders.matchAllQuery();
+
+    public NdjsonExporter(RestHighLevelClient client)
+    {
+        this.client = client;
+    }
+
+    /**
+     * The number of slices, files and workers.
+     */
+    public NdjsonExporter setSlices(int slices)
+    {
+        this.slices = slices;
+        return this;
+    }
+
+    /**
+     * The number of hits in a scroll page.
+     */
+    public NdjsonExporter setPageSize(int pageSize)
+    {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * Compress files by gzip.
+     */
+    public NdjsonExporter setGzip(boolean gzip)
+    {
+        this.gzip = gzip;
+        return this;
+    }
+
+    /**
+     * The time to keep a scroll context between pages.
+     */
+    public NdjsonExporter setKeepAlive(TimeValue keepAlive)
+    {
+        this.keepAlive = keepAlive;
+        return this;
+    }
+
+    /**
+     * The query of exported documents, all documents by default.
+     */
+    public NdjsonExporter setQuery(QueryBuilder query)
+    {
+        this.query = query;
+        return this;
+    }
+
+    /**
+     * Export documents of the given index.
+     *
+     * @param index The index or alias;
+     * @param directory The directory of files, it is created if it does not exist;
+     * @return Returns the result of export.
+     * @throws IOException when a slice cannot be read or written.
+     */
+    public Result export(String index, Path directory) throws IOException
+    {
+        Files.createDirectories(directory);
+        SlicedScroll scroll = new SlicedScroll(client, index, slices, pageSize, keepAlive);
+        long startTime = System.nanoTime();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(slices, runnable -> new Thread(runnable, "export-" + index + "-" + threadNumber.getAndIncrement()));
+        List<Path> files = new ArrayList<>();
+        long documents = 0;
+        try
+        {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int slice = 0; slice < slices; slice++)
+            {
+                Path file = directory.resolve(index + "-" + slice + (gzip ? ".ndjson.gz" : ".ndjson"));
+                int sliceNumber = slice;
+                files.add(file);
+                futures.add(executor.submit(() -> exportSlice(scroll, sliceNumber, file)));
+            }
+
+            for (Future<Long> future : futures)
+            {
+                documents += future.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted export of " + index, e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Cannot export " + index, e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        Result result = new Result(files, documents, System.nanoTime() - startTime);
+        LOGGER.info("Exported {} documents of {} into {} files in {} ms, {} docs/sec",
+                documents, index, files.size(), result.getMillis(), String.format("%.0f", result.getDocumentsPerSecond()));
+        return result;
+    }
+
+    private long exportSlice(SlicedScroll scroll, int slice, Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                OutputStream out = open(channel))
+        {
+            long count = scroll.scroll(slice, query, SORT_FIELD, null, hits ->
+            {
+                for (SearchHit hit : hits)
+                {
+                    BytesReference source = hit.getSourceRef();
+                    if (source == null)
+                    {
+                        throw new IllegalStateException("Expects enabled _source of " + hit.getIndex() + "/" + hit.getId());
+                    }
+                    source.writeTo(out);
+                    out.write('\n');
+                }
+            });
+            LOGGER.debug("Exported slice {} into {}: {} documents", slice, file, count);
+            return count;
+        }
+    }
+
+    private OutputStream open(FileChannel channel) throws IOException
+    {
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+        return gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+    }
+
+    /**
+     * The result of export.
+     */
+    public static class Result
+    {
+        private final List<Path> files;
+        private final long documents;
+        private final long nanos;
+
+        private Result(List<Path> files, long documents, long nanos)
+        {
+            this.files = Collections.unmodifiableList(files);
+            this.documents = documents;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Get files in order of slices.
+         */
+        public List<Path> getFiles()
+        {
+            return files;
+        }
+
+        public long getDocuments()
+        {
+            return documents;
+        }
+
+        public long getMillis()
+        {
+            return TimeUnit.NANOSECONDS.toMillis(nanos);
+        }
+
+        public double getDocumentsPerSecond()
+        {
+            return nanos == 0 ? 0d : documents * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+        }
+    }
+}
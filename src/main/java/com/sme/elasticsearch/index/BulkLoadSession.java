@@ -0,0 +1,295 @@
+package com.sme.elasticsearch.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.admin.indices.forcemerge.ForceMergeRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexSettings;
+
+import com.sme.elasticsearch.bulk.BulkIndexer;
+import com.sme.elasticsearch.bulk.BulkIndexerSettings;
+
+/**
+ * <p>
+ * Prepares indices for a large ingest and restores them after the ingest.
+ * </p>
+ * The session disables refresh ("refresh_interval": -1) and replicas ("number_of_replicas": 0) of the given indices,
+ * so every document is written once into large segments without searchable intermediate segments.
+ * {@link #close()} restores the original settings, refreshes indices once and optionally force merges them.
+ * <p>
+ * The original settings are kept in a state file per index before they are changed,
+ * so settings of an index left by a crashed process are restored by {@link #recover(RestHighLevelClient, Path)}
+ * or by the next session of the same index.
+ * </p>
+ *
+ * <pre>
+ * try (BulkLoadSession session = BulkLoadSession.open(client, stateDirectory, 1, "products"))
+ * {
+ *     BulkIndexer indexer = session.bulkIndexer(settings, listener);
+ *     products.forEach(p -&gt; indexer.index("products", p));
+ * }
+ * </pre>
+ */
+public class BulkLoadSession implements Closeable
+{
+    private static final Logger LOGGER = LogManager.getLogger(BulkLoadSession.class);
+
+    private static final String STATE_FILE_PREFIX = "bulk-load-";
+    private static final String STATE_FILE_SUFFIX = ".properties";
+    private static final List<String> SETTINGS = Arrays.asList(
+            IndexSettings.INDEX_REFRESH_INTERVAL_SETTING.getKey(),
+            IndexMetaData.SETTING_NUMBER_OF_REPLICAS);
+
+    private final RestHighLevelClient client;
+    private final Path stateDirectory;
+    private final int maxNumSegments;
+    private final String[] indices;
+    private final List<BulkIndexer> indexers = new ArrayList<>();
+    private boolean closed;
+
+    private BulkLoadSession(RestHighLevelClient client, Path stateDirectory, int maxNumSegments, String[] indices)
+    {
+        this.client = client;
+        this.stateDirectory = stateDirectory;
+        this.maxNumSegments = maxNumSegments;
+        this.indices = indices;
+    }
+
+    /**
+     * Open session for the given indices.
+     *
+     * @param client The rest client;
+     * @param stateDirectory The directory to keep the original settings;
+     * @param maxNumSegments The number of segments to force merge indices on close, zero or negative value disables the force merge;
+     * @param indices The indices to load;
+     * @return Returns the opened session.
+     * @throws IOException when a request cannot be performed or the state cannot be saved.
+     */
+    public static BulkLoadSession open(RestHighLevelClient client, Path stateDirectory, int maxNumSegments, String... indices) throws IOException
+    {
+        Files.createDirectories(stateDirectory);
+        for (String index : indices)
+        {
+            Path stateFile = stateFile(stateDirectory, index);
+            if (Files.exists(stateFile))
+            {
+                LOGGER.warn("Restore settings of {} left by a previous bulk load", index);
+                restore(client, stateFile);
+            }
+        }
+
+        GetSettingsResponse response = client.indices().getSettings(new GetSettingsRequest()
+                .indices(indices)
+                .names(SETTINGS.toArray(new String[0])), RequestOptions.DEFAULT);
+
+        for (String index : indices)
+        {
+            Properties state = new Properties();
+            state.setProperty("index", index);
+            for (String setting : SETTINGS)
+            {
+                // Not set value means a default value, it is restored by null
+                String value = response.getSetting(index, setting);
+                if (value != null)
+                {
+                    state.setProperty(setting, value);
+                }
+            }
+            save(stateFile(stateDirectory, index), state);
+        }
+
+        client.indices().putSettings(new UpdateSettingsRequest(indices).settings(Settings.builder()
+                .put(IndexSettings.INDEX_REFRESH_INTERVAL_SETTING.getKey(), "-1")
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)), RequestOptions.DEFAULT);
+
+        LOGGER.info("Started bulk load of {}", Arrays.toString(indices));
+        return new BulkLoadSession(client, stateDirectory, maxNumSegments, indices);
+    }
+
+    /**
+     * Restore settings of all indices left by crashed sessions.
+     *
+     * @param client The rest client;
+     * @param stateDirectory The directory with the original settings;
+     * @return Returns the number of restored indices.
+     * @throws IOException when a request cannot be performed.
+     */
+    public static int recover(RestHighLevelClient client, Path stateDirectory) throws IOException
+    {
+        if (!Files.isDirectory(stateDirectory))
+        {
+            return 0;
+        }
+
+        int restored = 0;
+        try (DirectoryStream<Path> stateFiles = Files.newDirectoryStream(stateDirectory, STATE_FILE_PREFIX + "*" + STATE_FILE_SUFFIX))
+        {
+            for (Path stateFile : stateFiles)
+            {
+                restore(client, stateFile);
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * Create bulk indexer which does not refresh indices, the indexer is closed with the session.
+     *
+     * @param settings The settings of indexer, the indexer uses a copy with {@link RefreshPolicy#NONE};
+     * @param listener The listener of bulk executions;
+     * @return Returns bulk indexer.
+     */
+    public synchronized BulkIndexer bulkIndexer(BulkIndexerSettings settings, BulkProcessor.Listener listener)
+    {
+        if (closed)
+        {
+            throw new IllegalStateException("Bulk load session is closed");
+        }
+
+        BulkIndexerSettings loadSettings = settings.copy();
+        loadSettings.setRefreshPolicy(RefreshPolicy.NONE);
+        BulkIndexer indexer = new BulkIndexer(client, loadSettings, listener);
+        indexers.add(indexer);
+        return indexer;
+    }
+
+    /**
+     * Complete bulk requests, restore settings, refresh and optionally force merge indices.
+     */
+    @Override
+    public synchronized void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+
+        try
+        {
+            for (BulkIndexer indexer : indexers)
+            {
+                indexer.close();
+            }
+        }
+        finally
+        {
+            restoreAll();
+        }
+
+        client.indices().refresh(new RefreshRequest(indices), RequestOptions.DEFAULT);
+        if (maxNumSegments > 0)
+        {
+            try
+            {
+                client.indices().forcemerge(new ForceMergeRequest(indices).maxNumSegments(maxNumSegments), RequestOptions.DEFAULT);
+            }
+            catch (IOException e)
+            {
+                // The merge goes on in the cluster after the client gives up, the loaded documents are not affected
+                LOGGER.warn("Force merge of {} is not completed in time", Arrays.toString(indices), e);
+            }
+        }
+        LOGGER.info("Completed bulk load of {}", Arrays.toString(indices));
+    }
+
+    // A failed index does not keep other indices without refresh and replicas
+    private void restoreAll() throws IOException
+    {
+        Exception failure = null;
+        for (String index : indices)
+        {
+            try
+            {
+                restore(client, stateFile(stateDirectory, index));
+            }
+            catch (IOException | RuntimeException e)
+            {
+                if (failure == null)
+                {
+                    failure = e;
+                }
+                else
+                {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure instanceof IOException)
+        {
+            throw (IOException) failure;
+        }
+        if (failure != null)
+        {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    private static void restore(RestHighLevelClient client, Path stateFile) throws IOException
+    {
+        Properties state = new Properties();
+        try (InputStream in = Files.newInputStream(stateFile))
+        {
+            state.load(in);
+        }
+
+        String index = state.getProperty("index");
+        Settings.Builder settings = Settings.builder();
+        for (String setting : SETTINGS)
+        {
+            String value = state.getProperty(setting);
+            if (value != null)
+            {
+                settings.put(setting, value);
+            }
+            else
+            {
+                settings.putNull(setting);
+            }
+        }
+
+        client.indices().putSettings(new UpdateSettingsRequest(index).settings(settings), RequestOptions.DEFAULT);
+        // The state is deleted only after successful restoring to try again after a failure
+        Files.delete(stateFile);
+        LOGGER.info("Restored settings {} of {}", settings.build(), index);
+    }
+
+    private static void save(Path stateFile, Properties state) throws IOException
+    {
+        Path tempFile = stateFile.resolveSibling(stateFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile))
+        {
+            state.store(out, "Original settings of bulk load");
+        }
+        Files.move(tempFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path stateFile(Path stateDirectory, String index)
+    {
+        return stateDirectory.resolve(STATE_FILE_PREFIX + index + STATE_FILE_SUFFIX);
+    }
+}
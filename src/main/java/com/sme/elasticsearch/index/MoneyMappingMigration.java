@@ -0,0 +1,62 @@
+package com.sme.elasticsearch.index;
+
+import java.io.IOException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.ReindexRequest;
+
+import com.sme.elasticsearch.model.Money;
+
+/**
+ * Migrates an index with "float" prices to the mapping with "scaled_float" prices.
+ * <p>
+ * A type of existing field cannot be changed, so documents are copied into a new index created with the new mapping.
+ * Prices are kept in "_source" as decimal numbers in both mappings, so documents are copied as is:
+ * "scaled_float" rounds values to cents while indexing and {@link Money.Deserializer} rounds old float values like 10.0099999 while reading.
+ * </p>
+ */
+public class MoneyMappingMigration
+{
+    private static final Logger LOGGER = LogManager.getLogger(MoneyMappingMigration.class);
+
+    private final RestHighLevelClient client;
+
+    public MoneyMappingMigration(RestHighLevelClient client)
+    {
+        this.client = client;
+    }
+
+    /**
+     * Copy all documents of the source index into the target index created with the given mapping.
+     *
+     * @param sourceIndex The index with "float" prices;
+     * @param targetIndex The index to be created;
+     * @param mapping The json mapping with "scaled_float" prices;
+     * @return Returns the number of copied documents.
+     * @throws IOException when a request cannot be performed.
+     */
+    public long migrate(String sourceIndex, String targetIndex, String mapping) throws IOException
+    {
+        client.indices().create(new CreateIndexRequest(targetIndex).mapping(mapping, XContentType.JSON), RequestOptions.DEFAULT);
+
+        ReindexRequest reindexRequest = new ReindexRequest()
+                .setSourceIndices(sourceIndex)
+                .setDestIndex(targetIndex)
+                .setRefresh(true);
+
+        BulkByScrollResponse response = client.reindex(reindexRequest, RequestOptions.DEFAULT);
+        if (!response.getBulkFailures().isEmpty() || !response.getSearchFailures().isEmpty())
+        {
+            throw new IllegalStateException("Cannot migrate " + sourceIndex + " to " + targetIndex + ": " + response);
+        }
+
+        LOGGER.info("Migrated {} documents from {} to {} in {}", response.getCreated() + response.getUpdated(), sourceIndex, targetIndex, response.getTook());
+        return response.getCreated() + response.getUpdated();
+    }
+}
@@ -0,0 +1,360 @@
+package com.sme.elasticsearch.index;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+
+import com.sme.elasticsearch.model.BaseEntity;
+
+import util.ObjectMapperUtil;
+import util.WireFormat;
+
+/**
+ * <p>
+ * Copies documents from one index to another by parallel workers.
+ * </p>
+ * Every worker reads its slice of {@link SlicedScroll} and writes every page by a bulk request, so reads and writes of slices
+ * run in parallel. The total number of copied documents per second is limited by the throttle shared by workers.
+ * <p>
+ * When a checkpoint directory is set, the last copied id of every slice is saved after every bulk request,
+ * a failed copy is resumed from the checkpoints by the next run with the same indices and number of slices.
+ * Checkpoints are deleted when all slices are copied.
+ * </p>
+ * Documents can be transformed through the model classes, for example to fill a new field of changed mapping.
+ */
+public class SlicedReindexer
+{
+    private static final Logger LOGGER = LogManager.getLogger(SlicedReindexer.class);
+
+    private final RestHighLevelClient client;
+    private final String sourceIndex;
+    private final String targetIndex;
+
+    private int slices = 2;
+    private int pageSize = 1000;
+    private double documentsPerSecond = Double.POSITIVE_INFINITY;
+    private String sortField = "id";
+    private QueryBuilder query = QueryBuilders.matchAllQuery();
+    private Path checkpointDirectory;
+    private Transform<?> transform;
+
+    public SlicedReindexer(RestHighLevelClient client, String sourceIndex, String targetIndex)
+    {
+        this.client = client;
+        this.sourceIndex = sourceIndex;
+        this.targetIndex = targetIndex;
+    }
+
+    /**
+     * The number of slices and workers.
+     */
+    public SlicedReindexer setSlices(int slices)
+    {
+        this.slices = slices;
+        return this;
+    }
+
+    /**
+     * The number of documents read by a scroll request and written by a bulk request.
+     */
+    public SlicedReindexer setPageSize(int pageSize)
+    {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    /**
+     * The maximum number of copied documents per second of all workers, {@link Double#POSITIVE_INFINITY} disables throttling.
+     */
+    public SlicedReindexer setDocumentsPerSecond(double documentsPerSecond)
+    {
+        if (!(documentsPerSecond > 0d))
+        {
+            throw new IllegalArgumentException("Expects positive documents per second, but " + documentsPerSecond);
+        }
+        this.documentsPerSecond = documentsPerSecond;
+        return this;
+    }
+
+    /**
+     * The unique numeric field to sort and resume slices, "id" of {@link BaseEntity} by default.
+     */
+    public SlicedReindexer setSortField(String sortField)
+    {
+        this.sortField = sortField;
+        return this;
+    }
+
+    /**
+     * The query of copied documents, all documents by default.
+     */
+    public SlicedReindexer setQuery(QueryBuilder query)
+    {
+        this.query = query;
+        return this;
+    }
+
+    /**
+     * The directory to keep checkpoints of slices, checkpoints are disabled by default.
+     */
+    public SlicedReindexer setCheckpointDirectory(Path checkpointDirectory)
+    {
+        this.checkpointDirectory = checkpointDirectory;
+        return this;
+    }
+
+    /**
+     * Transform every document through the given model class.
+     *
+     * @param <T> The type of entity;
+     * @param type The class of entity;
+     * @param function The function to change entity, null result skips the document;
+     * @return Returns this reindexer.
+     */
+    public <T extends BaseEntity> SlicedReindexer setTransform(Class<T> type, UnaryOperator<T> function)
+    {
+        this.transform = new Transform<>(type, function);
+        return this;
+    }
+
+    /**
+     * Copy documents.
+     *
+     * @return Returns the number of copied documents in this run.
+     * @throws IOException when a slice cannot be copied.
+     */
+    public long reindex() throws IOException
+    {
+        SlicedScroll scroll = new SlicedScroll(client, sourceIndex, slices, pageSize, TimeValue.timeValueMinutes(5));
+        Throttle throttle = new Throttle(documentsPerSecond);
+        AtomicLong copied = new AtomicLong();
+        long startTime = System.nanoTime();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(slices, runnable -> new Thread(runnable, "reindex-" + sourceIndex + "-" + threadNumber.getAndIncrement()));
+        try
+        {
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int slice = 0; slice < slices; slice++)
+            {
+                int sliceNumber = slice;
+                futures.add(executor.submit(() -> copySlice(scroll, sliceNumber, throttle, copied)));
+            }
+
+            for (Future<Long> future : futures)
+            {
+                future.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted reindex of " + sourceIndex, e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException("Cannot reindex " + sourceIndex + " to " + targetIndex, e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        if (checkpointDirectory != null)
+        {
+            for (int slice = 0; slice < slices; slice++)
+            {
+                Files.deleteIfExists(checkpointFile(slice));
+            }
+        }
+
+        long millis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        LOGGER.info("Copied {} documents from {} to {} in {} ms, {} docs/sec", copied.get(), sourceIndex, targetIndex, millis, copied.get() * 1000L / millis);
+        return copied.get();
+    }
+
+    private long copySlice(SlicedScroll scroll, int slice, Throttle throttle, AtomicLong copied) throws IOException
+    {
+        Properties checkpoint = readCheckpoint(slice);
+        if (Boolean.parseBoolean(checkpoint.getProperty("done")))
+        {
+            LOGGER.info("Slice {} of {} is already copied", slice, sourceIndex);
+            return 0L;
+        }
+
+        String lastValue = checkpoint.getProperty("last");
+        long count = scroll.scroll(slice, query, sortField, lastValue == null ? null : Long.valueOf(lastValue), hits ->
+        {
+            BulkRequest bulkRequest = new BulkRequest().setRefreshPolicy(RefreshPolicy.NONE);
+            for (SearchHit hit : hits)
+            {
+                BytesReference source = transform == null ? hit.getSourceRef() : transform.apply(hit.getSourceRef());
+                if (source != null)
+                {
+                    bulkRequest.add(new IndexRequest(targetIndex).id(hit.getId()).source(source, detect(source).xContentType()));
+                }
+            }
+
+            throttle.acquire(hits.length);
+            if (bulkRequest.numberOfActions() > 0)
+            {
+                BulkResponse response = client.bulk(bulkRequest, RequestOptions.DEFAULT);
+                if (response.hasFailures())
+                {
+                    throw new IllegalStateException("Cannot copy slice " + slice + ": " + response.buildFailureMessage());
+                }
+            }
+
+            copied.addAndGet(bulkRequest.numberOfActions());
+            checkpoint.setProperty("last", String.valueOf(((Number) hits[hits.length - 1].getSortValues()[0]).longValue()));
+            saveCheckpoint(slice, checkpoint);
+        });
+
+        checkpoint.setProperty("done", "true");
+        saveCheckpoint(slice, checkpoint);
+        LOGGER.debug("Copied slice {} of {}: {} documents", slice, sourceIndex, count);
+        return count;
+    }
+
+    private static WireFormat detect(BytesReference source)
+    {
+        BytesRef bytes = source.toBytesRef();
+        return WireFormat.detect(bytes.bytes, bytes.offset, bytes.length);
+    }
+
+    private Properties readCheckpoint(int slice) throws IOException
+    {
+        Properties checkpoint = new Properties();
+        if (checkpointDirectory != null && Files.exists(checkpointFile(slice)))
+        {
+            try (InputStream in = Files.newInputStream(checkpointFile(slice)))
+            {
+                checkpoint.load(in);
+            }
+        }
+        return checkpoint;
+    }
+
+    private void saveCheckpoint(int slice, Properties checkpoint) throws IOException
+    {
+        if (checkpointDirectory == null)
+        {
+            return;
+        }
+
+        Files.createDirectories(checkpointDirectory);
+        Path tempFile = checkpointDirectory.resolve(checkpointFile(slice).getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile))
+        {
+            checkpoint.store(out, null);
+        }
+        Files.move(tempFile, checkpointFile(slice), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path checkpointFile(int slice)
+    {
+        return checkpointDirectory.resolve(String.format("reindex-%s-%s-%d-of-%d.properties", sourceIndex, targetIndex, slice, slices));
+    }
+
+    /**
+     * Decodes a document into entity, applies the function and encodes the result in the same format.
+     */
+    private static class Transform<T extends BaseEntity>
+    {
+        private final Class<T> type;
+        private final UnaryOperator<T> function;
+
+        private Transform(Class<T> type, UnaryOperator<T> function)
+        {
+            this.type = type;
+            this.function = function;
+        }
+
+        private BytesReference apply(BytesReference source) throws IOException
+        {
+            WireFormat format = detect(source);
+            BytesRef bytes = source.toBytesRef();
+            T entity = ObjectMapperUtil.readerFor(type, format).readValue(bytes.bytes, bytes.offset, bytes.length);
+            T result = function.apply(entity);
+            return result == null ? null : ObjectMapperUtil.serializeToBytes(result, format);
+        }
+    }
+
+    /**
+     * Limits the number of documents per second of all workers, a worker waits until its documents fit into the rate.
+     */
+    private static class Throttle
+    {
+        private final double nanosPerDocument;
+        private long nextFreeNanos = System.nanoTime();
+
+        private Throttle(double documentsPerSecond)
+        {
+            this.nanosPerDocument = TimeUnit.SECONDS.toNanos(1) / documentsPerSecond;
+        }
+
+        private void acquire(int documents) throws InterruptedIOException
+        {
+            if (nanosPerDocument <= 0d)
+            {
+                return;
+            }
+
+            long waitNanos;
+            synchronized (this)
+            {
+                long now = System.nanoTime();
+                long start = Math.max(now, nextFreeNanos);
+                nextFreeNanos = start + (long) (documents * nanosPerDocument);
+                waitNanos = start - now;
+            }
+
+            if (waitNanos > 0)
+            {
+                try
+                {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while throttling");
+                }
+            }
+        }
+    }
+}
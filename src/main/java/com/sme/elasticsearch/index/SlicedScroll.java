@@ -0,0 +1,129 @@
+package com.sme.elasticsearch.index;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.search.ClearScrollRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchScrollRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.slice.SliceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+
+/**
+ * <p>
+ * Reads an index by independent scroll slices, so every slice can be read by its own thread.
+ * </p>
+ * Hits of a slice are sorted by a numeric field, so a slice can be resumed after the last read value by a range query.
+ * Documents are split into slices by "_id", so the same document belongs to the same slice while the number of slices is the same.
+ */
+public class SlicedScroll
+{
+    private final RestHighLevelClient client;
+    private final String index;
+    private final int slices;
+    private final int pageSize;
+    private final TimeValue keepAlive;
+
+    /**
+     * Create sliced scroll.
+     *
+     * @param client The rest client;
+     * @param index The index to read;
+     * @param slices The number of slices;
+     * @param pageSize The number of hits in a page;
+     * @param keepAlive The time to keep a scroll context between pages.
+     */
+    public SlicedScroll(RestHighLevelClient client, String index, int slices, int pageSize, TimeValue keepAlive)
+    {
+        if (slices < 1)
+        {
+            throw new IllegalArgumentException("Expects at least one slice");
+        }
+
+        this.client = client;
+        this.index = index;
+        this.slices = slices;
+        this.pageSize = pageSize;
+        this.keepAlive = keepAlive;
+    }
+
+    public int getSlices()
+    {
+        return slices;
+    }
+
+    /**
+     * Read all pages of the given slice.
+     *
+     * @param slice The number of slice from 0;
+     * @param query The query of documents;
+     * @param sortField The numeric field to sort hits of the slice;
+     * @param after The value of sort field to read documents after it or null to read all documents;
+     * @param consumer The consumer of pages;
+     * @return Returns the number of read hits.
+     * @throws IOException when a request cannot be performed or the consumer fails.
+     */
+    public long scroll(int slice, QueryBuilder query, String sortField, Long after, PageConsumer consumer) throws IOException
+    {
+        QueryBuilder sliceQuery = after == null
+            ? query
+            : QueryBuilders.boolQuery().filter(query).filter(QueryBuilders.rangeQuery(sortField).gt(after));
+
+        SearchSourceBuilder source = new SearchSourceBuilder()
+                .query(sliceQuery)
+                .size(pageSize)
+                .sort(sortField, SortOrder.ASC);
+        if (slices > 1)
+        {
+            source.slice(new SliceBuilder(slice, slices));
+        }
+
+        SearchResponse response = client.search(new SearchRequest(index).source(source).scroll(keepAlive), RequestOptions.DEFAULT);
+        String scrollId = response.getScrollId();
+        long count = 0;
+        try
+        {
+            while (response.getHits().getHits().length > 0)
+            {
+                SearchHit[] hits = response.getHits().getHits();
+                consumer.accept(hits);
+                count += hits.length;
+
+                response = client.scroll(new SearchScrollRequest(scrollId).scroll(keepAlive), RequestOptions.DEFAULT);
+                scrollId = response.getScrollId();
+            }
+        }
+        finally
+        {
+            if (scrollId != null)
+            {
+                ClearScrollRequest clearScrollRequest = new ClearScrollRequest();
+                clearScrollRequest.addScrollId(scrollId);
+                client.clearScroll(clearScrollRequest, RequestOptions.DEFAULT);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Consumes a page of hits.
+     */
+    @FunctionalInterface
+    public interface PageConsumer
+    {
+        /**
+         * Accept hits of a page.
+         *
+         * @param hits The hits sorted by the sort field.
+         * @throws IOException when hits cannot be processed.
+         */
+        void accept(SearchHit[] hits) throws IOException;
+    }
+}
@@ -0,0 +1,331 @@
+package com.sme.elasticsearch.index;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
+import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
+import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.client.GetAliasesResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import com.sme.elasticsearch.bulk.BulkIndexer;
+import com.sme.elasticsearch.bulk.BulkIndexerSettings;
+
+/**
+ * <p>
+ * Changes mapping of an index without downtime of search traffic, writes into the alias are refused from the start of a deploy until the swap.
+ * </p>
+ * Clients work with an alias (for example "products"), which points to a versioned physical index ("products_v1").
+ * {@link #deploy(String, Loader)} creates the next version ("products_v2") with the given mapping,
+ * loads it by {@link BulkLoadSession} with disabled refresh and replicas, warms it by the configured queries
+ * and swaps the alias by a single atomic request, so searches see either the old or the new version, never both or none.
+ * The old versions of the alias are deleted after the swap, other versions like a newer version loaded by a concurrent deploy are kept.
+ * <p>
+ * Writes into the old version during the load are not copied into the new version, so the old version is blocked for writes
+ * ("index.blocks.write") until the swap. Writes into the alias are refused by the block (403) instead of being lost
+ * with the old version and should be repeated after the swap.
+ * </p>
+ * <p>
+ * A failed deploy deletes the new version, removes the write block of the old version and keeps the alias untouched.
+ * A physical index with the same name as the alias (created before the manager was used) is replaced by the same atomic request.
+ * </p>
+ *
+ * <pre>
+ * String index = new VersionedIndexManager(client, "products", stateDirectory)
+ *         .addWarmQuery(new SearchSourceBuilder().query(QueryBuilders.matchAllQuery()))
+ *         .deploy(mapping, (name, indexer) -&gt; products.forEach(p -&gt; indexer.index(name, p)));
+ * </pre>
+ */
+public class VersionedIndexManager
+{
+    private static final Logger LOGGER = LogManager.getLogger(VersionedIndexManager.class);
+
+    private static final String VERSION_SEPARATOR = "_v";
+    private static final String WRITE_BLOCK_SETTING = "index.blocks.write";
+
+    private final RestHighLevelClient client;
+    private final String alias;
+    private final Path stateDirectory;
+    private final List<SearchSourceBuilder> warmQueries = new ArrayList<>();
+
+    private Settings settings = Settings.EMPTY;
+    private int maxNumSegments;
+    private BulkIndexerSettings bulkIndexerSettings = new BulkIndexerSettings();
+
+    /**
+     * Create manager of the given alias.
+     *
+     * @param client The rest client;
+     * @param alias The alias used by clients;
+     * @param stateDirectory The directory of {@link BulkLoadSession} state.
+     */
+    public VersionedIndexManager(RestHighLevelClient client, String alias, Path stateDirectory)
+    {
+        this.client = client;
+        this.alias = alias;
+        this.stateDirectory = stateDirectory;
+    }
+
+    /**
+     * The settings of created versions, for example the number of shards.
+     */
+    public VersionedIndexManager setSettings(Settings settings)
+    {
+        this.settings = settings;
+        return this;
+    }
+
+    /**
+     * The number of segments to force merge a loaded version, zero or negative value (by default) disables the force merge.
+     * A merge which outlasts the socket timeout of the client goes on in the cluster and does not fail the deploy.
+     */
+    public VersionedIndexManager setMaxNumSegments(int maxNumSegments)
+    {
+        this.maxNumSegments = maxNumSegments;
+        return this;
+    }
+
+    /**
+     * The settings of bulk indexer to load a version.
+     */
+    public VersionedIndexManager setBulkIndexerSettings(BulkIndexerSettings bulkIndexerSettings)
+    {
+        this.bulkIndexerSettings = bulkIndexerSettings;
+        return this;
+    }
+
+    /**
+     * Add a query executed against a loaded version before the swap to fill caches and load global ordinals.
+     */
+    public VersionedIndexManager addWarmQuery(SearchSourceBuilder query)
+    {
+        warmQueries.add(query);
+        return this;
+    }
+
+    /**
+     * Get the physical index of the alias.
+     *
+     * @return Returns the index name or null if the alias does not exist.
+     * @throws IOException when a request cannot be performed.
+     */
+    public String getCurrentIndex() throws IOException
+    {
+        Set<String> indices = getAliasIndices();
+        return indices.isEmpty() ? null : indices.iterator().next();
+    }
+
+    /**
+     * Create, load and warm the next version with the given mapping, then swap the alias and delete the old versions.
+     *
+     * @param mapping The json mapping of the new version;
+     * @param loader The loader of documents;
+     * @return Returns the name of the new version.
+     * @throws IOException when a request cannot be performed or the loader fails.
+     */
+    public String deploy(String mapping, Loader loader) throws IOException
+    {
+        String index = alias + VERSION_SEPARATOR + nextVersion();
+        client.indices().create(new CreateIndexRequest(index)
+                .settings(settings)
+                .mapping(mapping, XContentType.JSON), RequestOptions.DEFAULT);
+        LOGGER.info("Created {} of {}", index, alias);
+
+        Set<String> oldIndices = getOldIndices();
+        try
+        {
+            blockWrites(oldIndices, true);
+            load(index, loader);
+            warm(index);
+            swap(index, oldIndices);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            LOGGER.error("Delete {} after failed deploy", index, e);
+            try
+            {
+                blockWrites(oldIndices, false);
+                client.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+            }
+            catch (IOException | RuntimeException suppressed)
+            {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+
+        // Only versions replaced by the swap are deleted, a physical index with the alias name is deleted by the swap
+        oldIndices.remove(alias);
+        for (String oldIndex : oldIndices)
+        {
+            client.indices().delete(new DeleteIndexRequest(oldIndex), RequestOptions.DEFAULT);
+            LOGGER.info("Deleted {} of {}", oldIndex, alias);
+        }
+        return index;
+    }
+
+    private void load(String index, Loader loader) throws IOException
+    {
+        FailureListener listener = new FailureListener();
+        try (BulkLoadSession session = BulkLoadSession.open(client, stateDirectory, maxNumSegments, index))
+        {
+            loader.load(index, session.bulkIndexer(bulkIndexerSettings, listener));
+        }
+
+        if (listener.failedItems.get() > 0)
+        {
+            throw new IllegalStateException("Cannot load " + listener.failedItems.get() + " documents into " + index + ": " + listener.failure.get());
+        }
+    }
+
+    private void warm(String index) throws IOException
+    {
+        for (SearchSourceBuilder query : warmQueries)
+        {
+            client.search(new SearchRequest(index).source(query), RequestOptions.DEFAULT);
+        }
+        LOGGER.debug("Warmed {} by {} queries", index, warmQueries.size());
+    }
+
+    private void swap(String index, Set<String> oldIndices) throws IOException
+    {
+        IndicesAliasesRequest request = new IndicesAliasesRequest();
+        for (String oldIndex : oldIndices)
+        {
+            // The physical index blocks the alias name, it is deleted by the same atomic request
+            request.addAliasAction(oldIndex.equals(alias)
+                ? AliasActions.removeIndex().index(oldIndex)
+                : AliasActions.remove().index(oldIndex).alias(alias));
+        }
+        request.addAliasAction(AliasActions.add().index(index).alias(alias).writeIndex(true));
+
+        // The request fails if a concurrent deploy has already moved the alias from the old indices
+        client.indices().updateAliases(request, RequestOptions.DEFAULT);
+        LOGGER.info("Swapped {} from {} to {}", alias, oldIndices, index);
+    }
+
+    private void blockWrites(Set<String> indices, boolean blocked) throws IOException
+    {
+        if (indices.isEmpty())
+        {
+            return;
+        }
+
+        // Unblocked indices get back the default instead of an explicit false
+        Settings.Builder blockSettings = blocked
+            ? Settings.builder().put(WRITE_BLOCK_SETTING, true)
+            : Settings.builder().putNull(WRITE_BLOCK_SETTING);
+        client.indices().putSettings(new UpdateSettingsRequest(indices.toArray(new String[0])).settings(blockSettings), RequestOptions.DEFAULT);
+        LOGGER.info("{} writes into {}", blocked ? "Blocked" : "Unblocked", indices);
+    }
+
+    private Set<String> getOldIndices() throws IOException
+    {
+        Set<String> indices = getAliasIndices();
+        if (indices.isEmpty() && client.indices().exists(new GetIndexRequest(alias), RequestOptions.DEFAULT))
+        {
+            indices.add(alias);
+        }
+        return indices;
+    }
+
+    private int nextVersion() throws IOException
+    {
+        int version = 0;
+        for (String index : getVersions())
+        {
+            version = Math.max(version, Integer.parseInt(index.substring(alias.length() + VERSION_SEPARATOR.length())));
+        }
+        return version + 1;
+    }
+
+    private Set<String> getVersions() throws IOException
+    {
+        Set<String> versions = new TreeSet<>();
+        for (String index : client.indices().get(new GetIndexRequest(alias + VERSION_SEPARATOR + "*"), RequestOptions.DEFAULT).getIndices())
+        {
+            if (index.substring(alias.length() + VERSION_SEPARATOR.length()).matches("\\d+"))
+            {
+                versions.add(index);
+            }
+        }
+        return versions;
+    }
+
+    private Set<String> getAliasIndices() throws IOException
+    {
+        // Not existing alias is returned as an empty response with 404 status
+        GetAliasesResponse response = client.indices().getAlias(new GetAliasesRequest(alias), RequestOptions.DEFAULT);
+        return new TreeSet<>(response.getAliases().keySet());
+    }
+
+    /**
+     * Loads documents into a new version.
+     */
+    @FunctionalInterface
+    public interface Loader
+    {
+        /**
+         * Add documents of the new version.
+         *
+         * @param index The name of the new version;
+         * @param indexer The bulk indexer, it is flushed and closed after the loader.
+         * @throws IOException when documents cannot be read.
+         */
+        void load(String index, BulkIndexer indexer) throws IOException;
+    }
+
+    /**
+     * Counts failed documents of the load.
+     */
+    private static class FailureListener implements BulkProcessor.Listener
+    {
+        private final AtomicLong failedItems = new AtomicLong();
+        private final AtomicReference<String> failure = new AtomicReference<>();
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request)
+        {
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response)
+        {
+            if (response.hasFailures())
+            {
+                failedItems.addAndGet(Arrays.stream(response.getItems()).filter(BulkItemResponse::isFailed).count());
+                failure.compareAndSet(null, response.buildFailureMessage());
+            }
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable e)
+        {
+            failedItems.addAndGet(request.numberOfActions());
+            failure.compareAndSet(null, e.toString());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.sme.elasticsearch.journal;
+
+/**
+ * The position of a record in {@link WriteAheadJournal}: the number of segment and the offset in the segment.
+ */
+public final class JournalPosition implements Comparable<JournalPosition>
+{
+    private final long segment;
+    private final int offset;
+
+    public JournalPosition(long segment, int offset)
+    {
+        this.segment = segment;
+        this.offset = offset;
+    }
+
+    public long getSegment()
+    {
+        return segment;
+    }
+
+    public int getOffset()
+    {
+        return offset;
+    }
+
+    @Override
+    public int compareTo(JournalPosition other)
+    {
+        int result = Long.compare(segment, other.segment);
+        return result != 0 ? result : Integer.compare(offset, other.offset);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass())
+        {
+            return false;
+        }
+
+        JournalPosition other = (JournalPosition) obj;
+        return segment == other.segment && offset == other.offset;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return 31 * Long.hashCode(segment) + offset;
+    }
+
+    @Override
+    public String toString()
+    {
+        return segment + ":" + offset;
+    }
+}
@@ -0,0 +1,255 @@
+package com.sme.elasticsearch.journal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.lucene.uid.Versions;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.VersionType;
+
+/**
+ * Encodes write requests into journal records and back.
+ * <p>
+ * A record is [int length][int crc32][byte operation][payload], where the length covers the operation and the payload
+ * and the checksum is calculated of them. Zero length marks the end of written records in a segment.
+ * </p>
+ * <p>
+ * The payload keeps everything which changes the result of a replayed request: routing, conditions of optimistic concurrency
+ * and version, "create" operation type and pipeline of index requests, "doc_as_upsert", upsert document and retries of updates.
+ * </p>
+ */
+final class JournalRecordCodec
+{
+    static final int HEADER_SIZE = 8;
+
+    private static final byte INDEX = 1;
+    private static final byte DELETE = 2;
+    private static final byte UPDATE = 3;
+
+    // private class
+    private JournalRecordCodec()
+    {
+    }
+
+    /**
+     * Encode the given request.
+     *
+     * @param request The index, delete or partial document update request;
+     * @return Returns the record with header.
+     */
+    static byte[] encode(DocWriteRequest<?> request)
+    {
+        if (request.id() == null)
+        {
+            // A replayed request with generated id creates a duplicate
+            throw new IllegalArgumentException("Expects request with id, but " + request);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes))
+        {
+            // Placeholder of header
+            out.writeLong(0L);
+            if (request instanceof IndexRequest)
+            {
+                IndexRequest indexRequest = (IndexRequest) request;
+                out.writeByte(INDEX);
+                writeKey(out, request);
+                out.writeBoolean(indexRequest.opType() == DocWriteRequest.OpType.CREATE);
+                writeNullableString(out, indexRequest.getPipeline());
+                writeSource(out, indexRequest.getContentType(), indexRequest.source());
+            }
+            else if (request instanceof DeleteRequest)
+            {
+                out.writeByte(DELETE);
+                writeKey(out, request);
+            }
+            else if (request instanceof UpdateRequest && ((UpdateRequest) request).doc() != null && ((UpdateRequest) request).script() == null)
+            {
+                UpdateRequest updateRequest = (UpdateRequest) request;
+                IndexRequest doc = updateRequest.doc();
+                IndexRequest upsert = updateRequest.upsertRequest();
+                out.writeByte(UPDATE);
+                writeKey(out, request);
+                out.writeBoolean(updateRequest.docAsUpsert());
+                out.writeInt(updateRequest.retryOnConflict());
+                writeSource(out, doc.getContentType(), doc.source());
+                out.writeBoolean(upsert != null);
+                if (upsert != null)
+                {
+                    writeSource(out, upsert.getContentType(), upsert.source());
+                }
+            }
+            else
+            {
+                throw new IllegalArgumentException("Expects index, delete or partial document update request, but " + request);
+            }
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+
+        byte[] record = bytes.toByteArray();
+        int length = record.length - HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(record, HEADER_SIZE, length);
+        ByteBuffer.wrap(record).putInt(length).putInt((int) crc.getValue());
+        return record;
+    }
+
+    /**
+     * Get the length of the record at the given offset.
+     *
+     * @param buffer The segment;
+     * @param offset The offset of the record;
+     * @param limit The end of written records;
+     * @return Returns the length of the whole record or zero if there is no valid record.
+     */
+    static int recordLength(ByteBuffer buffer, int offset, int limit)
+    {
+        if (offset + HEADER_SIZE > limit)
+        {
+            return 0;
+        }
+
+        int length = buffer.getInt(offset);
+        if (length <= 0 || offset + HEADER_SIZE + length > limit)
+        {
+            return 0;
+        }
+
+        CRC32 crc = new CRC32();
+        ByteBuffer data = buffer.duplicate();
+        data.limit(offset + HEADER_SIZE + length).position(offset + HEADER_SIZE);
+        crc.update(data);
+        // Torn record of a crashed process
+        return (int) crc.getValue() == buffer.getInt(offset + 4) ? HEADER_SIZE + length : 0;
+    }
+
+    /**
+     * Decode the request at the given offset, the record must be checked by {@link #recordLength(ByteBuffer, int, int)}.
+     *
+     * @param buffer The segment;
+     * @param offset The offset of the record;
+     * @return Returns the request.
+     */
+    static DocWriteRequest<?> decode(ByteBuffer buffer, int offset)
+    {
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset + HEADER_SIZE);
+        byte operation = in.get();
+        String index = readString(in);
+        String id = readString(in);
+        switch (operation)
+        {
+            case INDEX:
+            {
+                IndexRequest request = readOptions(in, new IndexRequest(index).id(id));
+                request.create(in.get() != 0);
+                request.setPipeline(readNullableString(in));
+                XContentType type = XContentType.values()[in.get()];
+                return request.source(readBytes(in), type);
+            }
+            case DELETE:
+                return readOptions(in, new DeleteRequest(index, id));
+            case UPDATE:
+            {
+                UpdateRequest request = readOptions(in, new UpdateRequest(index, id));
+                request.docAsUpsert(in.get() != 0);
+                request.retryOnConflict(in.getInt());
+                XContentType type = XContentType.values()[in.get()];
+                request.doc(BytesReference.toBytes(readBytes(in)), type);
+                if (in.get() != 0)
+                {
+                    XContentType upsertType = XContentType.values()[in.get()];
+                    request.upsert(BytesReference.toBytes(readBytes(in)), upsertType);
+                }
+                return request;
+            }
+            default:
+                throw new IllegalStateException("Unknown operation " + operation + " at " + offset);
+        }
+    }
+
+    private static void writeKey(DataOutputStream out, DocWriteRequest<?> request) throws IOException
+    {
+        writeString(out, request.index());
+        writeString(out, request.id());
+        writeNullableString(out, request.routing());
+        // A replayed conditional write must stay conditional
+        out.writeLong(request.ifSeqNo());
+        out.writeLong(request.ifPrimaryTerm());
+        out.writeLong(request.version());
+        out.writeByte(request.versionType().getValue());
+    }
+
+    private static <R extends DocWriteRequest<R>> R readOptions(ByteBuffer in, R request)
+    {
+        request.routing(readNullableString(in));
+        request.setIfSeqNo(in.getLong());
+        request.setIfPrimaryTerm(in.getLong());
+        long version = in.getLong();
+        VersionType versionType = VersionType.fromValue(in.get());
+        // Update requests do not support versions, their defaults are not set
+        if (version != Versions.MATCH_ANY || versionType != VersionType.INTERNAL)
+        {
+            request.version(version);
+            request.versionType(versionType);
+        }
+        return request;
+    }
+
+    private static void writeSource(DataOutputStream out, XContentType type, BytesReference source) throws IOException
+    {
+        out.writeByte(type.ordinal());
+        out.writeInt(source.length());
+        source.writeTo(out);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if (value != null)
+        {
+            writeString(out, value);
+        }
+    }
+
+    private static String readNullableString(ByteBuffer in)
+    {
+        return in.get() != 0 ? readString(in) : null;
+    }
+
+    private static String readString(ByteBuffer in)
+    {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static BytesReference readBytes(ByteBuffer in)
+    {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new BytesArray(bytes);
+    }
+}
@@ -0,0 +1,309 @@
+package com.sme.elasticsearch.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.rest.RestStatus;
+
+import com.sme.elasticsearch.bulk.BulkRetry;
+import com.sme.elasticsearch.bulk.DeadLetterSink;
+
+/**
+ * <p>
+ * Drains {@link WriteAheadJournal} into bulk requests with at-least-once semantics.
+ * </p>
+ * A batch of records after the checkpoint is sent as one bulk request, the checkpoint is moved only when every item
+ * of the batch is indexed or sent to {@link DeadLetterSink}. While the cluster is unavailable or rejects items
+ * the same batch (or its rejected items) is sent again after exponential backoff, producers keep appending to the journal.
+ * A batch refused by the cluster as a whole with a client error, like a mapping error, a too large request or a missing index,
+ * is never accepted by retries, so it is split into halves until the poisoned records are sent to {@link DeadLetterSink} alone.
+ * A crash between a completed bulk request and the checkpoint replays the batch after restart.
+ */
+public class JournalReplayer implements Closeable
+{
+    private static final Logger LOGGER = LogManager.getLogger(JournalReplayer.class);
+
+    private final WriteAheadJournal journal;
+    private final BiConsumer<BulkRequest, ActionListener<BulkResponse>> consumer;
+    private final DeadLetterSink deadLetterSink;
+    private final int bulkActions;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong deadLetters = new AtomicLong();
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Create replayer into the given client.
+     *
+     * @param journal The journal;
+     * @param client The rest client;
+     * @param deadLetterSink The sink of permanently failed requests;
+     * @param bulkActions The maximum number of records in a bulk request;
+     * @param initialBackoffMillis The delay before the first retry;
+     * @param maxBackoffMillis The maximum delay between retries.
+     */
+    public JournalReplayer(WriteAheadJournal journal, RestHighLevelClient client, DeadLetterSink deadLetterSink, int bulkActions, long initialBackoffMillis, long maxBackoffMillis)
+    {
+        this(journal, (request, listener) -> client.bulkAsync(request, RequestOptions.DEFAULT, listener), deadLetterSink, bulkActions, initialBackoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * Create replayer into the given consumer.
+     *
+     * @param journal The journal;
+     * @param consumer The asynchronous executor of bulk requests;
+     * @param deadLetterSink The sink of permanently failed requests;
+     * @param bulkActions The maximum number of records in a bulk request;
+     * @param initialBackoffMillis The delay before the first retry;
+     * @param maxBackoffMillis The maximum delay between retries.
+     */
+    public JournalReplayer(WriteAheadJournal journal,
+            BiConsumer<BulkRequest, ActionListener<BulkResponse>> consumer,
+            DeadLetterSink deadLetterSink,
+            int bulkActions,
+            long initialBackoffMillis,
+            long maxBackoffMillis)
+    {
+        this.journal = journal;
+        this.consumer = consumer;
+        this.deadLetterSink = deadLetterSink;
+        this.bulkActions = bulkActions;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * Start replaying in a background thread.
+     */
+    public synchronized void start()
+    {
+        if (thread != null)
+        {
+            throw new IllegalStateException("Replayer is already started");
+        }
+
+        running = true;
+        thread = new Thread(this::run, "journal-replayer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Replay one batch after the checkpoint.
+     *
+     * @return Returns the number of replayed records.
+     * @throws InterruptedException if interrupted while waiting for the cluster.
+     */
+    public int replayBatch() throws InterruptedException
+    {
+        WriteAheadJournal.Batch batch = journal.read(journal.getCheckpoint(), bulkActions);
+        replay(batch.getRequests());
+
+        try
+        {
+            journal.commit(batch.getEnd());
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+        replayed.addAndGet(batch.getRequests().size());
+        return batch.getRequests().size();
+    }
+
+    /**
+     * Get the number of replayed records, including records sent to the dead letter sink.
+     *
+     * @return Returns the number of records.
+     */
+    public long getReplayed()
+    {
+        return replayed.get();
+    }
+
+    /**
+     * Get the number of records sent to the dead letter sink.
+     *
+     * @return Returns the number of records.
+     */
+    public long getDeadLetters()
+    {
+        return deadLetters.get();
+    }
+
+    /**
+     * Stop replaying, not committed records are replayed by the next replayer.
+     */
+    @Override
+    public synchronized void close()
+    {
+        running = false;
+        if (thread != null)
+        {
+            thread.interrupt();
+            try
+            {
+                thread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    private void run()
+    {
+        while (running)
+        {
+            try
+            {
+                if (journal.awaitAppend(journal.getCheckpoint(), 1, TimeUnit.SECONDS))
+                {
+                    replayBatch();
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (RuntimeException e)
+            {
+                LOGGER.error("Cannot replay journal", e);
+                sleepQuietly(maxBackoffMillis);
+            }
+        }
+    }
+
+    private void replay(List<DocWriteRequest<?>> requests) throws InterruptedException
+    {
+        List<DocWriteRequest<?>> pending = requests;
+        int attempt = 0;
+        while (!pending.isEmpty())
+        {
+            BulkRequest request = new BulkRequest();
+            pending.forEach(request::add);
+
+            BulkResponse response;
+            try
+            {
+                response = send(request);
+            }
+            catch (ExecutionException e)
+            {
+                Throwable failure = e.getCause();
+                if (!isPermanent(failure))
+                {
+                    long backoff = BulkRetry.backoffMillis(attempt++, initialBackoffMillis, maxBackoffMillis);
+                    LOGGER.warn("Cannot replay {} records, retry in {} ms: {}", pending.size(), backoff, failure.toString());
+                    Thread.sleep(backoff);
+                    continue;
+                }
+
+                if (pending.size() == 1)
+                {
+                    DocWriteRequest<?> itemRequest = pending.get(0);
+                    Exception exception = failure instanceof Exception ? (Exception) failure : new ElasticsearchException(failure);
+                    deadLetter(itemRequest, new BulkItemResponse.Failure(itemRequest.index(), itemRequest.type(), itemRequest.id(), exception));
+                    return;
+                }
+
+                // One poisoned record fails the whole request, so halves are sent separately in order of the journal
+                LOGGER.warn("Cannot replay {} records, split them: {}", pending.size(), failure.toString());
+                int half = pending.size() / 2;
+                replay(pending.subList(0, half));
+                replay(pending.subList(half, pending.size()));
+                return;
+            }
+
+            List<DocWriteRequest<?>> rejected = new ArrayList<>();
+            BulkItemResponse[] items = response.getItems();
+            for (int i = 0; i < items.length; i++)
+            {
+                if (!items[i].isFailed())
+                {
+                    continue;
+                }
+
+                if (BulkRetry.isRetryable(items[i].getFailure().getStatus()))
+                {
+                    rejected.add(pending.get(i));
+                }
+                else
+                {
+                    deadLetter(pending.get(i), items[i].getFailure());
+                }
+            }
+
+            pending = rejected;
+            if (!pending.isEmpty())
+            {
+                Thread.sleep(BulkRetry.backoffMillis(attempt++, initialBackoffMillis, maxBackoffMillis));
+            }
+        }
+    }
+
+    private BulkResponse send(BulkRequest request) throws InterruptedException, ExecutionException
+    {
+        CompletableFuture<BulkResponse> future = new CompletableFuture<>();
+        try
+        {
+            consumer.accept(request, ActionListener.wrap(future::complete, future::completeExceptionally));
+        }
+        catch (RuntimeException e)
+        {
+            future.completeExceptionally(e);
+        }
+        return future.get();
+    }
+
+    private void deadLetter(DocWriteRequest<?> request, BulkItemResponse.Failure failure)
+    {
+        deadLetters.incrementAndGet();
+        deadLetterSink.accept(request, failure);
+    }
+
+    // Failures without response like refused connections have status 500, so they are retried
+    private static boolean isPermanent(Throwable failure)
+    {
+        RestStatus status = ExceptionsHelper.status(failure);
+        return status.getStatus() >= 400 && status.getStatus() < 500 && !BulkRetry.isRetryable(status);
+    }
+
+    private void sleepQuietly(long millis)
+    {
+        try
+        {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
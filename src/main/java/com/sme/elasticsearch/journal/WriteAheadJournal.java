@@ -0,0 +1,418 @@
+package com.sme.elasticsearch.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+
+import com.sme.elasticsearch.model.BaseEntity;
+
+import util.ObjectMapperUtil;
+import util.WireFormat;
+
+/**
+ * <p>
+ * Durable write-behind queue of index, delete and partial update requests.
+ * </p>
+ * Requests are appended to memory-mapped segment files of fixed size, so a producer pays for the copy into page cache
+ * instead of a round trip to the cluster. {@link JournalReplayer} drains the journal into bulk requests and moves
+ * the checkpoint after every completed bulk, segments before the checkpoint are deleted.
+ * <p>
+ * Records are protected by crc32, a torn record left by a crashed process ends the segment and is overwritten after restart.
+ * Appended records survive a crash of the process as soon as they are in page cache; to survive a crash of the host
+ * the journal must be opened with sync on append or {@link #sync()} must be called periodically.
+ * </p>
+ * Requests must have ids: the journal provides at-least-once delivery, so a request can be replayed twice after a crash.
+ */
+public class WriteAheadJournal implements Closeable
+{
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final Logger LOGGER = LogManager.getLogger(WriteAheadJournal.class);
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean syncOnAppend;
+
+    // Segments are never positioned, readers and writer use duplicates
+    private final NavigableMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private long writeSegment;
+    private ByteBuffer writer;
+    private volatile JournalPosition writePosition;
+    private volatile JournalPosition checkpoint;
+    private volatile boolean closed;
+
+    /**
+     * Open journal in the given directory, existing segments and checkpoint are recovered.
+     *
+     * @param directory The directory of segments;
+     * @param segmentSize The size of segment file;
+     * @param syncOnAppend Whether every append is forced to the storage device;
+     * @throws IOException when the journal cannot be opened.
+     */
+    public WriteAheadJournal(Path directory, int segmentSize, boolean syncOnAppend) throws IOException
+    {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncOnAppend = syncOnAppend;
+
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX))
+        {
+            for (Path file : files)
+            {
+                String name = file.getFileName().toString();
+                segments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), map(file));
+            }
+        }
+
+        if (segments.isEmpty())
+        {
+            createSegment(0L);
+            writePosition = new JournalPosition(0L, 0);
+        }
+        else
+        {
+            recoverLastSegment();
+        }
+
+        JournalPosition first = new JournalPosition(segments.firstKey(), 0);
+        JournalPosition saved = readCheckpoint();
+        checkpoint = saved == null || saved.compareTo(first) < 0 ? first : saved;
+        LOGGER.info("Opened journal {} with checkpoint {} and end {}", directory, checkpoint, writePosition);
+    }
+
+    /**
+     * Append the given entity as index request encoded in default {@link WireFormat}.
+     *
+     * @param <T> The type of entity;
+     * @param index The index name;
+     * @param entity The entity;
+     * @return Returns the position after the record.
+     * @throws IOException when the record cannot be appended.
+     */
+    public <T extends BaseEntity> JournalPosition index(String index, T entity) throws IOException
+    {
+        WireFormat format = WireFormat.getDefault();
+        return append(new IndexRequest(index)
+                .id(String.valueOf(entity.getId()))
+                .source(ObjectMapperUtil.serializeToBytes(entity, format), format.xContentType()));
+    }
+
+    /**
+     * Append the given request.
+     *
+     * @param request The index, delete or partial document update request with id;
+     * @return Returns the position after the record.
+     * @throws IOException when the record cannot be appended.
+     */
+    public JournalPosition append(DocWriteRequest<?> request) throws IOException
+    {
+        byte[] record = JournalRecordCodec.encode(request);
+        if (record.length > segmentSize)
+        {
+            throw new IllegalArgumentException("Record of " + record.length + " bytes does not fit into segment of " + segmentSize + " bytes");
+        }
+
+        lock.lock();
+        try
+        {
+            if (closed)
+            {
+                throw new IllegalStateException("Journal is closed");
+            }
+
+            if (writer.position() + record.length > segmentSize)
+            {
+                roll();
+            }
+            writer.put(record);
+            if (syncOnAppend)
+            {
+                segments.get(writeSegment).force();
+            }
+
+            writePosition = new JournalPosition(writeSegment, writer.position());
+            appended.signalAll();
+            return writePosition;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read requests starting at the given position.
+     *
+     * @param from The position of the first record;
+     * @param maxRecords The maximum number of requests;
+     * @return Returns requests and the position after them.
+     */
+    public Batch read(JournalPosition from, int maxRecords)
+    {
+        JournalPosition end = writePosition;
+        List<DocWriteRequest<?>> requests = new ArrayList<>();
+        JournalPosition position = from;
+        while (requests.size() < maxRecords && position.compareTo(end) < 0)
+        {
+            MappedByteBuffer segment = segments.get(position.getSegment());
+            if (segment == null)
+            {
+                throw new IllegalStateException("Segment of " + position + " is deleted");
+            }
+
+            int limit = position.getSegment() == end.getSegment() ? end.getOffset() : segmentSize;
+            int length = JournalRecordCodec.recordLength(segment, position.getOffset(), limit);
+            if (length == 0)
+            {
+                if (position.getSegment() == end.getSegment())
+                {
+                    break;
+                }
+                position = new JournalPosition(position.getSegment() + 1, 0);
+                continue;
+            }
+
+            requests.add(JournalRecordCodec.decode(segment, position.getOffset()));
+            position = new JournalPosition(position.getSegment(), position.getOffset() + length);
+        }
+        return new Batch(requests, position);
+    }
+
+    /**
+     * Wait until a record is appended after the given position.
+     *
+     * @param from The position to compare;
+     * @param timeout The maximum time to wait;
+     * @param unit The time unit of timeout;
+     * @return Returns true if there are records after the position.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean awaitAppend(JournalPosition from, long timeout, TimeUnit unit) throws InterruptedException
+    {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try
+        {
+            while (writePosition.compareTo(from) <= 0 && !closed && nanos > 0)
+            {
+                nanos = appended.awaitNanos(nanos);
+            }
+            return writePosition.compareTo(from) > 0;
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Save the position of replayed records and delete segments before it.
+     *
+     * @param position The position after replayed records;
+     * @throws IOException when the checkpoint cannot be saved.
+     */
+    public void commit(JournalPosition position) throws IOException
+    {
+        Path tempFile = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            channel.write(ByteBuffer.wrap((position.getSegment() + " " + position.getOffset()).getBytes(StandardCharsets.US_ASCII)));
+            channel.force(true);
+        }
+        Files.move(tempFile, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpoint = position;
+
+        for (Map.Entry<Long, MappedByteBuffer> entry : segments.headMap(position.getSegment(), false).entrySet())
+        {
+            segments.remove(entry.getKey());
+            Files.deleteIfExists(segmentFile(entry.getKey()));
+        }
+    }
+
+    /**
+     * Get the position after the last replayed record.
+     *
+     * @return Returns the checkpoint.
+     */
+    public JournalPosition getCheckpoint()
+    {
+        return checkpoint;
+    }
+
+    /**
+     * Get the position after the last appended record.
+     *
+     * @return Returns the end of the journal.
+     */
+    public JournalPosition getWritePosition()
+    {
+        return writePosition;
+    }
+
+    /**
+     * Get the number of segment files.
+     *
+     * @return Returns the number of segments.
+     */
+    public int getSegmentCount()
+    {
+        return segments.size();
+    }
+
+    /**
+     * Force appended records to the storage device.
+     */
+    public void sync()
+    {
+        lock.lock();
+        try
+        {
+            segments.get(writeSegment).force();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        lock.lock();
+        try
+        {
+            if (!closed)
+            {
+                closed = true;
+                segments.get(writeSegment).force();
+                appended.signalAll();
+            }
+        }
+        finally
+        {
+            lock.unlock();
+        }
+    }
+
+    private void roll() throws IOException
+    {
+        segments.get(writeSegment).force();
+        createSegment(writeSegment + 1);
+    }
+
+    private void createSegment(long segment) throws IOException
+    {
+        MappedByteBuffer buffer = map(segmentFile(segment));
+        segments.put(segment, buffer);
+        writeSegment = segment;
+        writer = buffer.duplicate();
+    }
+
+    private void recoverLastSegment()
+    {
+        writeSegment = segments.lastKey();
+        MappedByteBuffer buffer = segments.get(writeSegment);
+
+        int offset = 0;
+        int length;
+        while ((length = JournalRecordCodec.recordLength(buffer, offset, segmentSize)) > 0)
+        {
+            offset += length;
+        }
+
+        // Clear a torn record and records persisted out of order after it, so they are never read after new records
+        for (int i = offset; i < segmentSize; i++)
+        {
+            buffer.put(i, (byte) 0);
+        }
+
+        writer = buffer.duplicate();
+        writer.position(offset);
+        writePosition = new JournalPosition(writeSegment, offset);
+    }
+
+    private JournalPosition readCheckpoint() throws IOException
+    {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file))
+        {
+            return null;
+        }
+
+        String[] values = new String(Files.readAllBytes(file), StandardCharsets.US_ASCII).trim().split(" ");
+        return new JournalPosition(Long.parseLong(values[0]), Integer.parseInt(values[1]));
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw"))
+        {
+            raf.setLength(segmentSize);
+            // Mapping is valid after the channel is closed
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private Path segmentFile(long segment)
+    {
+        return directory.resolve(String.format("%019d%s", segment, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Requests read from the journal.
+     */
+    public static final class Batch
+    {
+        private final List<DocWriteRequest<?>> requests;
+        private final JournalPosition end;
+
+        Batch(List<DocWriteRequest<?>> requests, JournalPosition end)
+        {
+            this.requests = Collections.unmodifiableList(requests);
+            this.end = end;
+        }
+
+        public List<DocWriteRequest<?>> getRequests()
+        {
+            return requests;
+        }
+
+        /**
+         * The position after the last request to commit when the requests are completed.
+         */
+        public JournalPosition getEnd()
+        {
+            return end;
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package com.sme.elasticsearch.model;
 
 import java.math.BigDecimal;
+import java.util.Objects;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
 /**
  * Represents a domain of article.
  */
@@ -14,7 +16,9 @@ public class Article extends BaseEntity
 {
     private String name;
     private String description;
-    private BigDecimal price;
+    @JsonSerialize(using = Money.Serializer.class)
+    @JsonDeserialize(using = Money.Deserializer.class)
+    private long price;
     private boolean active;
 
     public String getName()
@@ -39,10 +43,20 @@ public class Article extends BaseEntity
 
     public BigDecimal getPrice()
     {
-        return price;
+        return Money.toDecimal(price);
     }
 
     public void setPrice(BigDecimal price)
+    {
+        this.price = Money.toMinor(price);
+    }
+
+    public long getPriceMinor()
+    {
+        return price;
+    }
+
+    public void setPriceMinor(long price)
     {
         this.price = price;
     }
@@ -60,18 +74,43 @@ public class Article extends BaseEntity
     @Override
     public int hashCode()
     {
-        return HashCodeBuilder.reflectionHashCode(this);
+        int result = id;
+        result = 31 * result + Objects.hashCode(name);
+        result = 31 * result + Objects.hashCode(description);
+        result = 31 * result + Long.hashCode(price);
+        result = 31 * result + Boolean.hashCode(active);
+        return result;
     }
 
     @Override
     public boolean equals(Object obj)
     {
-        return EqualsBuilder.reflectionEquals(this, obj);
+        if (this == obj)
+        {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass())
+        {
+            return false;
+        }
+
+        Article other = (Article) obj;
+        return id == other.id
+            && Objects.equals(name, other.name)
+            && Objects.equals(description, other.description)
+            && price == other.price
+            && active == other.active;
     }
 
     @Override
     public String toString()
     {
-        return ToStringBuilder.reflectionToString(this, ToStringStyle.JSON_STYLE);
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("id", id)
+                .append("name", name)
+                .append("description", description)
+                .append("price", Money.toDecimal(price))
+                .append("active", active)
+                .toString();
     }
 }
@@ -0,0 +1,107 @@
+package com.sme.elasticsearch.model;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * The utility to work with money amounts kept as long number of minor units (cents).
+ * <p>
+ * Amounts are serialized as decimal numbers with two fraction digits,
+ * so ElasticSearch stores them in "scaled_float" fields with {@value #SCALING_FACTOR} scaling factor as exact integer values.
+ * </p>
+ */
+public final class Money
+{
+    public static final int SCALE = 2;
+    public static final int SCALING_FACTOR = 100;
+
+    // private class
+    private Money()
+    {
+    }
+
+    /**
+     * Convert the given decimal amount to minor units.
+     *
+     * @param amount The decimal amount, the amount is rounded to cents;
+     * @return Returns number of minor units.
+     */
+    public static long toMinor(BigDecimal amount)
+    {
+        return amount == null ? 0L : amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Convert the given minor units to decimal amount.
+     *
+     * @param minor The number of minor units;
+     * @return Returns decimal amount with two fraction digits.
+     */
+    public static BigDecimal toDecimal(long minor)
+    {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    /**
+     * Multiply the given amount by quantity.
+     *
+     * @param minor The number of minor units;
+     * @param quantity The quantity;
+     * @return Returns number of minor units.
+     */
+    public static long multiply(long minor, int quantity)
+    {
+        return Math.multiplyExact(minor, quantity);
+    }
+
+    /**
+     * Writes minor units as decimal number.
+     */
+    public static class Serializer extends StdSerializer<Long>
+    {
+        public Serializer()
+        {
+            super(Long.class);
+        }
+
+        @Override
+        public void serialize(Long value, JsonGenerator gen, SerializerProvider provider) throws IOException
+        {
+            gen.writeNumber(toDecimal(value));
+        }
+    }
+
+    /**
+     * Reads decimal number as minor units.
+     * <p>
+     * Documents indexed with float prices may keep values like 10.0099999, such values are rounded to cents.
+     * </p>
+     */
+    public static class Deserializer extends StdDeserializer<Long>
+    {
+        public Deserializer()
+        {
+            super(Long.class);
+        }
+
+        @Override
+        public Long deserialize(JsonParser p, DeserializationContext ctxt) throws IOException
+        {
+            return toMinor(p.getDecimalValue());
+        }
+
+        @Override
+        public Long getNullValue(DeserializationContext ctxt)
+        {
+            return 0L;
+        }
+    }
+}
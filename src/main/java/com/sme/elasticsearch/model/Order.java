@@ -2,29 +2,91 @@ package com.sme.elasticsearch.model;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonProperty.Access;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
 /**
  * Represents domain of order.
+ * <p>
+ * The total amount is updated when items are added, removed or changed and it is stored in the document as "totalAmount" field,
+ * so ElasticSearch can sort, filter and aggregate orders by value.
+ * Articles may be shared by many orders, so the total is recalculated when the order is serialized
+ * and a document never keeps a stale total of a repriced article.
+ * </p>
  */
 public class Order extends BaseEntity
 {
     private List<OrderItem> orderItems = new ArrayList<>();
     private String orderNo;
+    // Running total, a document gets the recalculated value of getDocumentTotalAmount()
+    private transient long totalAmount;
 
+    /**
+     * Get items of the order.
+     * 
+     * @return Returns unmodifiable list, use {@link #addOrderItem(OrderItem)} and {@link #removeOrderItem(OrderItem)} to change items.
+     */
     public List<OrderItem> getOrderItems()
     {
-        return orderItems;
+        return Collections.unmodifiableList(orderItems);
     }
 
+    @JsonProperty("orderItems")
     public void setOrderItems(List<OrderItem> orderItems)
     {
-        this.orderItems = orderItems;
+        for (OrderItem item : this.orderItems)
+        {
+            item.setOrder(null);
+        }
+
+        this.orderItems = orderItems == null ? new ArrayList<>() : new ArrayList<>(orderItems);
+        this.totalAmount = 0L;
+        for (OrderItem item : this.orderItems)
+        {
+            item.setOrder(this);
+            totalAmount += item.getAmountMinor();
+        }
+    }
+
+    /**
+     * Add the item to the order.
+     * 
+     * @param item The item to add.
+     */
+    public void addOrderItem(OrderItem item)
+    {
+        item.setOrder(this);
+        orderItems.add(item);
+        totalAmount += item.getAmountMinor();
+    }
+
+    /**
+     * Remove the given item instance from the order.
+     * 
+     * @param item The item to remove;
+     * @return Returns true if the item is removed.
+     */
+    public boolean removeOrderItem(OrderItem item)
+    {
+        for (int i = 0; i < orderItems.size(); i++)
+        {
+            if (orderItems.get(i) == item)
+            {
+                orderItems.remove(i);
+                item.setOrder(null);
+                totalAmount -= item.getAmountMinor();
+                return true;
+            }
+        }
+        return false;
     }
 
     public String getOrderNo()
@@ -38,32 +100,93 @@ public class Order extends BaseEntity
     }
 
     /**
-     * Calculate total amount.
+     * Get total amount.
      * 
      * @return Returns total amount.
      */
     public BigDecimal getTotalAmount()
     {
-        return orderItems.stream()
-                .map(item -> item.getArticle().getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return Money.toDecimal(totalAmount);
+    }
+
+    /**
+     * Get total amount in minor units.
+     * 
+     * @return Returns total amount in minor units.
+     */
+    public long getTotalAmountMinor()
+    {
+        return totalAmount;
+    }
+
+    /**
+     * Recalculate total amount.
+     * <p>
+     * Articles may be shared by many orders, so an order is not notified when price of article is changed,
+     * the method should be called after such change to read the actual total, a serialized order is always recalculated.
+     * </p>
+     * 
+     * @return Returns recalculated total amount in minor units.
+     */
+    public long recalculateTotalAmount()
+    {
+        long amount = 0L;
+        for (OrderItem item : orderItems)
+        {
+            amount += item.getAmountMinor();
+        }
+        totalAmount = amount;
+        return totalAmount;
+    }
+
+    // Calculated value is written to a document, but never read from it
+    @JsonProperty(value = "totalAmount", access = Access.READ_ONLY)
+    @JsonSerialize(using = Money.Serializer.class)
+    private long getDocumentTotalAmount()
+    {
+        return recalculateTotalAmount();
+    }
+
+    void itemAmountChanged(long delta)
+    {
+        totalAmount += delta;
     }
 
     @Override
     public int hashCode()
     {
-        return HashCodeBuilder.reflectionHashCode(this);
+        int result = id;
+        result = 31 * result + Objects.hashCode(orderItems);
+        result = 31 * result + Objects.hashCode(orderNo);
+        return result;
     }
 
     @Override
     public boolean equals(Object obj)
     {
-        return EqualsBuilder.reflectionEquals(this, obj);
+        if (this == obj)
+        {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass())
+        {
+            return false;
+        }
+
+        Order other = (Order) obj;
+        return id == other.id
+            && Objects.equals(orderItems, other.orderItems)
+            && Objects.equals(orderNo, other.orderNo);
     }
 
     @Override
     public String toString()
     {
-        return ToStringBuilder.reflectionToString(this, ToStringStyle.JSON_STYLE);
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("id", id)
+                .append("orderItems", orderItems)
+                .append("orderNo", orderNo)
+                .append("totalAmount", Money.toDecimal(totalAmount))
+                .toString();
     }
 }
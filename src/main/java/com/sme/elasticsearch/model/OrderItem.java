@@ -1,17 +1,24 @@
 package com.sme.elasticsearch.model;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
+import java.util.Objects;
+
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 /**
  * Represents a domain of order item.
+ * <p>
+ * The item notifies its {@link Order} when quantity or article is changed, so the order keeps its total amount up to date.
+ * </p>
  */
 public class OrderItem extends BaseEntity
 {
     private int quantity;
     private Article article;
+    @JsonIgnore
+    private transient Order order;
 
     public int getQuantity()
     {
@@ -20,7 +27,9 @@ public class OrderItem extends BaseEntity
 
     public void setQuantity(int quantity)
     {
+        long amount = getAmountMinor();
         this.quantity = quantity;
+        amountChanged(amount);
     }
 
     public Article getArticle()
@@ -30,24 +39,68 @@ public class OrderItem extends BaseEntity
 
     public void setArticle(Article article)
     {
+        long amount = getAmountMinor();
         this.article = article;
+        amountChanged(amount);
+    }
+
+    /**
+     * Calculate amount of the item.
+     * 
+     * @return Returns price of article multiplied by quantity in minor units.
+     */
+    public long getAmountMinor()
+    {
+        return article == null ? 0L : Money.multiply(article.getPriceMinor(), quantity);
+    }
+
+    void setOrder(Order order)
+    {
+        this.order = order;
+    }
+
+    private void amountChanged(long amount)
+    {
+        if (order != null)
+        {
+            order.itemAmountChanged(getAmountMinor() - amount);
+        }
     }
 
     @Override
     public int hashCode()
     {
-        return HashCodeBuilder.reflectionHashCode(this);
+        int result = id;
+        result = 31 * result + quantity;
+        result = 31 * result + Objects.hashCode(article);
+        return result;
     }
 
     @Override
     public boolean equals(Object obj)
     {
-        return EqualsBuilder.reflectionEquals(this, obj);
+        if (this == obj)
+        {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass())
+        {
+            return false;
+        }
+
+        OrderItem other = (OrderItem) obj;
+        return id == other.id
+            && quantity == other.quantity
+            && Objects.equals(article, other.article);
     }
 
     @Override
     public String toString()
     {
-        return ToStringBuilder.reflectionToString(this, ToStringStyle.JSON_STYLE);
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("id", id)
+                .append("quantity", quantity)
+                .append("article", article)
+                .toString();
     }
 }
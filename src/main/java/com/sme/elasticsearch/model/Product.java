@@ -2,12 +2,14 @@ package com.sme.elasticsearch.model;
 
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.Objects;
 
-import org.apache.commons.lang3.builder.EqualsBuilder;
-import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
 /**
  * Represents a domain of product.
  */
@@ -16,10 +18,14 @@ public class Product extends BaseEntity
     private String name;
     private String description;
     private Date createdDate;
-    private BigDecimal price;
+    @JsonSerialize(using = Money.Serializer.class)
+    @JsonDeserialize(using = Money.Deserializer.class)
+    private long price;
     private boolean active;
     private String productType;
-    private BigDecimal total;
+    @JsonSerialize(using = Money.Serializer.class)
+    @JsonDeserialize(using = Money.Deserializer.class)
+    private long total;
     private String image;
 
     public String getName()
@@ -54,10 +60,20 @@ public class Product extends BaseEntity
 
     public BigDecimal getPrice()
     {
-        return price;
+        return Money.toDecimal(price);
     }
 
     public void setPrice(BigDecimal price)
+    {
+        this.price = Money.toMinor(price);
+    }
+
+    public long getPriceMinor()
+    {
+        return price;
+    }
+
+    public void setPriceMinor(long price)
     {
         this.price = price;
     }
@@ -84,10 +100,20 @@ public class Product extends BaseEntity
 
     public BigDecimal getTotal()
     {
-        return total;
+        return Money.toDecimal(total);
     }
 
     public void setTotal(BigDecimal total)
+    {
+        this.total = Money.toMinor(total);
+    }
+
+    public long getTotalMinor()
+    {
+        return total;
+    }
+
+    public void setTotalMinor(long total)
     {
         this.total = total;
     }
@@ -105,18 +131,55 @@ public class Product extends BaseEntity
     @Override
     public int hashCode()
     {
-        return HashCodeBuilder.reflectionHashCode(this);
+        int result = id;
+        result = 31 * result + Objects.hashCode(name);
+        result = 31 * result + Objects.hashCode(description);
+        result = 31 * result + Objects.hashCode(createdDate);
+        result = 31 * result + Long.hashCode(price);
+        result = 31 * result + Boolean.hashCode(active);
+        result = 31 * result + Objects.hashCode(productType);
+        result = 31 * result + Long.hashCode(total);
+        result = 31 * result + Objects.hashCode(image);
+        return result;
     }
 
     @Override
     public boolean equals(Object obj)
     {
-        return EqualsBuilder.reflectionEquals(this, obj);
+        if (this == obj)
+        {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass())
+        {
+            return false;
+        }
+
+        Product other = (Product) obj;
+        return id == other.id
+            && Objects.equals(name, other.name)
+            && Objects.equals(description, other.description)
+            && Objects.equals(createdDate, other.createdDate)
+            && price == other.price
+            && active == other.active
+            && Objects.equals(productType, other.productType)
+            && total == other.total
+            && Objects.equals(image, other.image);
     }
 
     @Override
     public String toString()
     {
-        return ToStringBuilder.reflectionToString(this, ToStringStyle.JSON_STYLE);
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("id", id)
+                .append("name", name)
+                .append("description", description)
+                .append("createdDate", createdDate)
+                .append("price", Money.toDecimal(price))
+                .append("active", active)
+                .append("productType", productType)
+                .append("total", Money.toDecimal(total))
+                .append("image", image)
+                .toString();
     }
 }
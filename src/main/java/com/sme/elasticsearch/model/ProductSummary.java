@@ -0,0 +1,102 @@
+package com.sme.elasticsearch.model;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * Represents a short view of {@link Product} to show in lists.
+ */
+public class ProductSummary extends BaseEntity
+{
+    private String name;
+    @JsonSerialize(using = Money.Serializer.class)
+    @JsonDeserialize(using = Money.Deserializer.class)
+    private long price;
+    private String productType;
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void setName(String name)
+    {
+        this.name = name;
+    }
+
+    public BigDecimal getPrice()
+    {
+        return Money.toDecimal(price);
+    }
+
+    public void setPrice(BigDecimal price)
+    {
+        this.price = Money.toMinor(price);
+    }
+
+    public long getPriceMinor()
+    {
+        return price;
+    }
+
+    public void setPriceMinor(long price)
+    {
+        this.price = price;
+    }
+
+    public String getProductType()
+    {
+        return productType;
+    }
+
+    public void setProductType(String productType)
+    {
+        this.productType = productType;
+    }
+
+    @Override
+    public int hashCode()
+    {
+        int result = id;
+        result = 31 * result + Objects.hashCode(name);
+        result = 31 * result + Long.hashCode(price);
+        result = 31 * result + Objects.hashCode(productType);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass())
+        {
+            return false;
+        }
+
+        ProductSummary other = (ProductSummary) obj;
+        return id == other.id
+            && Objects.equals(name, other.name)
+            && price == other.price
+            && Objects.equals(productType, other.productType);
+    }
+
+    @Override
+    public String toString()
+    {
+        return new ToStringBuilder(this, ToStringStyle.JSON_STYLE)
+                .append("id", id)
+                .append("name", name)
+                .append("price", Money.toDecimal(price))
+                .append("productType", productType)
+                .toString();
+    }
+}
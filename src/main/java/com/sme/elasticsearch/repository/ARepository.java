@@ -0,0 +1,265 @@
+package com.sme.elasticsearch.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import com.sme.elasticsearch.model.BaseEntity;
+import com.sme.elasticsearch.search.SearchResultCache;
+
+import util.ObjectMapperUtil;
+import util.SearchHitDecoder;
+import util.WireFormat;
+
+/**
+ * <p>
+ * Abstraction of a typed repository over asynchronous methods of {@link RestHighLevelClient}.
+ * </p>
+ * Every method returns {@link CompletableFuture} completed by a http client thread, so no thread waits for a response
+ * and futures of many calls can be composed by {@link CompletableFuture#thenCompose} or fanned out by {@link CompletableFuture#allOf}.
+ * The number of in-flight requests is limited by {@link AsyncLimiter} shared by repositories of the same client.
+ * Responses are decoded and continuations run on the I/O reactor thread of the client, so they must not block,
+ * use {@link CompletableFuture#thenApplyAsync} with an executor for heavy work.
+ * <p>
+ * Entities are kept in documents with their ids, documents are written in {@link WireFormat#getDefault()} format.
+ * Searches can be cached by {@link SearchResultCache}.
+ * </p>
+ *
+ * @param <T> The type of entity.
+ */
+public abstract class ARepository<T extends BaseEntity>
+{
+    protected final RestHighLevelClient client;
+    protected final String index;
+    protected final AsyncLimiter limiter;
+    private final SearchHitDecoder<T> decoder;
+    private final WireFormat wireFormat = WireFormat.getDefault();
+    private RefreshPolicy refreshPolicy = RefreshPolicy.NONE;
+    private SearchResultCache cache;
+
+    protected ARepository(RestHighLevelClient client, String index, Class<T> type, AsyncLimiter limiter)
+    {
+        this.client = client;
+        this.index = index;
+        this.limiter = limiter;
+        this.decoder = SearchHitDecoder.of(type);
+    }
+
+    /**
+     * The refresh policy of writes.
+     */
+    public void setRefreshPolicy(RefreshPolicy refreshPolicy)
+    {
+        this.refreshPolicy = refreshPolicy;
+    }
+
+    /**
+     * The cache of search responses, writes of the repository invalidate responses of its index.
+     */
+    public void setCache(SearchResultCache cache)
+    {
+        this.cache = cache;
+    }
+
+    /**
+     * Find entity by id.
+     *
+     * @param id The entity id;
+     * @return Returns the future of entity or null if the document does not exist.
+     */
+    public CompletableFuture<T> findById(int id)
+    {
+        return this.<GetResponse>call(listener -> client.getAsync(new GetRequest(index, String.valueOf(id)), wireFormat.requestOptions(), listener))
+                .thenApply(response -> response.isExists() ? decoder.decode(response.getSourceAsBytesRef()) : null);
+    }
+
+    /**
+     * Find entities by ids with one multi get request.
+     *
+     * @param ids The entity ids;
+     * @return Returns the future of existing entities in order of ids.
+     */
+    public CompletableFuture<List<T>> findByIds(Collection<Integer> ids)
+    {
+        MultiGetRequest request = new MultiGetRequest();
+        ids.forEach(id -> request.add(index, String.valueOf(id)));
+
+        return this.<MultiGetResponse>call(listener -> client.mgetAsync(request, wireFormat.requestOptions(), listener))
+                .thenApply(response ->
+                {
+                    List<T> result = new ArrayList<>(ids.size());
+                    for (MultiGetItemResponse item : response.getResponses())
+                    {
+                        if (item.isFailed())
+                        {
+                            throw new IllegalStateException("Cannot get " + index + "/" + item.getId(), item.getFailure().getFailure());
+                        }
+                        if (item.getResponse().isExists())
+                        {
+                            result.add(decoder.decode(item.getResponse().getSourceAsBytesRef()));
+                        }
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * Find entities by the given query.
+     *
+     * @param query The query;
+     * @param size The maximum number of entities;
+     * @return Returns the future of entities sorted by id.
+     */
+    public CompletableFuture<List<T>> find(QueryBuilder query, int size)
+    {
+        return search(new SearchSourceBuilder()
+                .query(query)
+                .size(size)
+                .sort("id"));
+    }
+
+    /**
+     * Find entities by the given search source.
+     *
+     * @param source The search source;
+     * @return Returns the future of entities in order of hits.
+     */
+    public CompletableFuture<List<T>> search(SearchSourceBuilder source)
+    {
+        String[] indices = {index};
+        SearchResultCache searchCache = cache;
+        if (searchCache == null)
+        {
+            return this.<SearchResponse>call(listener -> client.searchAsync(new SearchRequest(indices).source(source), wireFormat.requestOptions(), listener))
+                    .thenApply(response -> decoder.decode(response));
+        }
+
+        SearchResponse cached = searchCache.get(indices, source);
+        if (cached != null)
+        {
+            return CompletableFuture.completedFuture(decoder.decode(cached));
+        }
+
+        long[] generations = searchCache.generations(indices);
+        return this.<SearchResponse>call(listener -> client.searchAsync(new SearchRequest(indices).source(source), wireFormat.requestOptions(), listener))
+                .thenApply(response ->
+                {
+                    searchCache.put(indices, source, generations, response);
+                    return decoder.decode(response);
+                });
+    }
+
+    /**
+     * Save entity.
+     *
+     * @param entity The entity to save;
+     * @return Returns the future of index response.
+     */
+    public CompletableFuture<IndexResponse> save(T entity)
+    {
+        IndexRequest request = indexRequest(entity).setRefreshPolicy(refreshPolicy);
+        return written(this.<IndexResponse>call(listener -> client.indexAsync(request, RequestOptions.DEFAULT, listener)));
+    }
+
+    /**
+     * Save entities with one bulk request.
+     *
+     * @param entities The entities to save;
+     * @return Returns the future of bulk response, failed items are reported by the response.
+     */
+    public CompletableFuture<BulkResponse> saveAll(Collection<T> entities)
+    {
+        BulkRequest request = new BulkRequest().setRefreshPolicy(refreshPolicy);
+        entities.forEach(entity -> request.add(indexRequest(entity)));
+        return written(this.<BulkResponse>call(listener -> client.bulkAsync(request, RequestOptions.DEFAULT, listener)));
+    }
+
+    /**
+     * Delete entity by id.
+     *
+     * @param id The entity id;
+     * @return Returns the future of true if the document is deleted or false if it does not exist.
+     */
+    public CompletableFuture<Boolean> delete(int id)
+    {
+        DeleteRequest request = new DeleteRequest(index, String.valueOf(id)).setRefreshPolicy(refreshPolicy);
+        return written(this.<DeleteResponse>call(listener -> client.deleteAsync(request, RequestOptions.DEFAULT, listener)))
+                .thenApply(response -> response.getResult() == DocWriteResponse.Result.DELETED);
+    }
+
+    /**
+     * Start an asynchronous client call within the limit of in-flight requests.
+     *
+     * @param <R> The type of response;
+     * @param call The call of asynchronous client method with the given listener;
+     * @return Returns the future completed by the listener.
+     */
+    protected <R> CompletableFuture<R> call(AsyncCall<R> call)
+    {
+        return limiter.submit(() ->
+        {
+            CompletableFuture<R> future = new CompletableFuture<>();
+            call.start(ActionListener.wrap(future::complete, future::completeExceptionally));
+            return future;
+        });
+    }
+
+    /**
+     * Invalidate cached responses of the index when the given write is completed, successfully or not.
+     *
+     * @param <R> The type of response;
+     * @param write The future of write;
+     * @return Returns the future completed after invalidation.
+     */
+    protected <R> CompletableFuture<R> written(CompletableFuture<R> write)
+    {
+        SearchResultCache searchCache = cache;
+        RefreshPolicy policy = refreshPolicy;
+        return searchCache == null ? write : write.whenComplete((response, e) -> searchCache.invalidate(index, policy));
+    }
+
+    private IndexRequest indexRequest(T entity)
+    {
+        return new IndexRequest(index)
+                .id(String.valueOf(entity.getId()))
+                .source(ObjectMapperUtil.serializeToBytes(entity, wireFormat), wireFormat.xContentType());
+    }
+
+    /**
+     * Starts an asynchronous method of the client.
+     *
+     * @param <R> The type of response.
+     */
+    @FunctionalInterface
+    protected interface AsyncCall<R>
+    {
+        /**
+         * Start the call.
+         *
+         * @param listener The listener of response.
+         */
+        void start(ActionListener<R> listener);
+    }
+}
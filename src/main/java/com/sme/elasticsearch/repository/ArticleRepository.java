@@ -0,0 +1,32 @@
+package com.sme.elasticsearch.repository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.query.QueryBuilders;
+
+import com.sme.elasticsearch.model.Article;
+
+/**
+ * Asynchronous repository of {@link Article} entities.
+ */
+public class ArticleRepository extends ARepository<Article>
+{
+    public ArticleRepository(RestHighLevelClient client, String index, AsyncLimiter limiter)
+    {
+        super(client, index, Article.class, limiter);
+    }
+
+    /**
+     * Find articles by the given text in name or description.
+     *
+     * @param text The searched text;
+     * @param size The maximum number of articles;
+     * @return Returns the future of found articles sorted by id.
+     */
+    public CompletableFuture<List<Article>> findByText(String text, int size)
+    {
+        return find(QueryBuilders.multiMatchQuery(text, "name", "description"), size);
+    }
+}
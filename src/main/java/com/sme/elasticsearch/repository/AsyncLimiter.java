@@ -0,0 +1,158 @@
+package com.sme.elasticsearch.repository;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * <p>
+ * Limits the number of in-flight asynchronous calls without blocking threads.
+ * </p>
+ * A call over the limit is queued and started by the thread which completes a previous call,
+ * so a caller is never parked on a semaphore and one thread can submit any number of calls.
+ * Queued calls are started in a loop rather than recursively, so calls completed synchronously do not grow the stack.
+ * <p>
+ * The thread which completes a call is usually an I/O reactor thread of the http client,
+ * so the result and its continuations run on that thread and must not block or do heavy work like decoding of large responses,
+ * {@link #submit(Supplier, Executor)} completes the result by the given executor instead.
+ * </p>
+ */
+public class AsyncLimiter
+{
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger drainRequests = new AtomicInteger();
+
+    /**
+     * Create limiter.
+     *
+     * @param maxInFlight The maximum number of in-flight calls.
+     */
+    public AsyncLimiter(int maxInFlight)
+    {
+        if (maxInFlight < 1)
+        {
+            throw new IllegalArgumentException("Expects at least one in-flight call");
+        }
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Start the given call now or when a previous call is completed.
+     *
+     * @param <R> The type of result;
+     * @param call The call to start;
+     * @return Returns the future completed by the result of the call, by the thread which completes the call.
+     */
+    public <R> CompletableFuture<R> submit(Supplier<CompletableFuture<R>> call)
+    {
+        return submit(call, Runnable::run);
+    }
+
+    /**
+     * Start the given call now or when a previous call is completed, the result is completed by the given executor.
+     *
+     * @param <R> The type of result;
+     * @param call The call to start;
+     * @param executor The executor of continuations of the result;
+     * @return Returns the future completed by the result of the call.
+     */
+    public <R> CompletableFuture<R> submit(Supplier<CompletableFuture<R>> call, Executor executor)
+    {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        queue.add(() ->
+        {
+            CompletableFuture<R> future;
+            try
+            {
+                future = call.get();
+            }
+            catch (RuntimeException e)
+            {
+                future = new CompletableFuture<>();
+                future.completeExceptionally(e);
+            }
+
+            future.whenComplete((value, e) ->
+            {
+                inFlight.decrementAndGet();
+                drain();
+                executor.execute(() ->
+                {
+                    if (e != null)
+                    {
+                        result.completeExceptionally(e);
+                    }
+                    else
+                    {
+                        result.complete(value);
+                    }
+                });
+            });
+        });
+        drain();
+        return result;
+    }
+
+    /**
+     * Get the number of started and not completed calls.
+     */
+    public int getInFlight()
+    {
+        return inFlight.get();
+    }
+
+    /**
+     * Get the number of calls waiting for a free slot.
+     */
+    public int getQueued()
+    {
+        return queue.size();
+    }
+
+    // Only one thread starts queued calls at a time, a nested or concurrent request makes it loop once more
+    private void drain()
+    {
+        if (drainRequests.getAndIncrement() != 0)
+        {
+            return;
+        }
+
+        int requests = 1;
+        do
+        {
+            startQueued();
+            requests = drainRequests.addAndGet(-requests);
+        }
+        while (requests != 0);
+    }
+
+    private void startQueued()
+    {
+        while (!queue.isEmpty())
+        {
+            int current = inFlight.get();
+            if (current >= maxInFlight)
+            {
+                return;
+            }
+            if (!inFlight.compareAndSet(current, current + 1))
+            {
+                continue;
+            }
+
+            Runnable next = queue.poll();
+            if (next == null)
+            {
+                // Another thread has taken the last call
+                inFlight.decrementAndGet();
+                continue;
+            }
+            next.run();
+        }
+    }
+}
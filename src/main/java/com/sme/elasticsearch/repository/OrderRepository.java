@@ -0,0 +1,32 @@
+package com.sme.elasticsearch.repository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.query.QueryBuilders;
+
+import com.sme.elasticsearch.model.Order;
+
+/**
+ * Asynchronous repository of {@link Order} entities.
+ */
+public class OrderRepository extends ARepository<Order>
+{
+    public OrderRepository(RestHighLevelClient client, String index, AsyncLimiter limiter)
+    {
+        super(client, index, Order.class, limiter);
+    }
+
+    /**
+     * Find orders which contain the given article.
+     *
+     * @param articleId The article id;
+     * @param size The maximum number of orders;
+     * @return Returns the future of found orders sorted by id.
+     */
+    public CompletableFuture<List<Order>> findByArticle(int articleId, int size)
+    {
+        return find(QueryBuilders.termQuery("orderItems.article.id", articleId), size);
+    }
+}
@@ -0,0 +1,34 @@
+package com.sme.elasticsearch.repository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.query.QueryBuilders;
+
+import com.sme.elasticsearch.model.Product;
+
+/**
+ * Asynchronous repository of {@link Product} entities.
+ */
+public class ProductRepository extends ARepository<Product>
+{
+    public ProductRepository(RestHighLevelClient client, String index, AsyncLimiter limiter)
+    {
+        super(client, index, Product.class, limiter);
+    }
+
+    /**
+     * Find active products of the given type.
+     *
+     * @param productType The product type;
+     * @param size The maximum number of products;
+     * @return Returns the future of found products sorted by id.
+     */
+    public CompletableFuture<List<Product>> findActiveByType(String productType, int size)
+    {
+        return find(QueryBuilders.boolQuery()
+                .filter(QueryBuilders.termQuery("active", true))
+                .filter(QueryBuilders.matchQuery("productType", productType)), size);
+    }
+}
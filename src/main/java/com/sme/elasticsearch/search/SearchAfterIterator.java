@@ -0,0 +1,209 @@
+package com.sme.elasticsearch.search;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+
+import util.SearchHitDecoder;
+import util.WireFormat;
+
+/**
+ * <p>
+ * Iterates all hits of a query page by page with "search_after", so a large result set is read without deep paging and scroll contexts.
+ * </p>
+ * Hits are sorted by the unique numeric field ("id" of entities by default), which is the tiebreaker of "search_after".
+ * The next page is requested asynchronously as soon as the current page is received, so it is transferred
+ * while the caller consumes the current page. Hits are decoded one by one by {@link #next()},
+ * so about two pages of raw hits and no decoded page are kept in memory.
+ * <p>
+ * Pages are read from the current state of the index, so documents changed during the iteration can be missed or read twice.
+ * </p>
+ *
+ * <pre>
+ * try (Stream&lt;Article&gt; articles = SearchAfterIterator.stream(client, "articles", QueryBuilders.matchAllQuery(), Article.class, 1000))
+ * {
+ *     articles.filter(Article::isActive).forEach(...);
+ * }
+ * </pre>
+ *
+ * @param <T> The type of decoded hits.
+ */
+public class SearchAfterIterator<T> implements Iterator<T>, Closeable
+{
+    private static final String DEFAULT_SORT_FIELD = "id";
+
+    private final RestHighLevelClient client;
+    private final String index;
+    private final QueryBuilder query;
+    private final SearchHitDecoder<T> decoder;
+    private final int pageSize;
+    private final String sortField;
+    private final WireFormat wireFormat = WireFormat.getDefault();
+
+    private SearchHit[] page = new SearchHit[0];
+    private int position;
+    private CompletableFuture<SearchResponse> nextPage;
+    private Cancellable cancellable;
+    private boolean closed;
+
+    /**
+     * Create iterator sorted by "id" field.
+     *
+     * @param client The rest client;
+     * @param index The index or alias;
+     * @param query The query;
+     * @param type The class of decoded hits;
+     * @param pageSize The number of hits in a page.
+     */
+    public SearchAfterIterator(RestHighLevelClient client, String index, QueryBuilder query, Class<T> type, int pageSize)
+    {
+        this(client, index, query, type, pageSize, DEFAULT_SORT_FIELD);
+    }
+
+    /**
+     * Create iterator.
+     *
+     * @param client The rest client;
+     * @param index The index or alias;
+     * @param query The query;
+     * @param type The class of decoded hits;
+     * @param pageSize The number of hits in a page;
+     * @param sortField The unique field to sort hits.
+     */
+    public SearchAfterIterator(RestHighLevelClient client, String index, QueryBuilder query, Class<T> type, int pageSize, String sortField)
+    {
+        this.client = client;
+        this.index = index;
+        this.query = query;
+        this.decoder = SearchHitDecoder.of(type);
+        this.pageSize = pageSize;
+        this.sortField = sortField;
+        this.nextPage = request(null);
+    }
+
+    /**
+     * Create lazy stream of all hits sorted by "id" field, the stream should be closed if it is not consumed completely.
+     *
+     * @param <T> The type of decoded hits;
+     * @param client The rest client;
+     * @param index The index or alias;
+     * @param query The query;
+     * @param type The class of decoded hits;
+     * @param pageSize The number of hits in a page;
+     * @return Returns ordered stream of decoded hits.
+     */
+    public static <T> Stream<T> stream(RestHighLevelClient client, String index, QueryBuilder query, Class<T> type, int pageSize)
+    {
+        SearchAfterIterator<T> iterator = new SearchAfterIterator<>(client, index, query, type, pageSize);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    @Override
+    public boolean hasNext()
+    {
+        while (position == page.length)
+        {
+            if (nextPage == null || closed)
+            {
+                return false;
+            }
+
+            SearchResponse response = await(nextPage);
+            page = response.getHits().getHits();
+            position = 0;
+
+            // The next page is transferred while the current page is consumed
+            nextPage = page.length < pageSize ? null : request(page[page.length - 1].getSortValues());
+        }
+        return true;
+    }
+
+    @Override
+    public T next()
+    {
+        if (!hasNext())
+        {
+            throw new NoSuchElementException();
+        }
+
+        SearchHit hit = page[position];
+        // The decoded hit is not referenced by the page anymore
+        page[position++] = null;
+        return decoder.decode(hit);
+    }
+
+    /**
+     * Cancel the prefetched page.
+     */
+    @Override
+    public void close()
+    {
+        closed = true;
+        page = new SearchHit[0];
+        position = 0;
+        if (nextPage != null && !nextPage.isDone() && cancellable != null)
+        {
+            cancellable.cancel();
+        }
+        nextPage = null;
+    }
+
+    private CompletableFuture<SearchResponse> request(Object[] searchAfter)
+    {
+        SearchSourceBuilder source = new SearchSourceBuilder()
+                .query(query)
+                .size(pageSize)
+                .sort(new FieldSortBuilder(sortField).order(SortOrder.ASC))
+                .trackTotalHits(false);
+        if (searchAfter != null)
+        {
+            source.searchAfter(searchAfter);
+        }
+
+        CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        cancellable = client.searchAsync(new SearchRequest(index).source(source), wireFormat.requestOptions(),
+                ActionListener.wrap(future::complete, future::completeExceptionally));
+        return future;
+    }
+
+    private static SearchResponse await(CompletableFuture<SearchResponse> future)
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the next page", e);
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof IOException)
+            {
+                throw new UncheckedIOException((IOException) e.getCause());
+            }
+            throw new IllegalStateException("Cannot get the next page", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package com.sme.elasticsearch.search;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+/**
+ * <p>
+ * Keeps search responses in process, so repeated queries like catalog searches do not go to the cluster.
+ * </p>
+ * A response is cached by the indices and the canonical json of {@link SearchSourceBuilder},
+ * the least recently used responses are evicted over the maximum size and every response expires after the time to live.
+ * <p>
+ * Every index has a generation, which is incremented by writes into the index. A cached response keeps generations of its indices
+ * read before the search, so it is not returned after a write into any of its indices, including writes during the search.
+ * Writes are reported by {@link #invalidate(String)}, {@link #invalidate(DocWriteRequest)}, by {@link #listener(BulkProcessor.Listener)}
+ * of bulk indexers or by writers configured with the cache. Indices are matched by names, so writes and searches should use the same alias.
+ * </p>
+ * <p>
+ * Written documents become searchable only after refresh. Until the refresh interval passes after a write without
+ * {@link RefreshPolicy#IMMEDIATE} or {@link RefreshPolicy#WAIT_UNTIL}, responses of the index are not cached,
+ * and the generation is incremented once more when the interval passes, so a response read before the refresh is not kept.
+ * </p>
+ */
+public class SearchResultCache
+{
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final Map<String, IndexState> states = new ConcurrentHashMap<>();
+    private final LinkedHashMap<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private volatile long refreshIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Create cache.
+     *
+     * @param maxEntries The maximum number of cached responses;
+     * @param ttl The time to live of a response;
+     * @param unit The time unit of ttl.
+     */
+    public SearchResultCache(int maxEntries, long ttl, TimeUnit unit)
+    {
+        this(maxEntries, ttl, unit, System::nanoTime);
+    }
+
+    SearchResultCache(int maxEntries, long ttl, TimeUnit unit, LongSupplier clock)
+    {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.clock = clock;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+            {
+                if (size() > SearchResultCache.this.maxEntries)
+                {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * The refresh interval of cached indices, one second by default like "index.refresh_interval" of ElasticSearch.
+     *
+     * @param interval The interval;
+     * @param unit The time unit of interval;
+     * @return Returns this cache.
+     */
+    public SearchResultCache setRefreshInterval(long interval, TimeUnit unit)
+    {
+        this.refreshIntervalNanos = unit.toNanos(interval);
+        return this;
+    }
+
+    /**
+     * Get cached response or perform the search and cache its response.
+     *
+     * @param client The rest client;
+     * @param request The search request with indices and source;
+     * @param options The request options;
+     * @return Returns the cached or received response.
+     * @throws IOException when a request cannot be performed.
+     */
+    public SearchResponse search(RestHighLevelClient client, SearchRequest request, RequestOptions options) throws IOException
+    {
+        String key = key(request.indices(), request.source());
+        long[] generations = generations(request.indices());
+
+        SearchResponse response = get(key, generations);
+        if (response != null)
+        {
+            return response;
+        }
+
+        response = client.search(request, options);
+        put(key, request.indices(), generations, response);
+        return response;
+    }
+
+    /**
+     * Get cached response of the given search.
+     *
+     * @param indices The searched indices;
+     * @param source The search source;
+     * @return Returns the cached response or null.
+     */
+    public SearchResponse get(String[] indices, SearchSourceBuilder source)
+    {
+        return get(key(indices, source), generations(indices));
+    }
+
+    /**
+     * Cache the response received by a search started with the given generations.
+     *
+     * @param indices The searched indices;
+     * @param source The search source;
+     * @param generations The generations of indices read by {@link #generations(String[])} before the search;
+     * @param response The response.
+     */
+    public void put(String[] indices, SearchSourceBuilder source, long[] generations, SearchResponse response)
+    {
+        put(key(indices, source), indices, generations, response);
+    }
+
+    /**
+     * Get the current generations of the given indices.
+     *
+     * @param indices The indices;
+     * @return Returns generations in order of sorted indices.
+     */
+    public long[] generations(String[] indices)
+    {
+        String[] sorted = sort(indices);
+        long[] result = new long[sorted.length];
+        long now = clock.getAsLong();
+        for (int i = 0; i < sorted.length; i++)
+        {
+            result[i] = state(sorted[i]).generation(now);
+        }
+        return result;
+    }
+
+    /**
+     * Invalidate responses of the index written without refresh.
+     *
+     * @param index The written index.
+     */
+    public void invalidate(String index)
+    {
+        invalidate(index, RefreshPolicy.NONE);
+    }
+
+    /**
+     * Invalidate responses of the written index.
+     *
+     * @param index The written index;
+     * @param refreshPolicy The refresh policy of the write, writes without refresh are visible after the refresh interval.
+     */
+    public void invalidate(String index, RefreshPolicy refreshPolicy)
+    {
+        state(index).written(refreshPolicy != RefreshPolicy.NONE, clock.getAsLong() + refreshIntervalNanos);
+    }
+
+    /**
+     * Invalidate responses of the index written by the given request.
+     *
+     * @param request The index, update or delete request.
+     */
+    public void invalidate(DocWriteRequest<?> request)
+    {
+        invalidate(request.index(), request instanceof WriteRequest ? ((WriteRequest<?>) request).getRefreshPolicy() : RefreshPolicy.NONE);
+    }
+
+    /**
+     * Invalidate responses of indices written by the given bulk request.
+     *
+     * @param request The bulk request.
+     */
+    public void invalidate(BulkRequest request)
+    {
+        for (String index : request.getIndices())
+        {
+            invalidate(index, request.getRefreshPolicy());
+        }
+    }
+
+    /**
+     * Remove all responses.
+     */
+    public synchronized void clear()
+    {
+        entries.clear();
+    }
+
+    /**
+     * Create bulk listener which invalidates written indices after every bulk request, successful or failed,
+     * and calls the given listener.
+     *
+     * @param delegate The listener of bulk executions;
+     * @return Returns invalidating listener.
+     */
+    public BulkProcessor.Listener listener(BulkProcessor.Listener delegate)
+    {
+        return new BulkProcessor.Listener()
+        {
+            @Override
+            public void beforeBulk(long executionId, BulkRequest request)
+            {
+                delegate.beforeBulk(executionId, request);
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, BulkResponse response)
+            {
+                invalidate(request);
+                delegate.afterBulk(executionId, request, response);
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, Throwable failure)
+            {
+                // A failed request could write some documents
+                invalidate(request);
+                delegate.afterBulk(executionId, request, failure);
+            }
+        };
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of responses evicted by the maximum size.
+     */
+    public long getEvictions()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * Get the ratio of cached responses to all searches.
+     */
+    public double getHitRatio()
+    {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0d : (double) hits.get() / total;
+    }
+
+    private SearchResponse get(String key, long[] generations)
+    {
+        Entry entry;
+        synchronized (this)
+        {
+            entry = entries.get(key);
+            if (entry != null && (clock.getAsLong() - entry.expiresAt > 0 || !Arrays.equals(entry.generations, generations)))
+            {
+                entries.remove(key);
+                entry = null;
+            }
+        }
+
+        if (entry == null)
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.response;
+    }
+
+    private void put(String key, String[] indices, long[] generations, SearchResponse response)
+    {
+        // The index is written during the search, so the response can be stale
+        if (!Arrays.equals(generations, generations(indices)))
+        {
+            return;
+        }
+
+        // Written documents can be not refreshed yet
+        long now = clock.getAsLong();
+        for (String index : indices)
+        {
+            if (state(index).isRefreshing(now))
+            {
+                return;
+            }
+        }
+
+        synchronized (this)
+        {
+            entries.put(key, new Entry(response, generations, clock.getAsLong() + ttlNanos));
+        }
+    }
+
+    private IndexState state(String index)
+    {
+        return states.computeIfAbsent(index, i -> new IndexState());
+    }
+
+    private static String key(String[] indices, SearchSourceBuilder source)
+    {
+        if (indices.length == 0)
+        {
+            throw new IllegalArgumentException("Expects explicit indices of cached search");
+        }
+        return String.join(",", sort(indices)) + "\n" + (source == null ? "" : Strings.toString(source));
+    }
+
+    private static String[] sort(String[] indices)
+    {
+        // The same indices in different order is the same search
+        return new TreeSet<>(Arrays.asList(indices)).toArray(new String[0]);
+    }
+
+    /**
+     * The generation of an index and the end of the refresh interval after the last write without refresh.
+     */
+    private static class IndexState
+    {
+        private long generation;
+        private boolean refreshing;
+        private long refreshedAt;
+
+        private synchronized long generation(long now)
+        {
+            if (refreshing && now - refreshedAt >= 0)
+            {
+                // Responses read before the refresh are not returned anymore
+                refreshing = false;
+                generation++;
+            }
+            return generation;
+        }
+
+        private synchronized void written(boolean visible, long refreshedAt)
+        {
+            generation++;
+            if (!visible && (!refreshing || refreshedAt - this.refreshedAt > 0))
+            {
+                this.refreshedAt = refreshedAt;
+                refreshing = true;
+            }
+        }
+
+        private synchronized boolean isRefreshing(long now)
+        {
+            return refreshing && now - refreshedAt < 0;
+        }
+    }
+
+    /**
+     * A cached response.
+     */
+    private static class Entry
+    {
+        private final SearchResponse response;
+        private final long[] generations;
+        private final long expiresAt;
+
+        private Entry(SearchResponse response, long[] generations, long expiresAt)
+        {
+            this.response = response;
+            this.generations = generations;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
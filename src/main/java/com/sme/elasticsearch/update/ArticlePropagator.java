@@ -0,0 +1,477 @@
+package com.sme.elasticsearch.update;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.admin.cluster.storedscripts.PutStoredScriptRequest;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.tasks.TaskSubmissionResponse;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.AbstractBulkByScrollRequest;
+import org.elasticsearch.index.reindex.UpdateByQueryRequest;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+
+import com.sme.elasticsearch.model.Article;
+import com.sme.elasticsearch.search.SearchResultCache;
+
+/**
+ * <p>
+ * Propagates changes of articles into orders, which embed copies of articles in "orderItems.article".
+ * </p>
+ * Changes are collected by {@link #changed(Article)} and coalesced by article id, so many changes of the same or different articles
+ * are applied by one pass of update by query over orders which contain any of the changed articles.
+ * The pass runs on the server as a throttled, sliced task with the stored painless script, which replaces changed articles
+ * and recalculates "totalAmount" in minor units like {@link com.sme.elasticsearch.model.Order} does.
+ * Documents changed by other writers during the pass are skipped ("conflicts": "proceed"), skipped and failed orders are not reported by ids,
+ * so all articles of a pass with conflicts or failures are registered again and propagated by the next pass.
+ * The script is idempotent, orders with actual articles are not written again.
+ * <p>
+ * The progress of the task is polled by the tasks api in background and reported by {@link Propagation}.
+ * </p>
+ */
+public class ArticlePropagator implements Closeable
+{
+    private static final Logger LOGGER = LogManager.getLogger(ArticlePropagator.class);
+
+    public static final String SCRIPT_ID = "propagate-articles";
+    // Prices are compared in minor units to avoid rounding errors of doubles
+    private static final String SCRIPT = "boolean changed = false; long total = 0L;"
+        + " for (def item : ctx._source.orderItems) {"
+        + "   def article = item.article;"
+        + "   if (article == null) { continue; }"
+        + "   def change = params.articles[String.valueOf(article.id)];"
+        + "   if (change != null) {"
+        + "     for (def field : change.keySet()) {"
+        + "       if (field != 'priceMinor' && article[field] != change[field]) { article[field] = change[field]; changed = true; }"
+        + "     }"
+        + "     long oldPrice = Math.round(((Number) article.price).doubleValue() * 100);"
+        + "     if (oldPrice != change.priceMinor) { article.price = change.priceMinor / 100.0; changed = true; }"
+        + "   }"
+        + "   total += Math.round(((Number) article.price).doubleValue() * 100) * item.quantity;"
+        + " }"
+        + " if (changed) { ctx._source.totalAmount = total / 100.0; } else { ctx.op = 'noop'; }";
+
+    private final RestHighLevelClient client;
+    private final String orderIndex;
+    private final Map<Integer, Article> changes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    private int slices = AbstractBulkByScrollRequest.AUTO_SLICES;
+    private float requestsPerSecond = Float.POSITIVE_INFINITY;
+    private int batchSize = 1000;
+    private long pollIntervalMillis = 500L;
+    private SearchResultCache cache;
+
+    /**
+     * Create propagator for the given index of orders.
+     *
+     * @param client The rest client;
+     * @param orderIndex The index of orders.
+     */
+    public ArticlePropagator(RestHighLevelClient client, String orderIndex)
+    {
+        this.client = client;
+        this.orderIndex = orderIndex;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "article-propagator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The number of slices of update by query, slices are chosen by the number of shards by default.
+     */
+    public ArticlePropagator setSlices(int slices)
+    {
+        this.slices = slices;
+        return this;
+    }
+
+    /**
+     * The throttle of update by query in sub-requests per second, not throttled by default.
+     */
+    public ArticlePropagator setRequestsPerSecond(float requestsPerSecond)
+    {
+        this.requestsPerSecond = requestsPerSecond;
+        return this;
+    }
+
+    /**
+     * The number of orders read and updated by a batch of update by query.
+     */
+    public ArticlePropagator setBatchSize(int batchSize)
+    {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * The interval to poll the progress of tasks.
+     */
+    public ArticlePropagator setPollIntervalMillis(long pollIntervalMillis)
+    {
+        this.pollIntervalMillis = pollIntervalMillis;
+        return this;
+    }
+
+    /**
+     * The cache of search responses, responses of orders are invalidated when a pass is completed.
+     */
+    public ArticlePropagator setCache(SearchResultCache cache)
+    {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Store the propagation script in the cluster state, the script is compiled once and shared by all passes.
+     *
+     * @throws IOException when a request cannot be performed.
+     */
+    public void installScript() throws IOException
+    {
+        String content = "{\"script\":{\"lang\":\"painless\",\"source\":\"" + SCRIPT.replace("\"", "\\\"") + "\"}}";
+        client.putScript(new PutStoredScriptRequest()
+                .id(SCRIPT_ID)
+                .content(new BytesArray(content), XContentType.JSON), RequestOptions.DEFAULT);
+        LOGGER.info("Stored script {}", SCRIPT_ID);
+    }
+
+    /**
+     * Register changed article, the latest change of the same article replaces the previous one.
+     *
+     * @param article The changed article.
+     */
+    public void changed(Article article)
+    {
+        changes.put(article.getId(), article);
+    }
+
+    /**
+     * Get the number of changed articles waiting for the next pass.
+     */
+    public int getPending()
+    {
+        return changes.size();
+    }
+
+    /**
+     * Submit one pass of update by query with all collected changes.
+     *
+     * @param progressListener The listener of polled progress, it is called by a background thread;
+     * @return Returns the submitted propagation or null if there are no changes.
+     * @throws IOException when the task cannot be submitted, changes are kept for the next pass.
+     */
+    public Propagation propagate(Consumer<Progress> progressListener) throws IOException
+    {
+        Map<Integer, Article> batch = new HashMap<>();
+        for (Integer id : new ArrayList<>(changes.keySet()))
+        {
+            Article article = changes.remove(id);
+            if (article != null)
+            {
+                batch.put(id, article);
+            }
+        }
+        if (batch.isEmpty())
+        {
+            return null;
+        }
+
+        Map<String, Object> articles = new HashMap<>();
+        batch.forEach((id, article) -> articles.put(String.valueOf(id), toParams(article)));
+
+        UpdateByQueryRequest request = new UpdateByQueryRequest(orderIndex)
+                .setQuery(QueryBuilders.termsQuery("orderItems.article.id", batch.keySet()))
+                .setScript(new Script(ScriptType.STORED, null, SCRIPT_ID, Collections.singletonMap("articles", articles)))
+                .setConflicts("proceed")
+                .setSlices(slices)
+                .setRequestsPerSecond(requestsPerSecond)
+                .setBatchSize(batchSize);
+
+        TaskSubmissionResponse response;
+        try
+        {
+            response = client.submitUpdateByQueryTask(request, RequestOptions.DEFAULT);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            requeue(batch);
+            throw e;
+        }
+
+        LOGGER.info("Submitted task {} to propagate {} articles into {}", response.getTask(), batch.size(), orderIndex);
+        Propagation propagation = new Propagation(response.getTask(), batch, progressListener);
+        scheduler.schedule(() -> poll(propagation), pollIntervalMillis, TimeUnit.MILLISECONDS);
+        return propagation;
+    }
+
+    /**
+     * Stop polling of submitted tasks, the tasks keep running on the server.
+     */
+    @Override
+    public void close()
+    {
+        scheduler.shutdownNow();
+    }
+
+    private void poll(Propagation propagation)
+    {
+        try
+        {
+            // The high level tasks api does not return the response and the error of a completed task
+            Response response = client.getLowLevelClient().performRequest(new Request("GET", "/_tasks/" + propagation.taskId));
+            Map<String, Object> task;
+            try (InputStream content = response.getEntity().getContent())
+            {
+                task = XContentHelper.convertToMap(XContentType.JSON.xContent(), content, false);
+            }
+
+            Progress progress = toProgress(task);
+            if (progress.isCompleted())
+            {
+                invalidate();
+            }
+            if (progress.isCompleted() && (progress.getVersionConflicts() > 0 || progress.getFailures() > 0))
+            {
+                LOGGER.warn("Task {} skipped orders, {} articles are propagated again by the next pass: {}", propagation.taskId, propagation.batch.size(), progress);
+                requeue(propagation.batch);
+            }
+            propagation.report(progress);
+            if (!progress.isCompleted())
+            {
+                scheduler.schedule(() -> poll(propagation), pollIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        catch (Exception e)
+        {
+            LOGGER.error("Cannot get progress of task {}", propagation.taskId, e);
+            // The result of the task is unknown
+            invalidate();
+            requeue(propagation.batch);
+            propagation.future.completeExceptionally(e);
+        }
+    }
+
+    // Responses cached during the pass are replaced after the refresh interval too
+    private void invalidate()
+    {
+        if (cache != null)
+        {
+            cache.invalidate(orderIndex);
+        }
+    }
+
+    // Newer changes registered meanwhile are not replaced
+    private void requeue(Map<Integer, Article> batch)
+    {
+        batch.forEach(changes::putIfAbsent);
+    }
+
+    private static Progress toProgress(Map<String, Object> task)
+    {
+        Map<String, Object> status = toMap(toMap(task.get("task")).get("status"));
+        Map<String, Object> result = toMap(task.get("response"));
+        Object failures = result.get("failures");
+
+        return new Progress(
+                Boolean.TRUE.equals(task.get("completed")),
+                toLong(status.get("total")),
+                toLong(status.get("updated")),
+                toLong(status.get("noops")),
+                toLong(status.get("version_conflicts")),
+                // A task failed as a whole has an error instead of the response
+                (failures instanceof List ? ((List<?>) failures).size() : 0) + (task.get("error") != null ? 1 : 0));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> toMap(Object value)
+    {
+        return value instanceof Map ? (Map<String, Object>) value : Collections.emptyMap();
+    }
+
+    private static long toLong(Object value)
+    {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
+    private static Map<String, Object> toParams(Article article)
+    {
+        Map<String, Object> params = new HashMap<>();
+        params.put("name", article.getName());
+        params.put("description", article.getDescription());
+        params.put("active", article.isActive());
+        params.put("priceMinor", article.getPriceMinor());
+        return params;
+    }
+
+    /**
+     * A submitted pass of update by query.
+     */
+    public static class Propagation
+    {
+        private final String taskId;
+        private final Map<Integer, Article> batch;
+        private final Consumer<Progress> progressListener;
+        private final CompletableFuture<Progress> future = new CompletableFuture<>();
+        private volatile Progress progress = new Progress(false, 0L, 0L, 0L, 0L, 0L);
+
+        private Propagation(String taskId, Map<Integer, Article> batch, Consumer<Progress> progressListener)
+        {
+            this.taskId = taskId;
+            this.batch = batch;
+            this.progressListener = progressListener;
+        }
+
+        private void report(Progress progress)
+        {
+            this.progress = progress;
+            if (progressListener != null)
+            {
+                progressListener.accept(progress);
+            }
+            if (!progress.isCompleted())
+            {
+                return;
+            }
+
+            if (progress.getFailures() > 0)
+            {
+                future.completeExceptionally(new IllegalStateException("Task " + taskId + " failed to update orders: " + progress));
+            }
+            else
+            {
+                LOGGER.info("Propagated {} articles by task {}: {}", batch.size(), taskId, progress);
+                future.complete(progress);
+            }
+        }
+
+        /**
+         * Get the task id in "node:id" format.
+         */
+        public String getTaskId()
+        {
+            return taskId;
+        }
+
+        /**
+         * Get the number of propagated articles.
+         */
+        public int getArticles()
+        {
+            return batch.size();
+        }
+
+        /**
+         * Get the last polled progress.
+         */
+        public Progress getProgress()
+        {
+            return progress;
+        }
+
+        /**
+         * Get the future completed by the final progress of the task, or completed exceptionally if the task failed to update some orders.
+         * Articles of a pass with version conflicts or failures are registered again for the next pass.
+         */
+        public CompletableFuture<Progress> getFuture()
+        {
+            return future;
+        }
+    }
+
+    /**
+     * A snapshot of the task status.
+     */
+    public static class Progress
+    {
+        private final boolean completed;
+        private final long total;
+        private final long updated;
+        private final long noops;
+        private final long versionConflicts;
+        private final long failures;
+
+        private Progress(boolean completed, long total, long updated, long noops, long versionConflicts, long failures)
+        {
+            this.completed = completed;
+            this.total = total;
+            this.updated = updated;
+            this.noops = noops;
+            this.versionConflicts = versionConflicts;
+            this.failures = failures;
+        }
+
+        public boolean isCompleted()
+        {
+            return completed;
+        }
+
+        /**
+         * Get the number of orders matched by the query.
+         */
+        public long getTotal()
+        {
+            return total;
+        }
+
+        public long getUpdated()
+        {
+            return updated;
+        }
+
+        /**
+         * Get the number of orders with already actual articles.
+         */
+        public long getNoops()
+        {
+            return noops;
+        }
+
+        /**
+         * Get the number of orders skipped because of concurrent changes.
+         */
+        public long getVersionConflicts()
+        {
+            return versionConflicts;
+        }
+
+        /**
+         * Get the number of orders failed by the script or by bulk writes, reported by the completed task.
+         */
+        public long getFailures()
+        {
+            return failures;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("completed=%s, total=%d, updated=%d, noops=%d, versionConflicts=%d, failures=%d",
+                    completed, total, updated, noops, versionConflicts, failures);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+package com.sme.elasticsearch.update;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.index.seqno.SequenceNumbers;
+import org.elasticsearch.rest.RestStatus;
+
+import com.sme.elasticsearch.model.BaseEntity;
+import com.sme.elasticsearch.search.SearchResultCache;
+
+import util.ObjectMapperUtil;
+import util.WireFormat;
+
+/**
+ * <p>
+ * Updates entities by optimistic concurrency control instead of a plain read-modify-write.
+ * </p>
+ * An entity is read with its "_seq_no" and "_primary_term" and written back with "if_seq_no" and "if_primary_term",
+ * so the write is rejected by 409 Conflict when another writer changed the document in between.
+ * A rejected write is retried by applying the update function to the fresh state of the document, so no update is lost.
+ * <p>
+ * {@link #updateAll(Collection, UnaryOperator)} reads documents by multi get and writes them by bulk requests,
+ * only conflicted documents are read and written again.
+ * </p>
+ *
+ * @param <T> The type of entity.
+ */
+public class OptimisticUpdater<T extends BaseEntity>
+{
+    private static final Logger LOGGER = LogManager.getLogger(OptimisticUpdater.class);
+
+    private final RestHighLevelClient client;
+    private final String index;
+    private final Class<T> type;
+    private final AtomicLong conflicts = new AtomicLong();
+
+    private int maxRetries = 10;
+    private int bulkSize = 500;
+    private WireFormat wireFormat = WireFormat.getDefault();
+    private RefreshPolicy refreshPolicy = RefreshPolicy.NONE;
+    private SearchResultCache cache;
+
+    /**
+     * Create updater of the given index.
+     *
+     * @param client The rest client;
+     * @param index The index name;
+     * @param type The class of entity.
+     */
+    public OptimisticUpdater(RestHighLevelClient client, String index, Class<T> type)
+    {
+        this.client = client;
+        this.index = index;
+        this.type = type;
+    }
+
+    /**
+     * The maximum number of attempts after conflicts.
+     */
+    public OptimisticUpdater<T> setMaxRetries(int maxRetries)
+    {
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    /**
+     * The number of documents in a multi get and bulk request.
+     */
+    public OptimisticUpdater<T> setBulkSize(int bulkSize)
+    {
+        this.bulkSize = bulkSize;
+        return this;
+    }
+
+    /**
+     * The format of written documents.
+     */
+    public OptimisticUpdater<T> setWireFormat(WireFormat wireFormat)
+    {
+        this.wireFormat = wireFormat;
+        return this;
+    }
+
+    /**
+     * The refresh policy of writes.
+     */
+    public OptimisticUpdater<T> setRefreshPolicy(RefreshPolicy refreshPolicy)
+    {
+        this.refreshPolicy = refreshPolicy;
+        return this;
+    }
+
+    /**
+     * The cache of search responses, writes invalidate responses of the index.
+     */
+    public OptimisticUpdater<T> setCache(SearchResultCache cache)
+    {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * Get the number of writes rejected by conflicts.
+     */
+    public long getConflicts()
+    {
+        return conflicts.get();
+    }
+
+    /**
+     * Get entity with its sequence number and primary term.
+     *
+     * @param id The document id;
+     * @return Returns versioned entity or null if the document does not exist.
+     * @throws IOException when a request cannot be performed.
+     */
+    public Versioned<T> get(String id) throws IOException
+    {
+        GetResponse response = client.get(new GetRequest(index, id), RequestOptions.DEFAULT);
+        return response.isExists() ? new Versioned<>(decode(response.getSourceAsBytesRef()), response.getSeqNo(), response.getPrimaryTerm()) : null;
+    }
+
+    /**
+     * Update entity by the given function.
+     *
+     * @param id The document id;
+     * @param function The function gets the current entity or null if the document does not exist
+     *            and returns the new entity or null to skip the write, the function can be called several times;
+     * @return Returns the written entity or null if the write is skipped.
+     * @throws IOException when a request cannot be performed.
+     */
+    public T update(String id, UnaryOperator<T> function) throws IOException
+    {
+        for (int attempt = 0;; attempt++)
+        {
+            Versioned<T> current = get(id);
+            T entity = function.apply(current == null ? null : current.getEntity());
+            if (entity == null)
+            {
+                return null;
+            }
+
+            try
+            {
+                client.index(conditionalRequest(id, current, entity).setRefreshPolicy(refreshPolicy), RequestOptions.DEFAULT);
+                return entity;
+            }
+            catch (ElasticsearchStatusException e)
+            {
+                if (e.status() != RestStatus.CONFLICT)
+                {
+                    throw e;
+                }
+
+                conflicts.incrementAndGet();
+                if (attempt >= maxRetries)
+                {
+                    throw new IllegalStateException("Cannot update " + index + "/" + id + " after " + attempt + " retries", e);
+                }
+                LOGGER.debug("Retry update of {}/{} after conflict", index, id);
+            }
+            finally
+            {
+                // A failed request could write the document
+                invalidate();
+            }
+        }
+    }
+
+    /**
+     * Update entities by the given function with multi get and bulk requests.
+     *
+     * @param ids The document ids;
+     * @param function The function gets the current entity or null if the document does not exist
+     *            and returns the new entity or null to skip the write, the function can be called several times for an entity;
+     * @return Returns the written entities by ids.
+     * @throws IOException when a request cannot be performed.
+     */
+    public Map<String, T> updateAll(Collection<String> ids, UnaryOperator<T> function) throws IOException
+    {
+        Map<String, T> updated = new LinkedHashMap<>();
+        List<String> batch = new ArrayList<>(bulkSize);
+        for (String id : new LinkedHashSet<>(ids))
+        {
+            batch.add(id);
+            if (batch.size() == bulkSize)
+            {
+                updateBatch(batch, function, updated);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty())
+        {
+            updateBatch(batch, function, updated);
+        }
+        return updated;
+    }
+
+    private void updateBatch(List<String> ids, UnaryOperator<T> function, Map<String, T> updated) throws IOException
+    {
+        Set<String> pending = new LinkedHashSet<>(ids);
+        for (int attempt = 0; !pending.isEmpty(); attempt++)
+        {
+            if (attempt > maxRetries)
+            {
+                throw new IllegalStateException("Cannot update " + pending.size() + " documents of " + index + " after " + maxRetries + " retries: " + pending);
+            }
+
+            MultiGetRequest getRequest = new MultiGetRequest();
+            pending.forEach(id -> getRequest.add(index, id));
+
+            BulkRequest bulkRequest = new BulkRequest().setRefreshPolicy(refreshPolicy);
+            Map<String, T> written = new LinkedHashMap<>();
+            for (MultiGetItemResponse item : client.mget(getRequest, RequestOptions.DEFAULT).getResponses())
+            {
+                if (item.isFailed())
+                {
+                    throw new IllegalStateException("Cannot get " + index + "/" + item.getId(), item.getFailure().getFailure());
+                }
+
+                GetResponse response = item.getResponse();
+                Versioned<T> current = response.isExists() ? new Versioned<>(decode(response.getSourceAsBytesRef()), response.getSeqNo(), response.getPrimaryTerm()) : null;
+                T entity = function.apply(current == null ? null : current.getEntity());
+                if (entity != null)
+                {
+                    bulkRequest.add(conditionalRequest(item.getId(), current, entity));
+                    written.put(item.getId(), entity);
+                }
+            }
+
+            pending.clear();
+            if (bulkRequest.numberOfActions() == 0)
+            {
+                return;
+            }
+
+            BulkResponse response;
+            try
+            {
+                response = client.bulk(bulkRequest, RequestOptions.DEFAULT);
+            }
+            finally
+            {
+                // A failed request could write some documents
+                invalidate();
+            }
+
+            for (BulkItemResponse item : response.getItems())
+            {
+                if (!item.isFailed())
+                {
+                    updated.put(item.getId(), written.get(item.getId()));
+                }
+                else if (item.status() == RestStatus.CONFLICT)
+                {
+                    conflicts.incrementAndGet();
+                    pending.add(item.getId());
+                }
+                else
+                {
+                    throw new IllegalStateException("Cannot update " + index + "/" + item.getId() + ": " + item.getFailureMessage());
+                }
+            }
+            LOGGER.debug("Updated {} documents of {}, {} conflicts", written.size() - pending.size(), index, pending.size());
+        }
+    }
+
+    private void invalidate()
+    {
+        if (cache != null)
+        {
+            cache.invalidate(index, refreshPolicy);
+        }
+    }
+
+    private IndexRequest conditionalRequest(String id, Versioned<T> current, T entity)
+    {
+        IndexRequest request = new IndexRequest(index)
+                .id(id)
+                .source(ObjectMapperUtil.serializeToBytes(entity, wireFormat), wireFormat.xContentType());
+        if (current == null)
+        {
+            // Concurrent creation of the same document is a conflict too
+            return request.opType(DocWriteRequest.OpType.CREATE);
+        }
+        return request
+                .setIfSeqNo(current.getSeqNo())
+                .setIfPrimaryTerm(current.getPrimaryTerm());
+    }
+
+    private T decode(BytesReference source) throws IOException
+    {
+        BytesRef bytes = source.toBytesRef();
+        return ObjectMapperUtil.readerFor(type, WireFormat.detect(bytes.bytes, bytes.offset, bytes.length))
+                .readValue(bytes.bytes, bytes.offset, bytes.length);
+    }
+
+    /**
+     * Entity with the sequence number and primary term of its document.
+     *
+     * @param <T> The type of entity.
+     */
+    public static class Versioned<T>
+    {
+        private final T entity;
+        private final long seqNo;
+        private final long primaryTerm;
+
+        Versioned(T entity, long seqNo, long primaryTerm)
+        {
+            if (seqNo == SequenceNumbers.UNASSIGNED_SEQ_NO)
+            {
+                throw new IllegalArgumentException("Expects assigned sequence number");
+            }
+
+            this.entity = entity;
+            this.seqNo = seqNo;
+            this.primaryTerm = primaryTerm;
+        }
+
+        public T getEntity()
+        {
+            return entity;
+        }
+
+        public long getSeqNo()
+        {
+            return seqNo;
+        }
+
+        public long getPrimaryTerm()
+        {
+            return primaryTerm;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package util;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.sme.elasticsearch.model.Article;
+import com.sme.elasticsearch.model.Order;
+import com.sme.elasticsearch.model.OrderItem;
+import com.sme.elasticsearch.model.Product;
+
+/**
+ * The registry of cached {@link ObjectReader} and {@link ObjectWriter} instances per type and {@link WireFormat}.
+ * <p>
+ * A reader and a writer resolve (de)serializer of the root type when they are created,
+ * so alphabetical order of properties and field introspection are performed once per type instead of every call.
+ * Codecs of model classes are created when the registry is loaded, other types get codecs on the first call.
+ * </p>
+ */
+public final class CodecRegistry
+{
+    private static final ClassValue<Codec> CODECS = new ClassValue<Codec>()
+    {
+        @Override
+        protected Codec computeValue(Class<?> type)
+        {
+            return new Codec(type);
+        }
+    };
+
+    static
+    {
+        for (Class<?> type : new Class<?>[] {Article.class, Product.class, Order.class, OrderItem.class})
+        {
+            CODECS.get(type);
+        }
+    }
+
+    // private class
+    private CodecRegistry()
+    {
+    }
+
+    /**
+     * Get a reader of the given type.
+     *
+     * @param type The type to deserialize data;
+     * @param format The format of data;
+     * @return Returns cached reader.
+     */
+    public static ObjectReader reader(Class<?> type, WireFormat format)
+    {
+        return CODECS.get(type).readers[format.ordinal()];
+    }
+
+    /**
+     * Get a writer of the given type.
+     *
+     * @param type The type to serialize data;
+     * @param format The format of serialized data;
+     * @return Returns cached writer.
+     */
+    public static ObjectWriter writer(Class<?> type, WireFormat format)
+    {
+        return CODECS.get(type).writers[format.ordinal()];
+    }
+
+    /**
+     * Readers and writers of one type indexed by ordinal of {@link WireFormat}.
+     */
+    private static final class Codec
+    {
+        private final ObjectReader[] readers = new ObjectReader[WireFormat.values().length];
+        private final ObjectWriter[] writers = new ObjectWriter[WireFormat.values().length];
+
+        private Codec(Class<?> type)
+        {
+            for (WireFormat format : WireFormat.values())
+            {
+                readers[format.ordinal()] = ObjectMapperUtil.objectMapper(format).readerFor(type);
+                writers[format.ordinal()] = ObjectMapperUtil.objectMapper(format).writerFor(type);
+            }
+        }
+    }
+}
@@ -1,14 +1,19 @@
 package util;
 
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Objects;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 /**
  * The Utility to work with json object.
@@ -16,18 +21,25 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public final class ObjectMapperUtil
 {
     private static final Logger LOGGER = LogManager.getLogger(ObjectMapperUtil.class);
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Map<WireFormat, ObjectMapper> OBJECT_MAPPERS = new EnumMap<>(WireFormat.class);
 
     static
     {
-        OBJECT_MAPPER.setVisibility(OBJECT_MAPPER
-                .getSerializationConfig()
-                .getDefaultVisibilityChecker()
-                .with(Visibility.NONE)
-                .withFieldVisibility(Visibility.ANY));
-        OBJECT_MAPPER.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true);
+        for (WireFormat format : WireFormat.values())
+        {
+            ObjectMapper objectMapper = new ObjectMapper(format.jsonFactory());
+            objectMapper.setVisibility(objectMapper
+                    .getSerializationConfig()
+                    .getDefaultVisibilityChecker()
+                    .with(Visibility.NONE)
+                    .withFieldVisibility(Visibility.ANY));
+            objectMapper.configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true);
+            OBJECT_MAPPERS.put(format, objectMapper);
+        }
     }
 
+    private static final ObjectMapper OBJECT_MAPPER = OBJECT_MAPPERS.get(WireFormat.JSON);
+
     // private class
     private ObjectMapperUtil()
     {
@@ -45,7 +57,7 @@ public final class ObjectMapperUtil
         Objects.requireNonNull(data);
         try
         {
-            return OBJECT_MAPPER.writeValueAsString(data);
+            return CodecRegistry.writer(data.getClass(), WireFormat.JSON).writeValueAsString(data);
         }
         catch (JsonProcessingException e)
         {
@@ -54,6 +66,45 @@ public final class ObjectMapperUtil
         }
     }
 
+    /**
+     * Serialize a given instance to json bytes.
+     * <p>
+     * Jackson writes the instance into its per-thread recycled buffer and copies it once into an array of the exact size,
+     * so no intermediate {@link String} is created and the result can be passed to IndexRequest#source(BytesReference, XContentType) as is.
+     * </p>
+     * 
+     * @param <T> Given instance to serialize as json bytes;
+     * @param data The instance to be serialized as json bytes;
+     * @return Returns serialized json bytes.
+     */
+    public static <T> BytesReference serializeToBytes(T data)
+    {
+        return serializeToBytes(data, WireFormat.JSON);
+    }
+
+    /**
+     * Serialize a given instance to bytes encoded by the given format.
+     * 
+     * @param <T> Given instance to serialize;
+     * @param data The instance to be serialized;
+     * @param format The format to encode bytes;
+     * @return Returns serialized bytes.
+     * @see #serializeToBytes(Object)
+     */
+    public static <T> BytesReference serializeToBytes(T data, WireFormat format)
+    {
+        Objects.requireNonNull(data);
+        try
+        {
+            return new BytesArray(CodecRegistry.writer(data.getClass(), format).writeValueAsBytes(data));
+        }
+        catch (JsonProcessingException e)
+        {
+            LOGGER.error("Cannot serialize data: " + data, e);  // never must happen
+            return BytesArray.EMPTY;
+        }
+    }
+
     /**
      * Deserialize a string value to the given type.
      * 
@@ -66,7 +117,7 @@ public final class ObjectMapperUtil
     {
         try
         {
-            return OBJECT_MAPPER.readValue(data, resultClass);
+            return CodecRegistry.reader(resultClass, WireFormat.JSON).readValue(data);
         }
         catch (Exception e)
         {
@@ -74,6 +125,33 @@ public final class ObjectMapperUtil
         }
     }
 
+    /**
+     * Get a reader to deserialize json data to the given type.
+     * <p>
+     * The reader is cached by {@link CodecRegistry} with resolved deserializer of the type.
+     * </p>
+     * 
+     * @param resultClass The type to deserialize data;
+     * @return Returns created reader.
+     */
+    public static ObjectReader readerFor(Class<?> resultClass)
+    {
+        return readerFor(resultClass, WireFormat.JSON);
+    }
+
+    /**
+     * Get a reader to deserialize data encoded by the given format.
+     * 
+     * @param resultClass The type to deserialize data;
+     * @param format The format of data;
+     * @return Returns created reader.
+     * @see #readerFor(Class)
+     */
+    public static ObjectReader readerFor(Class<?> resultClass, WireFormat format)
+    {
+        return CodecRegistry.reader(resultClass, format);
+    }
+
     /**
      * Converts given value into instance of given value type.
      * 
@@ -86,4 +164,12 @@ public final class ObjectMapperUtil
     {
         return OBJECT_MAPPER.convertValue(fromValue, toType);
     }
+
+    /**
+     * Get the configured mapper of the given format.
+     */
+    static ObjectMapper objectMapper(WireFormat format)
+    {
+        return OBJECT_MAPPERS.get(format);
+    }
 }
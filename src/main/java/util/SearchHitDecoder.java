@@ -0,0 +1,113 @@
+package util;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+
+/**
+ * Decodes source of search hits into instances of the given type.
+ * <p>
+ * Jackson parser reads source bytes of a hit directly, so a hit is never converted to {@link String} before parsing.
+ * The decoder works with {@link SearchResponse} of Node client and RestHighLevelClient both.
+ * </p>
+ * The format of source is detected by its first bytes, so json and smile documents can be decoded by the same decoder.
+ *
+ * @param <T> The type of decoded instance.
+ */
+public final class SearchHitDecoder<T>
+{
+    private final Map<WireFormat, ObjectReader> readers = new EnumMap<>(WireFormat.class);
+
+    private SearchHitDecoder(Class<T> resultClass)
+    {
+        for (WireFormat format : WireFormat.values())
+        {
+            readers.put(format, ObjectMapperUtil.readerFor(resultClass, format));
+        }
+    }
+
+    /**
+     * Create decoder of the given type.
+     *
+     * @param <T> Instance type;
+     * @param resultClass The type to decode hits;
+     * @return Returns created decoder.
+     */
+    public static <T> SearchHitDecoder<T> of(Class<T> resultClass)
+    {
+        return new SearchHitDecoder<>(resultClass);
+    }
+
+    /**
+     * Decode source bytes.
+     *
+     * @param source The source bytes;
+     * @return Returns decoded instance.
+     */
+    public T decode(BytesReference source)
+    {
+        Objects.requireNonNull(source, "Expects fetched source");
+
+        // BytesArray returns its own array without copying
+        BytesRef bytesRef = source.toBytesRef();
+        try
+        {
+            return readers.get(WireFormat.detect(bytesRef.bytes, bytesRef.offset, bytesRef.length))
+                    .readValue(bytesRef.bytes, bytesRef.offset, bytesRef.length);
+        }
+        catch (IOException e)
+        {
+            throw new RuntimeException("Cannot deserialize source of " + source.length() + " bytes", e);
+        }
+    }
+
+    /**
+     * Decode source of the given hit.
+     *
+     * @param hit The search hit;
+     * @return Returns decoded instance.
+     */
+    public T decode(SearchHit hit)
+    {
+        return decode(hit.getSourceRef());
+    }
+
+    /**
+     * Decode source of all given hits.
+     *
+     * @param hits The search hits;
+     * @return Returns list of decoded instances in order of hits.
+     */
+    public List<T> decode(SearchHits hits)
+    {
+        SearchHit[] array = hits.getHits();
+        List<T> result = new ArrayList<>(array.length);
+        for (SearchHit hit : array)
+        {
+            result.add(decode(hit));
+        }
+        return result;
+    }
+
+    /**
+     * Decode source of all hits in the given response.
+     *
+     * @param response The search response;
+     * @return Returns list of decoded instances in order of hits.
+     */
+    public List<T> decode(SearchResponse response)
+    {
+        return decode(response.getHits());
+    }
+}
@@ -0,0 +1,124 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.sme.elasticsearch.model.BaseEntity;
+
+/**
+ * The list of "_source" fields fetched by a search.
+ * <p>
+ * The fields are derived from properties of a view class the same way as {@link ObjectMapperUtil} serializes them,
+ * properties of {@link BaseEntity} type (or collections of them) are expanded to nested paths like "orderItems.article.name".
+ * Hits fetched with the projection are decoded by {@link SearchHitDecoder} of the view class or fill the projected fields of a model class only.
+ * </p>
+ */
+public final class SourceProjection
+{
+    private static final ClassValue<SourceProjection> VIEWS = new ClassValue<SourceProjection>()
+    {
+        @Override
+        protected SourceProjection computeValue(Class<?> type)
+        {
+            List<String> fields = new ArrayList<>();
+            collectFields(ObjectMapperUtil.objectMapper(WireFormat.JSON), type, "", fields);
+            return new SourceProjection(fields);
+        }
+    };
+
+    private final String[] includes;
+
+    private SourceProjection(List<String> fields)
+    {
+        if (fields.isEmpty())
+        {
+            throw new IllegalArgumentException("Expects at least one field, empty includes fetch whole source");
+        }
+        this.includes = fields.toArray(new String[0]);
+    }
+
+    /**
+     * Get projection of properties of the given view class.
+     *
+     * @param view The class to decode fetched hits;
+     * @return Returns cached projection.
+     */
+    public static SourceProjection of(Class<?> view)
+    {
+        return VIEWS.get(view);
+    }
+
+    /**
+     * Create projection of the given fields.
+     *
+     * @param fields The list of fields, nested fields are separated by dot;
+     * @return Returns created projection.
+     */
+    public static SourceProjection of(String... fields)
+    {
+        return new SourceProjection(Arrays.asList(fields));
+    }
+
+    /**
+     * Get fetched fields.
+     *
+     * @return Returns list of fields.
+     */
+    public List<String> includes()
+    {
+        return Collections.unmodifiableList(Arrays.asList(includes));
+    }
+
+    /**
+     * Fetch only projected fields by the given search.
+     *
+     * @param sourceBuilder The search source;
+     * @return Returns the given search source.
+     */
+    public SearchSourceBuilder apply(SearchSourceBuilder sourceBuilder)
+    {
+        return sourceBuilder.fetchSource(includes, null);
+    }
+
+    /**
+     * Create context to fetch projected fields by get requests.
+     *
+     * @return Returns fetch source context.
+     */
+    public FetchSourceContext fetchSourceContext()
+    {
+        return new FetchSourceContext(true, includes, null);
+    }
+
+    private static void collectFields(ObjectMapper objectMapper, Class<?> type, String prefix, List<String> fields)
+    {
+        BeanDescription description = objectMapper.getSerializationConfig().introspect(objectMapper.constructType(type));
+        for (BeanPropertyDefinition property : description.findProperties())
+        {
+            JavaType propertyType = property.getPrimaryType();
+            if (propertyType.isContainerType())
+            {
+                propertyType = propertyType.getContentType();
+            }
+
+            String path = prefix + property.getName();
+            if (BaseEntity.class.isAssignableFrom(propertyType.getRawClass()))
+            {
+                collectFields(objectMapper, propertyType.getRawClass(), path + ".", fields);
+            }
+            else
+            {
+                fields.add(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package util;
+
+import java.util.Locale;
+
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * The encoding of documents sent to and received from ElasticSearch.
+ * <p>
+ * SMILE is a binary json, so documents are smaller and parsed faster than json text.
+ * CBOR is not supported, because RestHighLevelClient accepts json and smile bulk requests only.
+ * </p>
+ * The default format is specified by "wire.format" system property, json is used if the property is not set.
+ */
+public enum WireFormat
+{
+    JSON(XContentType.JSON, new JsonFactory()),
+    SMILE(XContentType.SMILE, new SmileFactory());
+
+    private static final WireFormat DEFAULT = valueOf(System.getProperty("wire.format", "JSON").toUpperCase(Locale.ROOT));
+
+    // https://github.com/FasterXML/smile-format-specification
+    private static final byte[] SMILE_HEADER = {':', ')', '\n'};
+
+    private final XContentType xContentType;
+    private final JsonFactory jsonFactory;
+    private final RequestOptions requestOptions;
+
+    WireFormat(XContentType xContentType, JsonFactory jsonFactory)
+    {
+        this.xContentType = xContentType;
+        this.jsonFactory = jsonFactory;
+        this.requestOptions = xContentType == XContentType.JSON
+            ? RequestOptions.DEFAULT
+            : RequestOptions.DEFAULT.toBuilder()
+                    .addHeader("Accept", xContentType.mediaTypeWithoutParameters())
+                    .build();
+    }
+
+    /**
+     * Get the default format.
+     *
+     * @return Returns the format specified by "wire.format" system property.
+     */
+    public static WireFormat getDefault()
+    {
+        return DEFAULT;
+    }
+
+    /**
+     * Detect a format of the given encoded bytes.
+     *
+     * @param bytes The encoded bytes;
+     * @param offset The offset of the first byte;
+     * @param length The length of encoded bytes;
+     * @return Returns detected format.
+     */
+    public static WireFormat detect(byte[] bytes, int offset, int length)
+    {
+        if (length >= SMILE_HEADER.length
+            && bytes[offset] == SMILE_HEADER[0]
+            && bytes[offset + 1] == SMILE_HEADER[1]
+            && bytes[offset + 2] == SMILE_HEADER[2])
+        {
+            return SMILE;
+        }
+        return JSON;
+    }
+
+    /**
+     * Get the content type to send documents in {@link org.elasticsearch.action.index.IndexRequest}.
+     *
+     * @return Returns the content type.
+     */
+    public XContentType xContentType()
+    {
+        return xContentType;
+    }
+
+    /**
+     * Get the options to receive responses of RestHighLevelClient encoded by the format.
+     *
+     * @return Returns the request options.
+     */
+    public RequestOptions requestOptions()
+    {
+        return requestOptions;
+    }
+
+    JsonFactory jsonFactory()
+    {
+        return jsonFactory;
+    }
+}
@@ -0,0 +1,141 @@
+package com.sme.elasticsearch.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.http.HttpHost;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sme.elasticsearch.client.BlockingCallExecutor;
+import com.sme.elasticsearch.td.TestDataGenerator;
+
+import util.ObjectMapperUtil;
+import util.WireFormat;
+
+/**
+ * <p>
+ * Compares blocking search calls on virtual threads, blocking calls on a fixed pool of platform threads
+ * and asynchronous calls with callbacks at the same number of concurrent requests.
+ * </p>
+ * An operation starts {@link #concurrency} searches and waits for all of them.
+ * The connection pool of the rest client allows all concurrent requests, so the modes differ by threads only.
+ * The benchmark expects ElasticSearch on localhost:9200 like the rest client tests.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class BlockingCallBenchmark
+{
+    private static final Logger LOGGER = LogManager.getLogger(BlockingCallBenchmark.class);
+    private static final String INDEX = "blocking_call_benchmark_products";
+    private static final int PLATFORM_THREADS = 16;
+
+    @Param({"VIRTUAL", "PLATFORM", "ASYNC"})
+    private String mode;
+
+    @Param({"256"})
+    private int concurrency;
+
+    private RestHighLevelClient client;
+    private BlockingCallExecutor executor;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        client = new RestHighLevelClient(RestClient.builder(new HttpHost("localhost", 9200, "http"))
+                .setHttpClientConfigCallback(builder -> builder
+                        .setMaxConnPerRoute(concurrency)
+                        .setMaxConnTotal(concurrency)));
+
+        WireFormat format = WireFormat.getDefault();
+        BulkRequest bulkRequest = new BulkRequest().setRefreshPolicy(RefreshPolicy.IMMEDIATE);
+        new TestDataGenerator(1L, 100).products(1000)
+                .map(p -> new IndexRequest(INDEX).id(String.valueOf(p.getId())).source(ObjectMapperUtil.serializeToBytes(p, format), format.xContentType()))
+                .collect(Collectors.toList())
+                .forEach(bulkRequest::add);
+        client.bulk(bulkRequest, RequestOptions.DEFAULT);
+
+        if ("VIRTUAL".equals(mode))
+        {
+            executor = BlockingCallExecutor.virtual();
+            LOGGER.info("Actual mode: {}", executor.getMode());
+        }
+        else if ("PLATFORM".equals(mode))
+        {
+            executor = BlockingCallExecutor.platform(PLATFORM_THREADS);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        if (executor != null)
+        {
+            executor.close();
+        }
+        client.close();
+    }
+
+    @Benchmark
+    public Object search() throws Exception
+    {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++)
+        {
+            SearchRequest request = new SearchRequest(INDEX).source(new SearchSourceBuilder()
+                    .query(QueryBuilders.termQuery("id", i % 1000 + 1)));
+
+            if (executor != null)
+            {
+                futures[i] = executor.submit(() -> client.search(request, RequestOptions.DEFAULT));
+            }
+            else
+            {
+                CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+                client.searchAsync(request, RequestOptions.DEFAULT, ActionListener.wrap(future::complete, future::completeExceptionally));
+                futures[i] = future;
+            }
+        }
+        return CompletableFuture.allOf(futures).get();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(BlockingCallBenchmark.class.getSimpleName())
+                .build())
+                        .run();
+    }
+}
@@ -0,0 +1,107 @@
+package com.sme.elasticsearch.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sme.elasticsearch.td.ArticleTD;
+import com.sme.elasticsearch.td.OrderTD;
+import com.sme.elasticsearch.td.ProductTD;
+
+import util.CodecRegistry;
+import util.WireFormat;
+
+/**
+ * Compares shared {@link ObjectMapper} calls with cached codecs of {@link CodecRegistry} for every model class.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CodecRegistryBenchmark
+{
+    // The same configuration as ObjectMapperUtil has
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .setVisibility(new ObjectMapper()
+                    .getSerializationConfig()
+                    .getDefaultVisibilityChecker()
+                    .with(Visibility.NONE)
+                    .withFieldVisibility(Visibility.ANY))
+            .configure(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY, true);
+
+    @Param({"article", "product", "order"})
+    private String model;
+
+    private Object data;
+    private Class<?> type;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        switch (model)
+        {
+            case "article":
+                data = ArticleTD.ARTICLE1;
+                break;
+            case "product":
+                data = ProductTD.PRODUCT1;
+                break;
+            default:
+                data = OrderTD.ORDER1;
+        }
+        type = data.getClass();
+        json = OBJECT_MAPPER.writeValueAsBytes(data);
+    }
+
+    @Benchmark
+    public byte[] mapperWrite() throws IOException
+    {
+        return OBJECT_MAPPER.writeValueAsBytes(data);
+    }
+
+    @Benchmark
+    public byte[] registryWrite() throws IOException
+    {
+        return CodecRegistry.writer(type, WireFormat.JSON).writeValueAsBytes(data);
+    }
+
+    @Benchmark
+    public Object mapperRead() throws IOException
+    {
+        return OBJECT_MAPPER.readValue(json, type);
+    }
+
+    @Benchmark
+    public Object registryRead() throws IOException
+    {
+        return CodecRegistry.reader(type, WireFormat.JSON).readValue(json);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(CodecRegistryBenchmark.class.getSimpleName())
+                .build())
+                        .run();
+    }
+}
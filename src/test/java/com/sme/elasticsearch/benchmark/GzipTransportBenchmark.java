@@ -0,0 +1,135 @@
+package com.sme.elasticsearch.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.HttpHost;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sme.elasticsearch.client.GzipHttpClientConfigCallback;
+import com.sme.elasticsearch.model.Order;
+import com.sme.elasticsearch.td.TestDataGenerator;
+
+import util.ObjectMapperUtil;
+import util.WireFormat;
+
+/**
+ * <p>
+ * Compares bulk indexing of orders by plain and gzip compressed http transport.
+ * </p>
+ * The benchmark expects ElasticSearch on localhost:9200 like the rest client tests. Bytes on the wire are printed before the run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class GzipTransportBenchmark
+{
+    private static final Logger LOGGER = LogManager.getLogger(GzipTransportBenchmark.class);
+
+    private static final String INDEX = "gzip_benchmark_orders";
+    private static final int BULK_SIZE = 500;
+
+    @Param({"false", "true"})
+    private boolean gzip;
+
+    private RestHighLevelClient client;
+    private List<BytesReference> orders;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        HttpHost host = new HttpHost("localhost", 9200, "http");
+        client = gzip
+            ? GzipHttpClientConfigCallback.createClient(host)
+            : new RestHighLevelClient(RestClient.builder(host));
+
+        if (!client.indices().exists(new GetIndexRequest(INDEX), RequestOptions.DEFAULT))
+        {
+            client.indices().create(new CreateIndexRequest(INDEX), RequestOptions.DEFAULT);
+        }
+
+        orders = new TestDataGenerator(1L, 1000).orders(BULK_SIZE)
+                .map(o -> ObjectMapperUtil.serializeToBytes(o, WireFormat.JSON))
+                .collect(Collectors.toList());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        client.close();
+    }
+
+    @Benchmark
+    public BulkResponse bulk() throws IOException
+    {
+        BulkRequest request = new BulkRequest();
+        for (int i = 0; i < orders.size(); i++)
+        {
+            request.add(new IndexRequest(INDEX).id(String.valueOf(i + 1)).source(orders.get(i), XContentType.JSON));
+        }
+        return client.bulk(request, RequestOptions.DEFAULT);
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException
+    {
+        // Print bytes on the wire of one bulk request body
+        List<Order> orders = new TestDataGenerator(1L, 1000).orders(BULK_SIZE).collect(Collectors.toList());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (Order order : orders)
+        {
+            body.write(("{\"index\":{\"_index\":\"" + INDEX + "\",\"_id\":\"" + order.getId() + "\"}}\n").getBytes(StandardCharsets.UTF_8));
+            ObjectMapperUtil.serializeToBytes(order, WireFormat.JSON).writeTo(body);
+            body.write('\n');
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed))
+        {
+            body.writeTo(out);
+        }
+        LOGGER.info("Bulk of {} orders: plain {} bytes, gzip {} bytes ({}%)",
+                orders.size(),
+                body.size(),
+                compressed.size(),
+                String.format("%.1f", 100d * compressed.size() / body.size()));
+
+        new Runner(new OptionsBuilder()
+                .include(GzipTransportBenchmark.class.getSimpleName())
+                .build())
+                        .run();
+    }
+}
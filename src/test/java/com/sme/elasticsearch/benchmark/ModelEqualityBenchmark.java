@@ -0,0 +1,124 @@
+package com.sme.elasticsearch.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sme.elasticsearch.model.Order;
+import com.sme.elasticsearch.model.OrderItem;
+
+import util.ObjectMapperUtil;
+
+/**
+ * Compares reflection builders of commons-lang with field-direct equals, hashCode and toString of {@link Order} with many {@link OrderItem}s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ModelEqualityBenchmark
+{
+    @Param({"10", "1000"})
+    private int orderItems;
+
+    private Order order;
+    private Order copy;
+
+    @Setup
+    public void setUp()
+    {
+        order = WireFormatBenchmark.scaledOrder(orderItems);
+        // Deep copy to avoid identity shortcuts
+        copy = ObjectMapperUtil.deserialize(Order.class, ObjectMapperUtil.serialize(order));
+    }
+
+    // The builders are reflective only at the top level, so nested entities are walked by hand once
+    @Benchmark
+    public boolean reflectionEquals()
+    {
+        if (!EqualsBuilder.reflectionEquals(order, copy, "orderItems") || order.getOrderItems().size() != copy.getOrderItems().size())
+        {
+            return false;
+        }
+        for (int i = 0; i < orderItems; i++)
+        {
+            OrderItem item = order.getOrderItems().get(i);
+            OrderItem copyItem = copy.getOrderItems().get(i);
+            if (!EqualsBuilder.reflectionEquals(item, copyItem, "article") || !EqualsBuilder.reflectionEquals(item.getArticle(), copyItem.getArticle()))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Benchmark
+    public boolean fieldEquals()
+    {
+        return order.equals(copy);
+    }
+
+    @Benchmark
+    public int reflectionHashCode()
+    {
+        int result = HashCodeBuilder.reflectionHashCode(order, "orderItems");
+        for (OrderItem item : order.getOrderItems())
+        {
+            result = 31 * result + HashCodeBuilder.reflectionHashCode(item, "article");
+            result = 31 * result + HashCodeBuilder.reflectionHashCode(item.getArticle());
+        }
+        return result;
+    }
+
+    @Benchmark
+    public int fieldHashCode()
+    {
+        return order.hashCode();
+    }
+
+    @Benchmark
+    public String reflectionToString()
+    {
+        StringBuilder result = new StringBuilder(new ReflectionToStringBuilder(order, ToStringStyle.JSON_STYLE).setExcludeFieldNames("orderItems").toString());
+        for (OrderItem item : order.getOrderItems())
+        {
+            result.append(new ReflectionToStringBuilder(item, ToStringStyle.JSON_STYLE).setExcludeFieldNames("article").toString());
+            result.append(ToStringBuilder.reflectionToString(item.getArticle(), ToStringStyle.JSON_STYLE));
+        }
+        return result.toString();
+    }
+
+    @Benchmark
+    public String fieldToString()
+    {
+        return order.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(ModelEqualityBenchmark.class.getSimpleName())
+                .build())
+                        .run();
+    }
+}
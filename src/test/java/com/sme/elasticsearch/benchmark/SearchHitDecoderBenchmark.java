@@ -0,0 +1,88 @@
+package com.sme.elasticsearch.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sme.elasticsearch.model.Order;
+import com.sme.elasticsearch.td.OrderTD;
+
+import util.ObjectMapperUtil;
+import util.SearchHitDecoder;
+
+/**
+ * Compares decoding of a search page through {@link SearchHit#getSourceAsString()} and through {@link SearchHitDecoder}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SearchHitDecoderBenchmark
+{
+    @Param({"100", "10000"})
+    private int pageSize;
+
+    private SearchHits hits;
+    private final SearchHitDecoder<Order> decoder = SearchHitDecoder.of(Order.class);
+
+    @Setup
+    public void setUp()
+    {
+        List<SearchHit> page = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++)
+        {
+            Order order = OrderTD.ALL_ORDERED.get(i % OrderTD.ALL_ORDERED.size());
+            SearchHit hit = new SearchHit(i, "order_" + i, null, Collections.emptyMap());
+            hit.sourceRef(ObjectMapperUtil.serializeToBytes(order));
+            page.add(hit);
+        }
+        hits = new SearchHits(page.toArray(new SearchHit[0]), new TotalHits(pageSize, TotalHits.Relation.EQUAL_TO), 1.0f);
+    }
+
+    @Benchmark
+    public List<Order> stringDecoding()
+    {
+        return Arrays.stream(hits.getHits())
+                .map(searchHit -> ObjectMapperUtil.deserialize(Order.class, searchHit.getSourceAsString()))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Order> bytesDecoding()
+    {
+        return decoder.decode(hits);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(SearchHitDecoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                        .run();
+    }
+}
@@ -0,0 +1,86 @@
+package com.sme.elasticsearch.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sme.elasticsearch.td.ArticleTD;
+import com.sme.elasticsearch.td.OrderTD;
+import com.sme.elasticsearch.td.ProductTD;
+
+import util.ObjectMapperUtil;
+
+/**
+ * Compares the String and the bytes serialization paths to build {@link IndexRequest} source.
+ * <p>
+ * Run with GC profiler to see allocation per operation ("gc.alloc.rate.norm").
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerializationBenchmark
+{
+    private static final String INDEX = "benchmark";
+
+    @Param({"article", "product", "order"})
+    private String fixture;
+
+    private Object data;
+
+    @Setup
+    public void setUp()
+    {
+        switch (fixture)
+        {
+            case "article":
+                data = ArticleTD.ARTICLE1;
+                break;
+            case "product":
+                data = ProductTD.PRODUCT1;
+                break;
+            default:
+                data = OrderTD.ORDER1;
+        }
+    }
+
+    @Benchmark
+    public IndexRequest stringSource()
+    {
+        return new IndexRequest(INDEX).id("1").source(ObjectMapperUtil.serialize(data), XContentType.JSON);
+    }
+
+    @Benchmark
+    public IndexRequest bytesSource()
+    {
+        return new IndexRequest(INDEX).id("1").source(ObjectMapperUtil.serializeToBytes(data), XContentType.JSON);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(SerializationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                        .run();
+    }
+}
@@ -0,0 +1,136 @@
+package com.sme.elasticsearch.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.sme.elasticsearch.model.Order;
+import com.sme.elasticsearch.model.OrderItem;
+import com.sme.elasticsearch.model.Product;
+import com.sme.elasticsearch.td.ArticleTD;
+import com.sme.elasticsearch.td.ProductTD;
+
+import util.ObjectMapperUtil;
+import util.PojoGenericBuilder;
+import util.SearchHitDecoder;
+import util.WireFormat;
+
+/**
+ * Compares size and throughput of json and smile encoding of documents.
+ * <p>
+ * Order fixture is scaled up by the number of order items built from {@link ArticleTD} articles.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WireFormatBenchmark
+{
+    private static final Logger LOGGER = LogManager.getLogger(WireFormatBenchmark.class);
+
+    @Param({"JSON", "SMILE"})
+    private WireFormat format;
+
+    @Param({"1", "10", "100"})
+    private int orderItems;
+
+    private Order order;
+    private BytesReference encodedOrder;
+    private BytesReference encodedProduct;
+
+    private final SearchHitDecoder<Order> orderDecoder = SearchHitDecoder.of(Order.class);
+    private final SearchHitDecoder<Product> productDecoder = SearchHitDecoder.of(Product.class);
+
+    @Setup
+    public void setUp()
+    {
+        order = scaledOrder(orderItems);
+        encodedOrder = ObjectMapperUtil.serializeToBytes(order, format);
+        encodedProduct = ObjectMapperUtil.serializeToBytes(ProductTD.PRODUCT1, format);
+    }
+
+    @Benchmark
+    public BytesReference encodeOrder()
+    {
+        return ObjectMapperUtil.serializeToBytes(order, format);
+    }
+
+    @Benchmark
+    public Order decodeOrder()
+    {
+        return orderDecoder.decode(encodedOrder);
+    }
+
+    @Benchmark
+    public BytesReference encodeProduct()
+    {
+        return ObjectMapperUtil.serializeToBytes(ProductTD.PRODUCT1, format);
+    }
+
+    @Benchmark
+    public Product decodeProduct()
+    {
+        return productDecoder.decode(encodedProduct);
+    }
+
+    static Order scaledOrder(int size)
+    {
+        List<OrderItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+        {
+            items.add(new PojoGenericBuilder<>(OrderItem::new)
+                    .with(OrderItem::setId, i)
+                    .with(OrderItem::setQuantity, i + 1)
+                    .with(OrderItem::setArticle, ArticleTD.ALL_ORDERED.get(i % ArticleTD.ALL_ORDERED.size()))
+                    .build());
+        }
+
+        return new PojoGenericBuilder<>(Order::new)
+                .with(Order::setId, size)
+                .with(Order::setOrderNo, "order" + size)
+                .with(Order::setOrderItems, items)
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        // Print size of encoded documents before throughput
+        for (int size : new int[] {1, 10, 100})
+        {
+            Order order = scaledOrder(size);
+            LOGGER.info("Order with {} items: json {} bytes, smile {} bytes",
+                    size,
+                    ObjectMapperUtil.serializeToBytes(order, WireFormat.JSON).length(),
+                    ObjectMapperUtil.serializeToBytes(order, WireFormat.SMILE).length());
+        }
+        LOGGER.info("Product: json {} bytes, smile {} bytes",
+                ObjectMapperUtil.serializeToBytes(ProductTD.PRODUCT1, WireFormat.JSON).length(),
+                ObjectMapperUtil.serializeToBytes(ProductTD.PRODUCT1, WireFormat.SMILE).length());
+
+        new Runner(new OptionsBuilder()
+                .include(WireFormatBenchmark.class.getSimpleName())
+                .build())
+                        .run();
+    }
+}
@@ -0,0 +1,121 @@
+package com.sme.elasticsearch.bulk;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sme.elasticsearch.bulk.AdaptiveBulkSizingPolicy.Decision;
+import com.sme.elasticsearch.bulk.AdaptiveBulkSizingPolicy.Reason;
+
+/**
+ * Unit tests of {@link AdaptiveBulkSizingPolicy} against a simulated cluster.
+ */
+public class AdaptiveBulkSizingPolicyTest extends Assert
+{
+    @Test
+    public void testConvergeToBestBulkSize() throws Exception
+    {
+        AdaptiveBulkSizingPolicy policy = new AdaptiveBulkSizingPolicy(100, 10, 10_000, 1, 10_000, 1);
+
+        // Round trip overhead of 20ms and a node that slows down above 2000 documents per bulk
+        for (int i = 0; i < 100; i++)
+        {
+            int actions = policy.bulkActions();
+            long millis = 20 + actions / 100 + (actions > 2000 ? (actions - 2000) / 10 : 0);
+            policy.onResponse(actions, TimeUnit.MILLISECONDS.toNanos(millis), new BulkResponse(new BulkItemResponse[0], millis));
+        }
+
+        assertTrue("Expects bulk size around the best size, but " + policy.bulkActions(), policy.bulkActions() > 1000 && policy.bulkActions() < 4000);
+    }
+
+    @Test
+    public void testRejections() throws Exception
+    {
+        AdaptiveBulkSizingPolicy policy = new AdaptiveBulkSizingPolicy(1000, 10, 10_000, 4, 10_000, 4);
+
+        BulkItemResponse[] items = new BulkItemResponse[10];
+        for (int i = 0; i < items.length; i++)
+        {
+            items[i] = new BulkItemResponse(i, OpType.INDEX,
+                    new BulkItemResponse.Failure("articles", "_doc", String.valueOf(i), new EsRejectedExecutionException("rejected")));
+        }
+        policy.onResponse(1000, TimeUnit.MILLISECONDS.toNanos(50), new BulkResponse(items, 50));
+
+        assertEquals(500, policy.bulkActions());
+        assertEquals(1, policy.concurrentRequests());
+
+        List<Decision> decisions = policy.getDecisions();
+        assertEquals(1, decisions.size());
+        assertEquals(Reason.REJECTED, decisions.get(0).getReason());
+        assertEquals(0.01d, decisions.get(0).getRejectionRate(), 0.0001d);
+    }
+
+    @Test
+    public void testRecoveryAfterRejections() throws Exception
+    {
+        AdaptiveBulkSizingPolicy policy = new AdaptiveBulkSizingPolicy(1000, 10, 10_000, 2, 10_000, 1);
+
+        policy.onFailure(1000, TimeUnit.MILLISECONDS.toNanos(50), new EsRejectedExecutionException("rejected"));
+        assertEquals(500, policy.bulkActions());
+        assertEquals(1, policy.concurrentRequests());
+
+        // The cluster is recovered, the time is proportional to the bulk size, so the throughput does not depend on it
+        for (int i = 0; i < 10; i++)
+        {
+            int actions = policy.bulkActions();
+            policy.onResponse(actions, TimeUnit.MILLISECONDS.toNanos(actions / 10), new BulkResponse(new BulkItemResponse[0], actions / 10));
+        }
+
+        List<Decision> decisions = policy.getDecisions();
+        // The first clean window is the new baseline, not an improvement over the rejected one
+        assertEquals(Reason.KEEP, decisions.get(1).getReason());
+        assertEquals(500, decisions.get(1).getBulkActions());
+        // The concurrency is probed again
+        assertEquals(Reason.MORE_CONCURRENCY, decisions.get(10).getReason());
+        assertEquals(2, policy.concurrentRequests());
+    }
+
+    @Test
+    public void testSlowBulk() throws Exception
+    {
+        AdaptiveBulkSizingPolicy policy = new AdaptiveBulkSizingPolicy(1000, 10, 10_000, 4, 100, 1);
+
+        policy.onResponse(1000, TimeUnit.MILLISECONDS.toNanos(500), new BulkResponse(new BulkItemResponse[0], 400));
+
+        assertEquals(750, policy.bulkActions());
+        assertEquals(Reason.SLOW, policy.getDecisions().get(0).getReason());
+    }
+
+    @Test
+    public void testMoreConcurrencyOnPlateau() throws Exception
+    {
+        AdaptiveBulkSizingPolicy policy = new AdaptiveBulkSizingPolicy(100, 10, 100, 2, 10_000, 1);
+
+        // Bulk size is at maximum, so the throughput stops to grow
+        for (int i = 0; i < 3; i++)
+        {
+            policy.onResponse(100, TimeUnit.MILLISECONDS.toNanos(10), new BulkResponse(new BulkItemResponse[0], 10));
+        }
+
+        assertEquals(2, policy.concurrentRequests());
+    }
+
+    @Test
+    public void testBoundedDecisions() throws Exception
+    {
+        AdaptiveBulkSizingPolicy policy = new AdaptiveBulkSizingPolicy(100, 10, 100, 1, 10_000, 1);
+
+        for (int i = 0; i < 500; i++)
+        {
+            policy.onResponse(100, TimeUnit.MILLISECONDS.toNanos(10), new BulkResponse(new BulkItemResponse[0], 10));
+        }
+
+        assertEquals(100, policy.getDecisions().size());
+    }
+}
@@ -0,0 +1,217 @@
+package com.sme.elasticsearch.bulk;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sme.elasticsearch.model.Article;
+import com.sme.elasticsearch.td.TestDataGenerator;
+
+/**
+ * Unit tests of {@link BulkIndexer} with fake execution of bulk requests.
+ */
+public class BulkIndexerTest extends Assert
+{
+    private static final String INDEX = "articles";
+
+    private final TestDataGenerator generator = new TestDataGenerator(1L, 100);
+    private final RecordingListener listener = new RecordingListener();
+
+    @Test
+    public void testFlushByActions() throws Exception
+    {
+        BulkIndexerSettings settings = settings(10, 0);
+        try (BulkIndexer indexer = new BulkIndexer((request, l) -> l.onResponse(response(request)), settings, listener))
+        {
+            generator.articles(25).forEach(a -> indexer.index(INDEX, a));
+            assertEquals("Expects two full bulk requests", 2, listener.actions.size());
+        }
+
+        assertEquals(3, listener.actions.size());
+        assertEquals(Integer.valueOf(10), listener.actions.get(0));
+        assertEquals(Integer.valueOf(10), listener.actions.get(1));
+        assertEquals(Integer.valueOf(5), listener.actions.get(2));
+    }
+
+    @Test
+    public void testBackpressure() throws Exception
+    {
+        BulkIndexerSettings settings = settings(1, 0);
+        List<ActionListener<BulkResponse>> pending = new CopyOnWriteArrayList<>();
+        List<BulkRequest> requests = new CopyOnWriteArrayList<>();
+        BulkIndexer indexer = new BulkIndexer((request, l) ->
+        {
+            requests.add(request);
+            pending.add(l);
+        }, settings, listener);
+
+        indexer.index(INDEX, generator.article(1));
+        assertEquals(1, indexer.getInFlight());
+
+        CountDownLatch produced = new CountDownLatch(1);
+        Thread producer = new Thread(() ->
+        {
+            indexer.index(INDEX, generator.article(2));
+            produced.countDown();
+        });
+        producer.start();
+
+        assertFalse("Expects blocked producer", produced.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, requests.size());
+
+        pending.get(0).onResponse(response(requests.get(0)));
+        assertTrue("Expects released producer", produced.await(5, TimeUnit.SECONDS));
+        assertEquals(2, requests.size());
+
+        pending.get(1).onResponse(response(requests.get(1)));
+        assertTrue(indexer.awaitClose(5, TimeUnit.SECONDS));
+        assertEquals(0, indexer.getInFlight());
+    }
+
+    @Test
+    public void testFlushByInterval() throws Exception
+    {
+        BulkIndexerSettings settings = settings(1000, 50);
+        CountDownLatch executed = new CountDownLatch(1);
+        try (BulkIndexer indexer = new BulkIndexer((request, l) ->
+        {
+            l.onResponse(response(request));
+            executed.countDown();
+        }, settings, listener))
+        {
+            Article article = generator.article(1);
+            indexer.index(INDEX, article);
+            assertTrue("Expects flush by timer", executed.await(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, listener.actions.size());
+    }
+
+    @Test
+    public void testFailure() throws Exception
+    {
+        BulkIndexerSettings settings = settings(5, 0);
+        try (BulkIndexer indexer = new BulkIndexer((request, l) -> l.onFailure(new IllegalStateException("rejected")), settings, listener))
+        {
+            generator.articles(5).forEach(a -> indexer.index(INDEX, a));
+            assertEquals(0, indexer.getInFlight());
+        }
+
+        assertEquals(1, listener.failures.get());
+    }
+
+    @Test
+    public void testContentHashFilter() throws Exception
+    {
+        BulkIndexerSettings settings = settings(100, 0);
+        ContentHashFilter filter = new ContentHashFilter();
+        settings.setContentHashFilter(filter);
+
+        try (BulkIndexer indexer = new BulkIndexer((request, l) -> l.onFailure(new IllegalStateException("rejected")), settings, listener))
+        {
+            generator.articles(10).forEach(a -> indexer.index(INDEX, a));
+        }
+        assertEquals("Expects forgotten hashes of failed bulk", 0, filter.size() + filter.getPending());
+
+        settings = settings(100, 0);
+        settings.setContentHashFilter(filter);
+        try (BulkIndexer indexer = new BulkIndexer((request, l) -> l.onResponse(response(request)), settings, listener))
+        {
+            generator.articles(10).forEach(a -> indexer.index(INDEX, a));
+            generator.articles(20).forEach(a -> indexer.index(INDEX, a));
+        }
+
+        assertEquals(1, listener.actions.size());
+        assertEquals("Expects skipped unchanged articles", Integer.valueOf(20), listener.actions.get(0));
+        assertEquals(10, filter.getSkipped());
+        assertEquals("Expects acknowledged hashes of indexed articles", 20, filter.size());
+        assertEquals(0, filter.getPending());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testClosed() throws Exception
+    {
+        BulkIndexer indexer = new BulkIndexer((request, l) -> l.onResponse(response(request)), settings(10, 0), listener);
+        indexer.close();
+        indexer.index(INDEX, generator.article(1));
+    }
+
+    @Test
+    public void testClosedForgetsHash() throws Exception
+    {
+        BulkIndexerSettings settings = settings(10, 0);
+        ContentHashFilter filter = new ContentHashFilter();
+        settings.setContentHashFilter(filter);
+        BulkIndexer indexer = new BulkIndexer((request, l) -> l.onResponse(response(request)), settings, listener);
+        indexer.close();
+
+        try
+        {
+            indexer.index(INDEX, generator.article(1));
+            fail("Expects closed indexer");
+        }
+        catch (IllegalStateException e)
+        {
+            assertEquals("Expects forgotten hash of rejected article", 0, filter.getPending());
+        }
+    }
+
+    private static BulkIndexerSettings settings(int bulkActions, long flushIntervalMillis)
+    {
+        BulkIndexerSettings settings = new BulkIndexerSettings();
+        settings.setBulkActions(bulkActions);
+        settings.setFlushIntervalMillis(flushIntervalMillis);
+        settings.setConcurrentRequests(1);
+        return settings;
+    }
+
+    private static BulkResponse response(BulkRequest request)
+    {
+        BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+        for (int i = 0; i < items.length; i++)
+        {
+            DocWriteRequest<?> itemRequest = request.requests().get(i);
+            items[i] = new BulkItemResponse(i, itemRequest.opType(), new IndexResponse(new ShardId(INDEX, "_na_", 0), "_doc", itemRequest.id(), 1, 1, 1, true));
+        }
+        return new BulkResponse(items, 1L);
+    }
+
+    /**
+     * Records number of actions of executed bulk requests.
+     */
+    private static class RecordingListener implements BulkProcessor.Listener
+    {
+        private final List<Integer> actions = new CopyOnWriteArrayList<>();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        public void beforeBulk(long executionId, BulkRequest request)
+        {
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, BulkResponse response)
+        {
+            actions.add(request.numberOfActions());
+        }
+
+        @Override
+        public void afterBulk(long executionId, BulkRequest request, Throwable failure)
+        {
+            failures.incrementAndGet();
+        }
+    }
+}
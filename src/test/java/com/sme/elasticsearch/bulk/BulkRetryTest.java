@@ -0,0 +1,187 @@
+package com.sme.elasticsearch.bulk;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link BulkRetry} with fake execution of bulk requests.
+ */
+public class BulkRetryTest extends Assert
+{
+    private static final String INDEX = "articles";
+
+    private final List<Integer> bulkSizes = new CopyOnWriteArrayList<>();
+    private final List<String> deadLetters = new CopyOnWriteArrayList<>();
+    private final Set<String> rejectedOnce = ConcurrentHashMap.newKeySet();
+
+    @Test
+    public void testRetryOnlyRejectedItems() throws Exception
+    {
+        // Even ids are rejected once, id 5 conflicts
+        try (BulkRetry retry = new BulkRetry(this::executeWithFailures, (r, f) -> deadLetters.add(r.id()), 3, 1, 10))
+        {
+            BulkResponse response = execute(retry, request(10));
+
+            assertEquals(1, countFailures(response));
+            assertEquals(10, response.getItems().length);
+            for (int i = 0; i < 10; i++)
+            {
+                BulkItemResponse item = response.getItems()[i];
+                assertEquals(i, item.getItemId());
+                assertEquals(String.valueOf(i), item.getId());
+                assertEquals(i == 5, item.isFailed());
+            }
+            assertEquals(RestStatus.CONFLICT, response.getItems()[5].getFailure().getStatus());
+
+            assertEquals("Expects original bulk and bulk of rejected items", 2, bulkSizes.size());
+            assertEquals(Integer.valueOf(10), bulkSizes.get(0));
+            assertEquals(Integer.valueOf(5), bulkSizes.get(1));
+            assertEquals(5, retry.getRetriedItems());
+            assertEquals(1, retry.getDeadLetters());
+            assertEquals("5", deadLetters.get(0));
+        }
+    }
+
+    @Test
+    public void testRetriesExhausted() throws Exception
+    {
+        try (BulkRetry retry = new BulkRetry((request, listener) ->
+        {
+            bulkSizes.add(request.numberOfActions());
+            listener.onResponse(response(request, id -> RestStatus.TOO_MANY_REQUESTS));
+        }, (r, f) -> deadLetters.add(r.id()), 2, 1, 10))
+        {
+            BulkResponse response = execute(retry, request(3));
+
+            assertEquals(3, countFailures(response));
+            assertEquals(3, bulkSizes.size());
+            assertEquals(3, deadLetters.size());
+            assertEquals(6, retry.getRetriedItems());
+        }
+    }
+
+    @Test
+    public void testRetryRejectedBulk() throws Exception
+    {
+        try (BulkRetry retry = new BulkRetry((request, listener) ->
+        {
+            bulkSizes.add(request.numberOfActions());
+            if (bulkSizes.size() == 1)
+            {
+                listener.onFailure(new ElasticsearchStatusException("rejected", RestStatus.TOO_MANY_REQUESTS));
+            }
+            else
+            {
+                listener.onResponse(response(request, id -> RestStatus.OK));
+            }
+        }, (r, f) -> deadLetters.add(r.id()), 2, 1, 10))
+        {
+            BulkResponse response = execute(retry, request(4));
+
+            assertFalse(response.hasFailures());
+            assertEquals(2, bulkSizes.size());
+            assertTrue(deadLetters.isEmpty());
+        }
+    }
+
+    @Test
+    public void testRefusedBulk() throws Exception
+    {
+        try (BulkRetry retry = new BulkRetry((request, listener) ->
+        {
+            bulkSizes.add(request.numberOfActions());
+            listener.onFailure(new ElasticsearchStatusException("mapper_parsing_exception", RestStatus.BAD_REQUEST));
+        }, (r, f) -> deadLetters.add(r.id()), 2, 1, 10))
+        {
+            BulkResponse response = execute(retry, request(3));
+
+            // Refused on the first attempt, so every item is a permanent failure
+            assertEquals(3, countFailures(response));
+            assertEquals(RestStatus.BAD_REQUEST, response.getItems()[0].getFailure().getStatus());
+            assertEquals(1, bulkSizes.size());
+            assertEquals(3, deadLetters.size());
+            assertEquals(3, retry.getDeadLetters());
+        }
+    }
+
+    private void executeWithFailures(BulkRequest request, ActionListener<BulkResponse> listener)
+    {
+        bulkSizes.add(request.numberOfActions());
+        listener.onResponse(response(request, id ->
+        {
+            if ("5".equals(id))
+            {
+                return RestStatus.CONFLICT;
+            }
+            if (Integer.parseInt(id) % 2 == 0 && rejectedOnce.add(id))
+            {
+                return RestStatus.TOO_MANY_REQUESTS;
+            }
+            return RestStatus.OK;
+        }));
+    }
+
+    private static BulkResponse execute(BulkRetry retry, BulkRequest request) throws Exception
+    {
+        CompletableFuture<BulkResponse> future = new CompletableFuture<>();
+        retry.execute(request, ActionListener.wrap(future::complete, future::completeExceptionally));
+        return future.get(5, TimeUnit.SECONDS);
+    }
+
+    private static BulkRequest request(int count)
+    {
+        BulkRequest request = new BulkRequest();
+        for (int i = 0; i < count; i++)
+        {
+            request.add(new IndexRequest(INDEX).id(String.valueOf(i)).source("{}", XContentType.JSON));
+        }
+        return request;
+    }
+
+    private static BulkResponse response(BulkRequest request, Function<String, RestStatus> statuses)
+    {
+        BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+        for (int i = 0; i < items.length; i++)
+        {
+            DocWriteRequest<?> itemRequest = request.requests().get(i);
+            RestStatus status = statuses.apply(itemRequest.id());
+            items[i] = status == RestStatus.OK
+                ? new BulkItemResponse(i, itemRequest.opType(), new IndexResponse(new ShardId(INDEX, "_na_", 0), "_doc", itemRequest.id(), 1, 1, 1, true))
+                : new BulkItemResponse(i, itemRequest.opType(),
+                        new BulkItemResponse.Failure(INDEX, "_doc", itemRequest.id(), new ElasticsearchStatusException("failed", status)));
+        }
+        return new BulkResponse(items, 1L);
+    }
+
+    private static int countFailures(BulkResponse response)
+    {
+        int failures = 0;
+        for (BulkItemResponse item : response.getItems())
+        {
+            if (item.isFailed())
+            {
+                failures++;
+            }
+        }
+        return failures;
+    }
+}
@@ -0,0 +1,114 @@
+package com.sme.elasticsearch.bulk;
+
+import java.nio.file.Path;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sme.elasticsearch.model.Article;
+import com.sme.elasticsearch.td.TestDataGenerator;
+
+import util.ObjectMapperUtil;
+import util.WireFormat;
+
+/**
+ * Unit tests of {@link ContentHashFilter}.
+ */
+public class ContentHashFilterTest extends Assert
+{
+    private static final String INDEX = "articles";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final TestDataGenerator generator = new TestDataGenerator(1L, 100);
+
+    @Test
+    public void testSkipUnchanged() throws Exception
+    {
+        ContentHashFilter filter = new ContentHashFilter();
+        assertEquals(100, generator.articles(100).filter(a -> filter.isChanged(INDEX, a)).count());
+        assertEquals(0, generator.articles(100).filter(a -> filter.isChanged(INDEX, a)).count());
+
+        Article changed = generator.article(7);
+        changed.setName("Changed");
+        assertTrue(filter.isChanged(INDEX, changed));
+        assertFalse(filter.isChanged(INDEX, changed));
+
+        assertTrue("Expects separated indices", filter.isChanged("articles_v2", generator.article(1)));
+
+        assertEquals(203, filter.getChecked());
+        assertEquals(101, filter.getSkipped());
+        assertEquals(101 / 203d, filter.getSkipRatio(), 0.0001d);
+    }
+
+    @Test
+    public void testForget() throws Exception
+    {
+        ContentHashFilter filter = new ContentHashFilter();
+        Article article = generator.article(1);
+        assertTrue(filter.isChanged(INDEX, article));
+
+        filter.forget(INDEX, "1");
+        assertTrue(filter.isChanged(INDEX, article));
+
+        filter.forget(INDEX, "not-numeric");
+        filter.forget(INDEX);
+        assertEquals(0, filter.size());
+        assertTrue(filter.isChanged(INDEX, article));
+    }
+
+    @Test
+    public void testCanonicalJson() throws Exception
+    {
+        ContentHashFilter filter = new ContentHashFilter();
+        Article article = generator.article(1);
+        BytesReference json = ObjectMapperUtil.serializeToBytes(article, WireFormat.JSON);
+        assertTrue(filter.isChanged(INDEX, article.getId(), json));
+
+        assertFalse(filter.isChanged(INDEX, article));
+    }
+
+    @Test
+    public void testAcknowledge() throws Exception
+    {
+        ContentHashFilter filter = new ContentHashFilter();
+        Article article = generator.article(1);
+        assertTrue(filter.isChanged(INDEX, article));
+        assertEquals(1, filter.getPending());
+        assertEquals(0, filter.size());
+
+        // A pending hash skips the document in the current run
+        assertFalse(filter.isChanged(INDEX, article));
+
+        filter.acknowledge(INDEX, "1");
+        assertEquals(0, filter.getPending());
+        assertEquals(1, filter.size());
+        assertFalse(filter.isChanged(INDEX, article));
+
+        // A changed document is pending again
+        article.setName("Changed");
+        assertTrue(filter.isChanged(INDEX, article));
+        assertEquals(1, filter.getPending());
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception
+    {
+        ContentHashFilter filter = new ContentHashFilter();
+        generator.articles(50).forEach(a -> filter.isChanged(INDEX, a));
+        generator.articles(40).forEach(a -> filter.acknowledge(INDEX, String.valueOf(a.getId())));
+
+        Path file = folder.newFolder("hashes").toPath().resolve("articles.hashes");
+        filter.save(file);
+
+        ContentHashFilter loaded = new ContentHashFilter();
+        loaded.load(file);
+        assertEquals("Expects only acknowledged hashes", 40, loaded.size());
+        assertEquals(10, generator.articles(50).filter(a -> loaded.isChanged(INDEX, a)).count());
+        assertTrue(loaded.isChanged(INDEX, generator.article(51)));
+    }
+}
@@ -0,0 +1,105 @@
+package com.sme.elasticsearch.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sme.elasticsearch.client.BlockingCallExecutor.Mode;
+
+/**
+ * Unit tests of {@link BlockingCallExecutor}.
+ */
+public class BlockingCallExecutorTest extends Assert
+{
+    @Test
+    public void testVirtual() throws Exception
+    {
+        try (BlockingCallExecutor executor = BlockingCallExecutor.virtual())
+        {
+            boolean supported = isVirtualThreadSupported();
+            assertEquals(supported ? Mode.VIRTUAL : Mode.PLATFORM, executor.getMode());
+
+            // All blocking calls wait at the same time
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < 200; i++)
+            {
+                int value = i;
+                futures.add(executor.submit(() ->
+                {
+                    Thread.sleep(200);
+                    return value;
+                }));
+            }
+
+            for (int i = 0; i < futures.size(); i++)
+            {
+                assertEquals(Integer.valueOf(i), futures.get(i).get(10, TimeUnit.SECONDS));
+            }
+            assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) < 10);
+        }
+    }
+
+    @Test
+    public void testPlatform() throws Exception
+    {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        try (BlockingCallExecutor executor = BlockingCallExecutor.platform(2))
+        {
+            assertEquals(Mode.PLATFORM, executor.getMode());
+
+            List<CompletableFuture<Object>> futures = new ArrayList<>();
+            for (int i = 0; i < 10; i++)
+            {
+                futures.add(executor.submit(() ->
+                {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(20);
+                    running.decrementAndGet();
+                    return null;
+                }));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        }
+
+        assertEquals("Expects calls limited by the pool", 2, maxRunning.get());
+    }
+
+    @Test
+    public void testFailure() throws Exception
+    {
+        try (BlockingCallExecutor executor = BlockingCallExecutor.platform(1))
+        {
+            executor.submit(() ->
+            {
+                throw new IOException("Connection refused");
+            }).get();
+            fail("Expects failed call");
+        }
+        catch (ExecutionException e)
+        {
+            assertEquals("Connection refused", e.getCause().getMessage());
+        }
+    }
+
+    private static boolean isVirtualThreadSupported()
+    {
+        try
+        {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        }
+        catch (NoSuchMethodException e)
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.sme.elasticsearch.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.entity.NStringEntity;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unit tests of {@link GzipHttpClientConfigCallback} with a local http server, which echoes request bodies.
+ */
+public class GzipHttpClientConfigCallbackTest extends Assert
+{
+    private static final String BODY = "{\"index\":{\"_index\":\"articles\",\"_id\":\"1\"}}\n{\"id\":1,\"name\":\"computure\"}\n";
+
+    private final List<String> requestEncodings = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange ->
+        {
+            String encoding = String.valueOf(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            requestEncodings.add(encoding);
+
+            byte[] body;
+            try (InputStream in = "gzip".equals(encoding) ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody())
+            {
+                body = IOUtils.toByteArray(in);
+            }
+
+            if ("gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding")))
+            {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (GZIPOutputStream out = new GZIPOutputStream(bytes))
+                {
+                    out.write(body);
+                }
+                body = bytes.toByteArray();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            }
+
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody())
+            {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void testCompression() throws Exception
+    {
+        try (RestClient client = RestClient.builder(new HttpHost("localhost", server.getAddress().getPort(), "http"))
+                .setHttpClientConfigCallback(new GzipHttpClientConfigCallback(16))
+                .build())
+        {
+            Request request = new Request("POST", "/_bulk");
+            request.setEntity(new NStringEntity(BODY, ContentType.create("application/x-ndjson", StandardCharsets.UTF_8)));
+            Response response = client.performRequest(request);
+
+            assertEquals("gzip", requestEncodings.get(0));
+            assertNull("Expects decompressed response", response.getHeader("Content-Encoding"));
+            assertEquals(BODY, EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+
+            // Small body is not compressed
+            request.setJsonEntity("{}");
+            response = client.performRequest(request);
+            assertEquals("null", requestEncodings.get(1));
+            assertEquals("{}", EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+        }
+    }
+}
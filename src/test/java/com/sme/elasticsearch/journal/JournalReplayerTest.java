@@ -0,0 +1,148 @@
+package com.sme.elasticsearch.journal;
+
+import java.net.ConnectException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.rest.RestStatus;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sme.elasticsearch.td.TestDataGenerator;
+
+/**
+ * Unit tests of {@link JournalReplayer} with fake execution of bulk requests.
+ */
+public class JournalReplayerTest extends Assert
+{
+    private static final String INDEX = "articles";
+
+    private final TestDataGenerator generator = new TestDataGenerator(1L, 100);
+    private final List<String> indexed = new CopyOnWriteArrayList<>();
+    private final List<String> deadLetters = new CopyOnWriteArrayList<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    public void testReplayAfterOutage() throws Exception
+    {
+        try (WriteAheadJournal journal = new WriteAheadJournal(Files.createTempDirectory("journal"), 4096, false);
+                JournalReplayer replayer = new JournalReplayer(journal, this::execute, (r, f) -> deadLetters.add(r.id()), 100, 1, 10))
+        {
+            for (int i = 1; i <= 10; i++)
+            {
+                journal.index(INDEX, generator.article(i));
+            }
+
+            assertEquals(10, replayer.replayBatch());
+
+            // Two failed connections, the whole batch, rejected item "3"
+            assertEquals(4, calls.get());
+            assertEquals(journal.getWritePosition(), journal.getCheckpoint());
+            assertEquals(9, indexed.size());
+            assertEquals(1, indexed.stream().filter("3"::equals).count());
+            assertEquals(1, deadLetters.size());
+            assertEquals("4", deadLetters.get(0));
+            assertEquals(10, replayer.getReplayed());
+            assertEquals(1, replayer.getDeadLetters());
+        }
+    }
+
+    @Test
+    public void testBackgroundReplay() throws Exception
+    {
+        try (WriteAheadJournal journal = new WriteAheadJournal(Files.createTempDirectory("journal"), 4096, false);
+                JournalReplayer replayer = new JournalReplayer(journal, this::execute, (r, f) -> deadLetters.add(r.id()), 5, 1, 10))
+        {
+            calls.set(2);
+            replayer.start();
+            for (int i = 5; i <= 30; i++)
+            {
+                journal.index(INDEX, generator.article(i));
+            }
+
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+            while (replayer.getReplayed() < 26 && System.currentTimeMillis() < deadline)
+            {
+                Thread.sleep(10);
+            }
+            assertEquals(26, replayer.getReplayed());
+            assertEquals(journal.getWritePosition(), journal.getCheckpoint());
+        }
+    }
+
+    @Test
+    public void testPoisonedRecord() throws Exception
+    {
+        try (WriteAheadJournal journal = new WriteAheadJournal(Files.createTempDirectory("journal"), 4096, false);
+                JournalReplayer replayer = new JournalReplayer(journal, this::executeWithPoisonedRecord, (r, f) -> deadLetters.add(r.id()), 100, 1, 10))
+        {
+            for (int i = 1; i <= 10; i++)
+            {
+                journal.index(INDEX, generator.article(i));
+            }
+
+            assertEquals(10, replayer.replayBatch());
+
+            // Conflicted item "4" of the first half, refused record "7" of the second half
+            assertEquals(journal.getWritePosition(), journal.getCheckpoint());
+            assertEquals(8, indexed.size());
+            assertFalse(indexed.contains("7"));
+            assertEquals(Arrays.asList("4", "7"), deadLetters);
+            assertEquals(2, replayer.getDeadLetters());
+        }
+    }
+
+    // A bulk request with record "7" is refused as a whole like a request with a broken mapping
+    private void executeWithPoisonedRecord(BulkRequest request, ActionListener<BulkResponse> listener)
+    {
+        if (request.requests().stream().anyMatch(r -> "7".equals(r.id())))
+        {
+            listener.onFailure(new ElasticsearchStatusException("mapper_parsing_exception", RestStatus.BAD_REQUEST));
+            return;
+        }
+
+        // No failed connections and rejected items
+        calls.set(10);
+        execute(request, listener);
+    }
+
+    private void execute(BulkRequest request, ActionListener<BulkResponse> listener)
+    {
+        if (calls.incrementAndGet() <= 2)
+        {
+            listener.onFailure(new ConnectException("Connection refused"));
+            return;
+        }
+
+        BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+        for (int i = 0; i < items.length; i++)
+        {
+            DocWriteRequest<?> itemRequest = request.requests().get(i);
+            String id = itemRequest.id();
+            RestStatus status = "4".equals(id) ? RestStatus.CONFLICT : "3".equals(id) && calls.get() == 3 ? RestStatus.TOO_MANY_REQUESTS : RestStatus.OK;
+            if (status == RestStatus.OK)
+            {
+                indexed.add(id);
+                items[i] = new BulkItemResponse(i, itemRequest.opType(), new IndexResponse(new ShardId(INDEX, "_na_", 0), "_doc", id, 1, 1, 1, true));
+            }
+            else
+            {
+                items[i] = new BulkItemResponse(i, itemRequest.opType(),
+                        new BulkItemResponse.Failure(INDEX, "_doc", id, new ElasticsearchStatusException("failed", status)));
+            }
+        }
+        listener.onResponse(new BulkResponse(items, 1L));
+    }
+}
@@ -0,0 +1,214 @@
+package com.sme.elasticsearch.journal;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.VersionType;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sme.elasticsearch.model.Article;
+import com.sme.elasticsearch.td.TestDataGenerator;
+
+import util.ObjectMapperUtil;
+import util.WireFormat;
+
+/**
+ * Unit tests of {@link WriteAheadJournal}.
+ */
+public class WriteAheadJournalTest extends Assert
+{
+    private static final String INDEX = "articles";
+    private static final int SEGMENT_SIZE = 4096;
+
+    private final TestDataGenerator generator = new TestDataGenerator(1L, 100);
+    private Path directory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        directory = Files.createTempDirectory("journal");
+    }
+
+    @Test
+    public void testAppendAndRead() throws Exception
+    {
+        try (WriteAheadJournal journal = new WriteAheadJournal(directory, SEGMENT_SIZE, false))
+        {
+            Article article = generator.article(1);
+            journal.index(INDEX, article);
+            journal.append(new UpdateRequest(INDEX, "1").doc("{\"active\":false}", XContentType.JSON));
+            journal.append(new DeleteRequest(INDEX, "2"));
+
+            WriteAheadJournal.Batch batch = journal.read(journal.getCheckpoint(), 10);
+            List<DocWriteRequest<?>> requests = batch.getRequests();
+            assertEquals(3, requests.size());
+            assertEquals(journal.getWritePosition(), batch.getEnd());
+
+            IndexRequest indexRequest = (IndexRequest) requests.get(0);
+            assertEquals("1", indexRequest.id());
+            assertEquals(article, ObjectMapperUtil.readerFor(Article.class, WireFormat.getDefault()).readValue(BytesReference.toBytes(indexRequest.source())));
+
+            UpdateRequest updateRequest = (UpdateRequest) requests.get(1);
+            assertEquals("{\"active\":false}", updateRequest.doc().source().utf8ToString());
+
+            assertEquals(DocWriteRequest.OpType.DELETE, requests.get(2).opType());
+            assertEquals("2", requests.get(2).id());
+        }
+    }
+
+    @Test
+    public void testRequestOptions() throws Exception
+    {
+        try (WriteAheadJournal journal = new WriteAheadJournal(directory, SEGMENT_SIZE, false))
+        {
+            journal.append(new IndexRequest(INDEX).id("1").source("{}", XContentType.JSON).create(true).routing("r1").setPipeline("p1"));
+            journal.append(new IndexRequest(INDEX).id("2").source("{}", XContentType.JSON).setIfSeqNo(5).setIfPrimaryTerm(2));
+            journal.append(new DeleteRequest(INDEX, "3").version(7).versionType(VersionType.EXTERNAL));
+            journal.append(new UpdateRequest(INDEX, "4").doc("{\"active\":false}", XContentType.JSON).docAsUpsert(true).retryOnConflict(3));
+            journal.append(new UpdateRequest(INDEX, "5").doc("{\"active\":false}", XContentType.JSON).upsert("{\"active\":true}", XContentType.JSON));
+
+            List<DocWriteRequest<?>> requests = journal.read(journal.getCheckpoint(), 10).getRequests();
+
+            IndexRequest create = (IndexRequest) requests.get(0);
+            assertEquals(DocWriteRequest.OpType.CREATE, create.opType());
+            assertEquals("r1", create.routing());
+            assertEquals("p1", create.getPipeline());
+
+            IndexRequest conditional = (IndexRequest) requests.get(1);
+            assertEquals(DocWriteRequest.OpType.INDEX, conditional.opType());
+            assertEquals(5, conditional.ifSeqNo());
+            assertEquals(2, conditional.ifPrimaryTerm());
+            assertNull(conditional.routing());
+
+            assertEquals(7, requests.get(2).version());
+            assertEquals(VersionType.EXTERNAL, requests.get(2).versionType());
+
+            UpdateRequest upsert = (UpdateRequest) requests.get(3);
+            assertTrue(upsert.docAsUpsert());
+            assertEquals(3, upsert.retryOnConflict());
+            assertNull(upsert.upsertRequest());
+
+            assertEquals("{\"active\":true}", ((UpdateRequest) requests.get(4)).upsertRequest().source().utf8ToString());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequestWithoutId() throws Exception
+    {
+        try (WriteAheadJournal journal = new WriteAheadJournal(directory, SEGMENT_SIZE, false))
+        {
+            journal.append(new IndexRequest(INDEX).source("{}", XContentType.JSON));
+        }
+    }
+
+    @Test
+    public void testSegmentsAndCommit() throws Exception
+    {
+        try (WriteAheadJournal journal = new WriteAheadJournal(directory, SEGMENT_SIZE, false))
+        {
+            for (Article article : generator.articles(100).collect(Collectors.toList()))
+            {
+                journal.index(INDEX, article);
+            }
+            assertTrue("Expects several segments", journal.getSegmentCount() > 2);
+
+            WriteAheadJournal.Batch batch = journal.read(journal.getCheckpoint(), 60);
+            assertEquals(60, batch.getRequests().size());
+            assertEquals("1", batch.getRequests().get(0).id());
+            assertEquals("60", batch.getRequests().get(59).id());
+
+            int segments = journal.getSegmentCount();
+            journal.commit(batch.getEnd());
+            assertTrue("Expects deleted segments", journal.getSegmentCount() < segments);
+
+            batch = journal.read(journal.getCheckpoint(), 100);
+            assertEquals(40, batch.getRequests().size());
+            assertEquals("61", batch.getRequests().get(0).id());
+        }
+    }
+
+    @Test
+    public void testReopen() throws Exception
+    {
+        try (WriteAheadJournal journal = new WriteAheadJournal(directory, SEGMENT_SIZE, true))
+        {
+            generator.articles(20).forEach(a -> append(journal, a));
+            journal.commit(journal.read(journal.getCheckpoint(), 5).getEnd());
+        }
+
+        try (WriteAheadJournal journal = new WriteAheadJournal(directory, SEGMENT_SIZE, false))
+        {
+            journal.index(INDEX, generator.article(21));
+
+            List<DocWriteRequest<?>> requests = journal.read(journal.getCheckpoint(), 100).getRequests();
+            assertEquals(16, requests.size());
+            assertEquals("6", requests.get(0).id());
+            assertEquals("21", requests.get(15).id());
+        }
+    }
+
+    @Test
+    public void testTornRecord() throws Exception
+    {
+        JournalPosition end;
+        try (WriteAheadJournal journal = new WriteAheadJournal(directory, SEGMENT_SIZE, true))
+        {
+            journal.index(INDEX, generator.article(1));
+            end = journal.index(INDEX, generator.article(2));
+        }
+
+        // Damage the last record like a crash in the middle of write
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve(String.format("%019d.wal", end.getSegment())).toFile(), "rw"))
+        {
+            file.seek(end.getOffset() - 1);
+            file.write(0xFF);
+        }
+
+        try (WriteAheadJournal journal = new WriteAheadJournal(directory, SEGMENT_SIZE, false))
+        {
+            assertTrue(journal.getWritePosition().compareTo(end) < 0);
+            journal.index(INDEX, generator.article(3));
+
+            List<DocWriteRequest<?>> requests = journal.read(journal.getCheckpoint(), 100).getRequests();
+            assertEquals(2, requests.size());
+            assertEquals("1", requests.get(0).id());
+            assertEquals("3", requests.get(1).id());
+        }
+    }
+
+    @Test
+    public void testAwaitAppend() throws Exception
+    {
+        try (WriteAheadJournal journal = new WriteAheadJournal(directory, SEGMENT_SIZE, false))
+        {
+            assertFalse(journal.awaitAppend(journal.getCheckpoint(), 10, TimeUnit.MILLISECONDS));
+
+            new Thread(() -> append(journal, generator.article(1))).start();
+            assertTrue(journal.awaitAppend(journal.getCheckpoint(), 5, TimeUnit.SECONDS));
+        }
+    }
+
+    private static void append(WriteAheadJournal journal, Article article)
+    {
+        try
+        {
+            journal.index(INDEX, article);
+        }
+        catch (Exception e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.sme.elasticsearch.model;
+
+import java.math.BigDecimal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sme.elasticsearch.td.ArticleTD;
+import com.sme.elasticsearch.td.OrderTD;
+
+import util.ObjectMapperUtil;
+
+/**
+ * Unit tests of {@link Money} amounts in model.
+ */
+public class MoneyTest extends Assert
+{
+    @Test
+    public void testConversion() throws Exception
+    {
+        assertEquals(101L, Money.toMinor(BigDecimal.valueOf(1.01d)));
+        assertEquals(1001L, Money.toMinor(new BigDecimal(10.01d)));
+        assertEquals(new BigDecimal("1.01"), Money.toDecimal(101L));
+    }
+
+    @Test
+    public void testSerialization() throws Exception
+    {
+        String json = ObjectMapperUtil.serialize(ArticleTD.ARTICLE1);
+        assertTrue("Expects decimal price", json.contains("\"price\":1.01"));
+        assertEquals(ArticleTD.ARTICLE1, ObjectMapperUtil.deserialize(Article.class, json));
+
+        // Float noise of documents indexed before scaled_float mapping
+        Article article = ObjectMapperUtil.deserialize(Article.class, json.replace("1.01", "1.0099999904632568"));
+        assertEquals(101L, article.getPriceMinor());
+    }
+
+    @Test
+    public void testTotalAmount() throws Exception
+    {
+        // 1.01 + 2.02
+        assertEquals(303L, OrderTD.ORDER1.getTotalAmountMinor());
+        // 5 * 1.01
+        assertEquals(new BigDecimal("5.05"), OrderTD.ORDER3.getTotalAmount());
+    }
+}
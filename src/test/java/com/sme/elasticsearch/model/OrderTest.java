@@ -0,0 +1,77 @@
+package com.sme.elasticsearch.model;
+
+import java.math.BigDecimal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sme.elasticsearch.td.ArticleTD;
+import com.sme.elasticsearch.td.OrderTD;
+
+import util.ObjectMapperUtil;
+import util.PojoGenericBuilder;
+
+/**
+ * Unit tests of total amount of {@link Order}.
+ */
+public class OrderTest extends Assert
+{
+    @Test
+    public void testChangeItems() throws Exception
+    {
+        Order order = ObjectMapperUtil.deserialize(Order.class, ObjectMapperUtil.serialize(OrderTD.ORDER1));
+        assertEquals(303L, order.getTotalAmountMinor());
+
+        OrderItem item = new PojoGenericBuilder<>(OrderItem::new)
+                .with(OrderItem::setQuantity, 2)
+                .with(OrderItem::setArticle, ArticleTD.ARTICLE3)
+                .build();
+        order.addOrderItem(item);
+        assertEquals(909L, order.getTotalAmountMinor());
+
+        item.setQuantity(1);
+        assertEquals(606L, order.getTotalAmountMinor());
+
+        item.setArticle(ArticleTD.ARTICLE1);
+        assertEquals(404L, order.getTotalAmountMinor());
+
+        assertTrue("Expects removed item", order.removeOrderItem(item));
+        assertEquals(303L, order.getTotalAmountMinor());
+
+        // Removed item does not change the order
+        item.setQuantity(10);
+        assertEquals(303L, order.getTotalAmountMinor());
+    }
+
+    @Test
+    public void testRepriceArticle() throws Exception
+    {
+        Order order = ObjectMapperUtil.deserialize(Order.class, ObjectMapperUtil.serialize(OrderTD.ORDER3));
+
+        order.getOrderItems().get(0).getArticle().setPrice(BigDecimal.valueOf(2.00d));
+        assertEquals(505L, order.getTotalAmountMinor());
+        assertTrue("Expects recalculated total of a serialized order", ObjectMapperUtil.serialize(order).contains("\"totalAmount\":10.00"));
+        assertEquals(1000L, order.getTotalAmountMinor());
+        assertEquals(1000L, order.recalculateTotalAmount());
+    }
+
+    @Test
+    public void testNullOrderItems() throws Exception
+    {
+        Order order = new Order();
+        order.setOrderItems(null);
+        assertTrue(order.getOrderItems().isEmpty());
+        assertEquals(0L, order.getTotalAmountMinor());
+    }
+
+    @Test
+    public void testSerializedTotalAmount() throws Exception
+    {
+        String json = ObjectMapperUtil.serialize(OrderTD.ORDER2);
+        assertTrue("Expects stored total amount", json.contains("\"totalAmount\":6.06"));
+
+        // The stored value is never read
+        Order order = ObjectMapperUtil.deserialize(Order.class, json.replace("\"totalAmount\":6.06", "\"totalAmount\":1.00"));
+        assertEquals(606L, order.getTotalAmountMinor());
+    }
+}
@@ -4,7 +4,7 @@ import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
-import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.rest.RestStatus;
 import org.junit.Before;
 
@@ -12,6 +12,7 @@ import com.sme.elasticsearch.model.Article;
 import com.sme.elasticsearch.td.ArticleTD;
 
 import util.ObjectMapperUtil;
+import util.WireFormat;
 
 /**
  * Abstraction to work with {@link Article} bean based on Node implementation in ElasticSearch.
@@ -26,15 +27,17 @@ public abstract class ANodeArticleTest extends AElasticSearchBaseTest
     {
         super.setUp();
 
-        String article1 = ObjectMapperUtil.serialize(ArticleTD.ARTICLE1);
-        String article2 = ObjectMapperUtil.serialize(ArticleTD.ARTICLE2);
-        String article3 = ObjectMapperUtil.serialize(ArticleTD.ARTICLE3);
+        WireFormat format = WireFormat.getDefault();
+
+        BytesReference article1 = ObjectMapperUtil.serializeToBytes(ArticleTD.ARTICLE1, format);
+        BytesReference article2 = ObjectMapperUtil.serializeToBytes(ArticleTD.ARTICLE2, format);
+        BytesReference article3 = ObjectMapperUtil.serializeToBytes(ArticleTD.ARTICLE3, format);
 
         BulkResponse response = client()
                 .prepareBulk()
-                .add(new IndexRequest().index(ARTICLE_INDEX).id("article1").source(article1, XContentType.JSON))
-                .add(new IndexRequest().index(ARTICLE_INDEX).id("article2").source(article2, XContentType.JSON))
-                .add(new IndexRequest().index(ARTICLE_INDEX).id("article3").source(article3, XContentType.JSON))
+                .add(new IndexRequest().index(ARTICLE_INDEX).id("article1").source(article1, format.xContentType()))
+                .add(new IndexRequest().index(ARTICLE_INDEX).id("article2").source(article2, format.xContentType()))
+                .add(new IndexRequest().index(ARTICLE_INDEX).id("article3").source(article3, format.xContentType()))
                 .setRefreshPolicy(RefreshPolicy.IMMEDIATE)
                 .execute()
                 .actionGet();
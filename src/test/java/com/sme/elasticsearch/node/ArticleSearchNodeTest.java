@@ -1,8 +1,6 @@
 package com.sme.elasticsearch.node;
 
-import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.index.query.QueryBuilder;
@@ -15,7 +13,7 @@ import org.junit.Test;
 import com.sme.elasticsearch.model.Article;
 import com.sme.elasticsearch.td.ArticleTD;
 
-import util.ObjectMapperUtil;
+import util.SearchHitDecoder;
 
 /**
  *
@@ -36,9 +34,7 @@ public class ArticleSearchNodeTest extends ANodeArticleTest
         assertEquals(RestStatus.OK, response.status());
         assertEquals(3L, response.getHits().getTotalHits().value);
 
-        List<Article> articles = Arrays.stream(response.getHits().getHits())
-                .map(searchHit -> ObjectMapperUtil.deserialize(Article.class, searchHit.getSourceAsString()))
-                .collect(Collectors.toList());
+        List<Article> articles = SearchHitDecoder.of(Article.class).decode(response);
 
         assertEquals(ArticleTD.ALL_ORDERED, articles);
 
@@ -56,7 +52,7 @@ public class ArticleSearchNodeTest extends ANodeArticleTest
         assertEquals(RestStatus.OK, response.status());
         assertEquals(1L, response.getHits().getTotalHits().value);
 
-        assertEquals(ArticleTD.ARTICLE1, ObjectMapperUtil.deserialize(Article.class, response.getHits().getAt(0).getSourceAsString()));
+        assertEquals(ArticleTD.ARTICLE1, SearchHitDecoder.of(Article.class).decode(response.getHits().getAt(0)));
     }
 
     @Test
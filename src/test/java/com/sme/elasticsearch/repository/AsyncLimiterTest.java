@@ -0,0 +1,91 @@
+package com.sme.elasticsearch.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link AsyncLimiter}.
+ */
+public class AsyncLimiterTest extends Assert
+{
+    @Test
+    public void testLimit() throws Exception
+    {
+        AsyncLimiter limiter = new AsyncLimiter(2);
+        List<CompletableFuture<Integer>> calls = new ArrayList<>();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            results.add(limiter.submit(() ->
+            {
+                CompletableFuture<Integer> call = new CompletableFuture<>();
+                calls.add(call);
+                return call;
+            }));
+        }
+
+        assertEquals(2, calls.size());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(3, limiter.getQueued());
+
+        // A completed call starts the next queued call
+        calls.get(0).complete(0);
+        assertEquals(Integer.valueOf(0), results.get(0).get());
+        assertEquals(3, calls.size());
+        assertEquals(2, limiter.getInFlight());
+
+        calls.get(1).completeExceptionally(new IllegalStateException("failed"));
+        assertTrue(results.get(1).isCompletedExceptionally());
+        assertEquals(4, calls.size());
+
+        for (int i = 2; i < 5; i++)
+        {
+            calls.get(i).complete(i);
+        }
+        for (int i = 2; i < 5; i++)
+        {
+            assertEquals(Integer.valueOf(i), results.get(i).get());
+        }
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    public void testSynchronousCalls() throws Exception
+    {
+        AsyncLimiter limiter = new AsyncLimiter(1);
+        CompletableFuture<Integer> first = new CompletableFuture<>();
+        limiter.submit(() -> first);
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++)
+        {
+            int value = i;
+            results.add(limiter.submit(() -> CompletableFuture.completedFuture(value)));
+        }
+        assertEquals(100_000, limiter.getQueued());
+
+        // Queued calls completed by the starting thread do not recurse
+        first.complete(-1);
+        assertEquals(Integer.valueOf(99_999), results.get(99_999).get());
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    public void testFailedStart() throws Exception
+    {
+        AsyncLimiter limiter = new AsyncLimiter(1);
+        CompletableFuture<Object> result = limiter.submit(() ->
+        {
+            throw new IllegalArgumentException("wrong request");
+        });
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(0, limiter.getInFlight());
+    }
+}
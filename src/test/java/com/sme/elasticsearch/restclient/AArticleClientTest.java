@@ -1,7 +1,9 @@
 package com.sme.elasticsearch.restclient;
 
+import java.io.File;
 import java.util.function.Supplier;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.http.HttpHost;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -16,7 +18,10 @@ import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.CreateIndexResponse;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.rest.RestStatus;
 import org.junit.After;
@@ -27,6 +32,7 @@ import org.junit.Before;
 import com.sme.elasticsearch.td.ArticleTD;
 
 import util.ObjectMapperUtil;
+import util.WireFormat;
 
 /**
  * Abstraction to work with "articles" index by high level rest client.
@@ -42,14 +48,23 @@ public abstract class AArticleClientTest extends Assert
     {
         // http://localhost:9200/_mapping should be empty
 
-        String article1 = ObjectMapperUtil.serialize(ArticleTD.ARTICLE1);
-        String article2 = ObjectMapperUtil.serialize(ArticleTD.ARTICLE2);
-        String article3 = ObjectMapperUtil.serialize(ArticleTD.ARTICLE3);
+        // https://www.elastic.co/guide/en/elasticsearch/reference/current/number.html#scaled-float-params
+        String fileName = AArticleClientTest.class.getClassLoader().getResource("mappings/Article.json").getFile();
+        String mapping = FileUtils.readFileToString(new File(fileName), "UTF-8");
+
+        CreateIndexResponse createIndexResponse = CLIENT.indices().create(new CreateIndexRequest(ARTICLE_INDEX).mapping(mapping, XContentType.JSON), RequestOptions.DEFAULT);
+        assertTrue("Expects Acknowledged status", createIndexResponse.isAcknowledged());
+
+        WireFormat format = WireFormat.getDefault();
+
+        BytesReference article1 = ObjectMapperUtil.serializeToBytes(ArticleTD.ARTICLE1, format);
+        BytesReference article2 = ObjectMapperUtil.serializeToBytes(ArticleTD.ARTICLE2, format);
+        BytesReference article3 = ObjectMapperUtil.serializeToBytes(ArticleTD.ARTICLE3, format);
 
         final BulkRequest bulkRequest = new BulkRequest()
-                .add(new IndexRequest().index(ARTICLE_INDEX).id("article1").source(article1, XContentType.JSON))
-                .add(new IndexRequest().index(ARTICLE_INDEX).id("article2").source(article2, XContentType.JSON))
-                .add(new IndexRequest().index(ARTICLE_INDEX).id("article3").source(article3, XContentType.JSON))
+                .add(new IndexRequest().index(ARTICLE_INDEX).id("article1").source(article1, format.xContentType()))
+                .add(new IndexRequest().index(ARTICLE_INDEX).id("article2").source(article2, format.xContentType()))
+                .add(new IndexRequest().index(ARTICLE_INDEX).id("article3").source(article3, format.xContentType()))
                 .setRefreshPolicy(RefreshPolicy.IMMEDIATE);
 
         logAction("bulkRequest", () -> bulkRequest.requests().toString());
@@ -0,0 +1,80 @@
+package com.sme.elasticsearch.restclient;
+
+import java.util.stream.Stream;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+
+import com.sme.elasticsearch.model.BaseEntity;
+import com.sme.elasticsearch.td.TestDataGenerator;
+
+import util.ObjectMapperUtil;
+import util.WireFormat;
+
+/**
+ * Abstraction to work with indices of generated entities by high level rest client.
+ * <p>
+ * The client is opened and closed per test class, so subclasses do not share a closed client.
+ * </p>
+ */
+public abstract class AGeneratedIndexTest extends Assert
+{
+    protected static final TestDataGenerator GENERATOR = new TestDataGenerator(1L, 100);
+
+    protected static RestHighLevelClient client;
+
+    @BeforeClass
+    public static void openClient() throws Exception
+    {
+        client = new RestHighLevelClient(RestClient.builder(new HttpHost("localhost", 9200, "http")));
+    }
+
+    @AfterClass
+    public static void closeClient() throws Exception
+    {
+        client.close();
+    }
+
+    /**
+     * Delete the given index if it exists.
+     *
+     * @param index The index name.
+     */
+    protected static void deleteIndex(String index) throws Exception
+    {
+        if (client.indices().exists(new GetIndexRequest(index), RequestOptions.DEFAULT))
+        {
+            client.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+        }
+    }
+
+    /**
+     * Delete the given index and index the given entities by their ids in {@link WireFormat#getDefault()} format.
+     *
+     * @param index The index name;
+     * @param entities The entities to index.
+     */
+    protected static void recreateIndex(String index, Stream<? extends BaseEntity> entities) throws Exception
+    {
+        deleteIndex(index);
+
+        WireFormat format = WireFormat.getDefault();
+        BulkRequest bulkRequest = new BulkRequest().setRefreshPolicy(RefreshPolicy.IMMEDIATE);
+        entities.forEach(e -> bulkRequest.add(new IndexRequest(index)
+                .id(String.valueOf(e.getId()))
+                .source(ObjectMapperUtil.serializeToBytes(e, format), format.xContentType())));
+        BulkResponse response = client.bulk(bulkRequest, RequestOptions.DEFAULT);
+        assertFalse(response.buildFailureMessage(), response.hasFailures());
+    }
+}
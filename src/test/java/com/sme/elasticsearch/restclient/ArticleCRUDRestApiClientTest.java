@@ -19,6 +19,7 @@ import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.index.query.TermQueryBuilder;
@@ -36,6 +37,7 @@ import com.sme.elasticsearch.td.ArticleTD;
 
 import util.ObjectMapperUtil;
 import util.PojoGenericBuilder;
+import util.SearchHitDecoder;
 
 /**
  * Unit tests to work with "articles" index by rest api client.
@@ -45,7 +47,7 @@ public class ArticleCRUDRestApiClientTest extends AArticleClientTest
     @Test
     public void testIndex() throws Exception
     {
-        String article100 = ObjectMapperUtil.serialize(ArticleTD.ARTICLE100);
+        BytesReference article100 = ObjectMapperUtil.serializeToBytes(ArticleTD.ARTICLE100);
 
         final IndexRequest indexRequest = new IndexRequest(ARTICLE_INDEX).index("article100").source(article100, XContentType.JSON);
         logAction("indexRequest", () -> indexRequest.source().utf8ToString());
@@ -158,8 +160,6 @@ public class ArticleCRUDRestApiClientTest extends AArticleClientTest
 
         assertEquals(RestStatus.OK, searchResponse.status());
 
-        return Arrays.stream(searchResponse.getHits().getHits())
-                .map(searchHit -> ObjectMapperUtil.deserialize(Article.class, searchHit.getSourceAsString()))
-                .collect(Collectors.toList());
+        return SearchHitDecoder.of(Article.class).decode(searchResponse);
     }
 }
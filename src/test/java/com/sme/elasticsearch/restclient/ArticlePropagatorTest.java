@@ -0,0 +1,155 @@
+package com.sme.elasticsearch.restclient;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpHost;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sme.elasticsearch.model.Article;
+import com.sme.elasticsearch.model.Order;
+import com.sme.elasticsearch.td.ArticleTD;
+import com.sme.elasticsearch.td.OrderTD;
+import com.sme.elasticsearch.update.ArticlePropagator;
+import com.sme.elasticsearch.update.ArticlePropagator.Progress;
+import com.sme.elasticsearch.update.ArticlePropagator.Propagation;
+
+import util.ObjectMapperUtil;
+
+/**
+ * Unit tests of {@link ArticlePropagator} with orders specified in /mappings/Order.json.
+ */
+public class ArticlePropagatorTest extends Assert
+{
+    private static final String ORDER_INDEX = "propagated_orders";
+    private static final RestHighLevelClient CLIENT = new RestHighLevelClient(RestClient.builder(new HttpHost("localhost", 9200, "http")));
+
+    private ArticlePropagator propagator;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        if (CLIENT.indices().exists(new GetIndexRequest(ORDER_INDEX), RequestOptions.DEFAULT))
+        {
+            CLIENT.indices().delete(new DeleteIndexRequest(ORDER_INDEX), RequestOptions.DEFAULT);
+        }
+
+        String fileName = ArticlePropagatorTest.class.getClassLoader().getResource("mappings/Order.json").getFile();
+        String mapping = FileUtils.readFileToString(new File(fileName), "UTF-8");
+        CLIENT.indices().create(new CreateIndexRequest(ORDER_INDEX).mapping(mapping, XContentType.JSON), RequestOptions.DEFAULT);
+
+        BulkRequest bulkRequest = new BulkRequest().setRefreshPolicy(RefreshPolicy.IMMEDIATE);
+        for (Order order : OrderTD.ALL_ORDERED)
+        {
+            bulkRequest.add(new IndexRequest(ORDER_INDEX).id("order_" + order.getId()).source(ObjectMapperUtil.serializeToBytes(order), XContentType.JSON));
+        }
+        BulkResponse response = CLIENT.bulk(bulkRequest, RequestOptions.DEFAULT);
+        assertFalse(response.buildFailureMessage(), response.hasFailures());
+
+        propagator = new ArticlePropagator(CLIENT, ORDER_INDEX)
+                .setSlices(2)
+                .setRequestsPerSecond(100)
+                .setPollIntervalMillis(100);
+        propagator.installScript();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        propagator.close();
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception
+    {
+        CLIENT.close();
+    }
+
+    @Test
+    public void testPropagate() throws Exception
+    {
+        Article article1 = ObjectMapperUtil.convert(ArticleTD.ARTICLE1, Article.class);
+        article1.setPrice(new BigDecimal("1.50"));
+        propagator.changed(article1);
+
+        // The latest change of the same article wins
+        article1 = ObjectMapperUtil.convert(ArticleTD.ARTICLE1, Article.class);
+        article1.setName("renamed");
+        article1.setPrice(new BigDecimal("2.00"));
+        propagator.changed(article1);
+        assertEquals(1, propagator.getPending());
+
+        List<Progress> progresses = new CopyOnWriteArrayList<>();
+        Propagation propagation = propagator.propagate(progresses::add);
+        assertEquals(0, propagator.getPending());
+        assertEquals(1, propagation.getArticles());
+
+        Progress progress = propagation.getFuture().get(30, TimeUnit.SECONDS);
+        assertTrue(progress.isCompleted());
+        assertEquals(2, progress.getTotal());
+        assertEquals(2, progress.getUpdated());
+        assertEquals(0, progress.getFailures());
+        assertFalse(progresses.isEmpty());
+        // Articles of a clean pass are not registered again
+        assertEquals(0, propagator.getPending());
+
+        CLIENT.indices().refresh(new RefreshRequest(ORDER_INDEX), RequestOptions.DEFAULT);
+
+        // 2.00 + 2.02
+        Map<String, Object> order1 = getOrder("order_1");
+        assertEquals(4.02d, ((Number) order1.get("totalAmount")).doubleValue(), 0d);
+        assertEquals("renamed", getArticle(order1, 0).get("name"));
+        assertEquals(2.0d, ((Number) getArticle(order1, 0).get("price")).doubleValue(), 0d);
+        assertEquals(ArticleTD.ARTICLE2.getName(), getArticle(order1, 1).get("name"));
+
+        // 5 * 2.00
+        assertEquals(10.0d, ((Number) getOrder("order_3").get("totalAmount")).doubleValue(), 0d);
+        assertEquals(ArticleTD.ARTICLE3.getName(), getArticle(getOrder("order_2"), 0).get("name"));
+
+        // The same change again is a noop
+        propagator.changed(article1);
+        progress = propagator.propagate(null).getFuture().get(30, TimeUnit.SECONDS);
+        assertEquals(0, progress.getUpdated());
+        assertEquals(2, progress.getNoops());
+    }
+
+    @Test
+    public void testNoChanges() throws Exception
+    {
+        assertNull(propagator.propagate(null));
+    }
+
+    private static Map<String, Object> getOrder(String id) throws Exception
+    {
+        return CLIENT.get(new GetRequest(ORDER_INDEX, id), RequestOptions.DEFAULT).getSourceAsMap();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getArticle(Map<String, Object> order, int item)
+    {
+        List<Map<String, Object>> items = (List<Map<String, Object>>) order.get("orderItems");
+        return (Map<String, Object>) items.get(item).get("article");
+    }
+}
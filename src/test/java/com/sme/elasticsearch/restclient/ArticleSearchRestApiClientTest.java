@@ -3,7 +3,6 @@ package com.sme.elasticsearch.restclient;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
@@ -19,7 +18,7 @@ import org.junit.Test;
 import com.sme.elasticsearch.model.Article;
 import com.sme.elasticsearch.td.ArticleTD;
 
-import util.ObjectMapperUtil;
+import util.SearchHitDecoder;
 
 /**
  * Unit tests to search "articles" index by rest api client.
@@ -48,9 +47,7 @@ public class ArticleSearchRestApiClientTest extends AArticleClientTest
                 .indices(ARTICLE_INDEX)
                 .source(sourceBuilder), RequestOptions.DEFAULT);
 
-        List<Article> articles = Arrays.stream(searchResponse.getHits().getHits())
-                .map(searchHit -> ObjectMapperUtil.deserialize(Article.class, searchHit.getSourceAsString()))
-                .collect(Collectors.toList());
+        List<Article> articles = SearchHitDecoder.of(Article.class).decode(searchResponse);
         assertEquals(Arrays.asList(ArticleTD.ARTICLE3), articles);
     }
 
@@ -72,9 +69,7 @@ public class ArticleSearchRestApiClientTest extends AArticleClientTest
                 .indices(ARTICLE_INDEX)
                 .source(sourceBuilder), RequestOptions.DEFAULT);
 
-        List<Article> articles = Arrays.stream(searchResponse.getHits().getHits())
-                .map(searchHit -> ObjectMapperUtil.deserialize(Article.class, searchHit.getSourceAsString()))
-                .collect(Collectors.toList());
+        List<Article> articles = SearchHitDecoder.of(Article.class).decode(searchResponse);
         assertEquals(Arrays.asList(ArticleTD.ARTICLE2, ArticleTD.ARTICLE3), articles);
     }
 
@@ -95,8 +90,6 @@ public class ArticleSearchRestApiClientTest extends AArticleClientTest
 
         assertEquals(RestStatus.OK, searchResponse.status());
 
-        return Arrays.stream(searchResponse.getHits().getHits())
-                .map(searchHit -> ObjectMapperUtil.deserialize(Article.class, searchHit.getSourceAsString()))
-                .collect(Collectors.toList());
+        return SearchHitDecoder.of(Article.class).decode(searchResponse);
     }
 }
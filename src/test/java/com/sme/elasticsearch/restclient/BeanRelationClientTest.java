@@ -3,7 +3,6 @@ package com.sme.elasticsearch.restclient;
 import java.io.File;
 import java.util.Arrays;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.http.HttpHost;
@@ -27,6 +26,7 @@ import org.elasticsearch.client.indices.GetIndexRequest;
 import org.elasticsearch.client.indices.GetMappingsRequest;
 import org.elasticsearch.client.indices.GetMappingsResponse;
 import org.elasticsearch.client.indices.PutMappingRequest;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.rest.RestStatus;
@@ -43,6 +43,8 @@ import com.sme.elasticsearch.model.Order;
 import com.sme.elasticsearch.td.OrderTD;
 
 import util.ObjectMapperUtil;
+import util.SearchHitDecoder;
+import util.WireFormat;
 
 /**
  * Unit tests to work with relation of beans.
@@ -80,14 +82,15 @@ public class BeanRelationClientTest extends Assert
         assertTrue("Expects creeated mapping", getMappingsResponse.mappings().size() >= 1);
 
         // Create data
-        String order1 = ObjectMapperUtil.serialize(OrderTD.ORDER1);
-        String order2 = ObjectMapperUtil.serialize(OrderTD.ORDER2);
-        String order3 = ObjectMapperUtil.serialize(OrderTD.ORDER3);
+        WireFormat format = WireFormat.getDefault();
+        BytesReference order1 = ObjectMapperUtil.serializeToBytes(OrderTD.ORDER1, format);
+        BytesReference order2 = ObjectMapperUtil.serializeToBytes(OrderTD.ORDER2, format);
+        BytesReference order3 = ObjectMapperUtil.serializeToBytes(OrderTD.ORDER3, format);
 
         final BulkRequest bulkRequest = new BulkRequest()
-                .add(new IndexRequest().index(ORDER_INDEX).id("order_1").source(order1, XContentType.JSON))
-                .add(new IndexRequest().index(ORDER_INDEX).id("order_2").source(order2, XContentType.JSON))
-                .add(new IndexRequest().index(ORDER_INDEX).id("order_3").source(order3, XContentType.JSON))
+                .add(new IndexRequest().index(ORDER_INDEX).id("order_1").source(order1, format.xContentType()))
+                .add(new IndexRequest().index(ORDER_INDEX).id("order_2").source(order2, format.xContentType()))
+                .add(new IndexRequest().index(ORDER_INDEX).id("order_3").source(order3, format.xContentType()))
                 .setRefreshPolicy(RefreshPolicy.IMMEDIATE);
 
         BulkResponse response = CLIENT.bulk(bulkRequest, RequestOptions.DEFAULT);
@@ -124,13 +127,11 @@ public class BeanRelationClientTest extends Assert
 
         // http://localhost:9200/orders/_search?pre_filter_shard_size=128&typed_keys=true&max_concurrent_shard_requests=5&ignore_unavailable=false&expand_wildcards=open&allow_no_indices=true&ignore_throttled=true&request_cache=false&search_type=query_then_fetch&batched_reduce_size=512&ccs_minimize_roundtrips=true
         // POST: {"query":{"match_all":{"boost":1.0}},"sort":[{"id":{"order":"asc"}}]}
-        SearchResponse searchResponse = CLIENT.search(searchRequest, RequestOptions.DEFAULT);
+        SearchResponse searchResponse = CLIENT.search(searchRequest, WireFormat.getDefault().requestOptions());
 
         assertEquals(RestStatus.OK, searchResponse.status());
 
-        List<Order> orders = Arrays.stream(searchResponse.getHits().getHits())
-                .map(searchHit -> ObjectMapperUtil.deserialize(Order.class, searchHit.getSourceAsString()))
-                .collect(Collectors.toList());
+        List<Order> orders = SearchHitDecoder.of(Order.class).decode(searchResponse);
 
         assertEquals(OrderTD.ALL_ORDERED, orders);
     }
@@ -149,13 +150,11 @@ public class BeanRelationClientTest extends Assert
 
         // http://localhost:9200/orders/_search?pre_filter_shard_size=128&typed_keys=true&max_concurrent_shard_requests=5&ignore_unavailable=false&expand_wildcards=open&allow_no_indices=true&ignore_throttled=true&request_cache=false&search_type=query_then_fetch&batched_reduce_size=512&ccs_minimize_roundtrips=true
         // POST: {"query":{"match_all":{"boost":1.0}},"post_filter":{"term":{"orderItems.article.id":{"value":1,"boost":1.0}}},"sort":[{"id":{"order":"asc"}}]}
-        SearchResponse searchResponse = CLIENT.search(searchRequest, RequestOptions.DEFAULT);
+        SearchResponse searchResponse = CLIENT.search(searchRequest, WireFormat.getDefault().requestOptions());
 
         assertEquals(RestStatus.OK, searchResponse.status());
 
-        List<Order> orders = Arrays.stream(searchResponse.getHits().getHits())
-                .map(searchHit -> ObjectMapperUtil.deserialize(Order.class, searchHit.getSourceAsString()))
-                .collect(Collectors.toList());
+        List<Order> orders = SearchHitDecoder.of(Order.class).decode(searchResponse);
 
         assertEquals(Arrays.asList(OrderTD.ORDER1, OrderTD.ORDER3), orders);
     }
@@ -172,14 +171,34 @@ public class BeanRelationClientTest extends Assert
 
         // http://localhost:9200/orders/_search?pre_filter_shard_size=128&typed_keys=true&max_concurrent_shard_requests=5&ignore_unavailable=false&expand_wildcards=open&allow_no_indices=true&ignore_throttled=true&request_cache=false&search_type=query_then_fetch&batched_reduce_size=512&ccs_minimize_roundtrips=true
         // POST: {"query":{"term":{"orderItems.article.id":{"value":1,"boost":1.0}}}}
-        SearchResponse searchResponse = CLIENT.search(searchRequest, RequestOptions.DEFAULT);
+        SearchResponse searchResponse = CLIENT.search(searchRequest, WireFormat.getDefault().requestOptions());
 
         assertEquals(RestStatus.OK, searchResponse.status());
 
-        List<Order> orders = Arrays.stream(searchResponse.getHits().getHits())
-                .map(searchHit -> ObjectMapperUtil.deserialize(Order.class, searchHit.getSourceAsString()))
-                .collect(Collectors.toList());
+        List<Order> orders = SearchHitDecoder.of(Order.class).decode(searchResponse);
 
         assertEquals(Arrays.asList(OrderTD.ORDER1, OrderTD.ORDER3), orders);
     }
+
+    @Test
+    public void testSortByTotalAmount() throws Exception
+    {
+        // Fetch orders with total amount more than 5.00, the most expensive first
+        final SearchRequest searchRequest = new SearchRequest()
+                .indices(ORDER_INDEX)
+                .requestCache(false)
+                .source(new SearchSourceBuilder()
+                        .query(QueryBuilders.rangeQuery("totalAmount").gt("5.00"))
+                        .sort(new FieldSortBuilder("totalAmount").order(SortOrder.DESC)));
+
+        // POST: {"query":{"range":{"totalAmount":{"from":"5.00","to":null,"include_lower":false,"include_upper":true,"boost":1.0}}},"sort":[{"totalAmount":{"order":"desc"}}]}
+        SearchResponse searchResponse = CLIENT.search(searchRequest, WireFormat.getDefault().requestOptions());
+
+        assertEquals(RestStatus.OK, searchResponse.status());
+
+        List<Order> orders = SearchHitDecoder.of(Order.class).decode(searchResponse);
+
+        // 2 * 3.03 and 5 * 1.01
+        assertEquals(Arrays.asList(OrderTD.ORDER2, OrderTD.ORDER3), orders);
+    }
 }
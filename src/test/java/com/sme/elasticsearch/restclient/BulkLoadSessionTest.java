@@ -0,0 +1,124 @@
+package com.sme.elasticsearch.restclient;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.core.CountRequest;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sme.elasticsearch.bulk.BulkIndexer;
+import com.sme.elasticsearch.bulk.BulkIndexerSettings;
+import com.sme.elasticsearch.index.BulkLoadSession;
+import com.sme.elasticsearch.td.TestDataGenerator;
+
+/**
+ * Unit tests of {@link BulkLoadSession}.
+ */
+public class BulkLoadSessionTest extends Assert
+{
+    private static final String INDEX = "bulk_load_products";
+    private static final RestHighLevelClient CLIENT = new RestHighLevelClient(RestClient.builder(new HttpHost("localhost", 9200, "http")));
+
+    private Path stateDirectory;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        if (CLIENT.indices().exists(new GetIndexRequest(INDEX), RequestOptions.DEFAULT))
+        {
+            CLIENT.indices().delete(new DeleteIndexRequest(INDEX), RequestOptions.DEFAULT);
+        }
+        CLIENT.indices().create(new CreateIndexRequest(INDEX).settings(Settings.builder()
+                .put("index.refresh_interval", "5s")), RequestOptions.DEFAULT);
+
+        stateDirectory = Files.createTempDirectory("bulk-load");
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception
+    {
+        CLIENT.close();
+    }
+
+    @Test
+    public void testLoad() throws Exception
+    {
+        AtomicInteger failures = new AtomicInteger();
+        BulkIndexerSettings settings = new BulkIndexerSettings();
+        settings.setRefreshPolicy(RefreshPolicy.WAIT_UNTIL);
+        try (BulkLoadSession session = BulkLoadSession.open(CLIENT, stateDirectory, 1, INDEX))
+        {
+            assertEquals("-1", getSetting("index.refresh_interval"));
+            assertEquals("0", getSetting("index.number_of_replicas"));
+
+            BulkIndexer indexer = session.bulkIndexer(settings, new BulkProcessor.Listener()
+            {
+                @Override
+                public void beforeBulk(long executionId, BulkRequest request)
+                {
+                }
+
+                @Override
+                public void afterBulk(long executionId, BulkRequest request, BulkResponse response)
+                {
+                    if (response.hasFailures())
+                    {
+                        failures.incrementAndGet();
+                    }
+                }
+
+                @Override
+                public void afterBulk(long executionId, BulkRequest request, Throwable failure)
+                {
+                    failures.incrementAndGet();
+                }
+            });
+            new TestDataGenerator(1L, 100).products(5000).forEach(p -> indexer.index(INDEX, p));
+        }
+
+        assertEquals(0, failures.get());
+        assertEquals("Expects not changed settings of the caller", RefreshPolicy.WAIT_UNTIL, settings.getRefreshPolicy());
+        assertEquals("5s", getSetting("index.refresh_interval"));
+        assertEquals("Expects replicas set by index creation", "1", getSetting("index.number_of_replicas"));
+        assertEquals(5000, CLIENT.count(new CountRequest(INDEX), RequestOptions.DEFAULT).getCount());
+        assertEquals(0, Files.list(stateDirectory).count());
+    }
+
+    @Test
+    public void testRecover() throws Exception
+    {
+        // Session is not closed like after a crash
+        BulkLoadSession.open(CLIENT, stateDirectory, 0, INDEX);
+        assertEquals("-1", getSetting("index.refresh_interval"));
+
+        assertEquals(1, BulkLoadSession.recover(CLIENT, stateDirectory));
+
+        assertEquals("5s", getSetting("index.refresh_interval"));
+        assertEquals("1", getSetting("index.number_of_replicas"));
+        assertEquals(0, BulkLoadSession.recover(CLIENT, stateDirectory));
+    }
+
+    private static String getSetting(String name) throws Exception
+    {
+        GetSettingsResponse response = CLIENT.indices().getSettings(new GetSettingsRequest().indices(INDEX).names(name), RequestOptions.DEFAULT);
+        return response.getSetting(INDEX, name);
+    }
+}
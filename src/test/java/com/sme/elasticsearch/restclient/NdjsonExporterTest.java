@@ -0,0 +1,80 @@
+package com.sme.elasticsearch.restclient;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sme.elasticsearch.export.NdjsonExporter;
+import com.sme.elasticsearch.model.Product;
+
+import util.ObjectMapperUtil;
+
+/**
+ * Unit tests of {@link NdjsonExporter}.
+ */
+public class NdjsonExporterTest extends AGeneratedIndexTest
+{
+    private static final String INDEX = "export_products";
+    private static final int PRODUCTS = 500;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception
+    {
+        recreateIndex(INDEX, GENERATOR.products(PRODUCTS));
+    }
+
+    @Test
+    public void testExport() throws Exception
+    {
+        assertExport(false);
+    }
+
+    @Test
+    public void testExportGzip() throws Exception
+    {
+        assertExport(true);
+    }
+
+    private void assertExport(boolean gzip) throws Exception
+    {
+        Path directory = Files.createTempDirectory("export");
+        NdjsonExporter.Result result = new NdjsonExporter(client)
+                .setSlices(3)
+                .setPageSize(50)
+                .setGzip(gzip)
+                .export(INDEX, directory);
+
+        assertEquals(PRODUCTS, result.getDocuments());
+        assertEquals(3, result.getFiles().size());
+        assertTrue(result.getDocumentsPerSecond() > 0);
+
+        Set<Integer> ids = new TreeSet<>();
+        for (Path file : result.getFiles())
+        {
+            assertTrue(file.getFileName().toString().endsWith(gzip ? ".ndjson.gz" : ".ndjson"));
+            try (InputStream in = gzip ? new GZIPInputStream(Files.newInputStream(file)) : Files.newInputStream(file);
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)))
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    Product product = ObjectMapperUtil.deserialize(Product.class, line);
+                    assertEquals(GENERATOR.product(product.getId()), product);
+                    assertTrue("Expects a document once", ids.add(product.getId()));
+                }
+            }
+        }
+        assertEquals(IntStream.rangeClosed(1, PRODUCTS).boxed().collect(Collectors.toSet()), ids);
+    }
+}
@@ -0,0 +1,106 @@
+package com.sme.elasticsearch.restclient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.junit.Test;
+
+import com.sme.elasticsearch.model.Article;
+import com.sme.elasticsearch.td.ArticleTD;
+import com.sme.elasticsearch.update.OptimisticUpdater;
+
+/**
+ * Unit tests of {@link OptimisticUpdater} with "articles" index.
+ */
+public class OptimisticUpdaterTest extends AArticleClientTest
+{
+    private static final int THREADS = 4;
+    private static final int UPDATES = 10;
+
+    @Test
+    public void testConcurrentUpdates() throws Exception
+    {
+        OptimisticUpdater<Article> updater = new OptimisticUpdater<>(CLIENT, ARTICLE_INDEX, Article.class).setMaxRetries(100);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try
+        {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++)
+            {
+                futures.add(executor.submit(() ->
+                {
+                    for (int j = 0; j < UPDATES; j++)
+                    {
+                        updater.update("article1", a ->
+                        {
+                            a.setPriceMinor(a.getPriceMinor() + 1);
+                            return a;
+                        });
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures)
+            {
+                future.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        // No increment is lost
+        assertEquals(ArticleTD.ARTICLE1.getPriceMinor() + THREADS * UPDATES, updater.get("article1").getEntity().getPriceMinor());
+    }
+
+    @Test
+    public void testUpdateAll() throws Exception
+    {
+        OptimisticUpdater<Article> updater = new OptimisticUpdater<>(CLIENT, ARTICLE_INDEX, Article.class).setBulkSize(2);
+        AtomicBoolean concurrentWrite = new AtomicBoolean();
+
+        Map<String, Article> updated = updater.updateAll(Arrays.asList("article1", "article2", "article3", "article4"), a ->
+        {
+            if (a == null)
+            {
+                // Not existing document is skipped
+                return null;
+            }
+
+            if (a.getId() == 2 && concurrentWrite.compareAndSet(false, true))
+            {
+                try
+                {
+                    // Another writer changes the document after it was read
+                    CLIENT.update(new UpdateRequest(ARTICLE_INDEX, "article2").doc("{\"description\":\"changed\"}", XContentType.JSON), RequestOptions.DEFAULT);
+                }
+                catch (Exception e)
+                {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            a.setName(a.getName().toUpperCase());
+            return a;
+        });
+
+        assertEquals(Arrays.asList("article1", "article2", "article3"), new ArrayList<>(updated.keySet()));
+        assertEquals(1, updater.getConflicts());
+
+        Article article2 = updater.get("article2").getEntity();
+        assertEquals("Expects the concurrent change", "changed", article2.getDescription());
+        assertEquals(ArticleTD.ARTICLE2.getName().toUpperCase(), article2.getName());
+    }
+}
@@ -27,6 +27,7 @@ import org.elasticsearch.client.indices.GetIndexRequest;
 import org.elasticsearch.client.indices.GetMappingsRequest;
 import org.elasticsearch.client.indices.GetMappingsResponse;
 import org.elasticsearch.client.indices.PutMappingRequest;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.MultiMatchQueryBuilder;
@@ -42,9 +43,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.sme.elasticsearch.model.Product;
+import com.sme.elasticsearch.model.ProductSummary;
 import com.sme.elasticsearch.td.ProductTD;
 
 import util.ObjectMapperUtil;
+import util.SearchHitDecoder;
+import util.SourceProjection;
+import util.WireFormat;
 
 /**
  * <p>
@@ -85,14 +90,15 @@ public class ProductClientTest extends Assert
         assertTrue("Expects creeated mapping", getMappingsResponse.mappings().size() >= 1);
 
         // Create data
-        String product1 = ObjectMapperUtil.serialize(ProductTD.PRODUCT1);
-        String product2 = ObjectMapperUtil.serialize(ProductTD.PRODUCT2);
-        String product3 = ObjectMapperUtil.serialize(ProductTD.PRODUCT3);
+        WireFormat format = WireFormat.getDefault();
+        BytesReference product1 = ObjectMapperUtil.serializeToBytes(ProductTD.PRODUCT1, format);
+        BytesReference product2 = ObjectMapperUtil.serializeToBytes(ProductTD.PRODUCT2, format);
+        BytesReference product3 = ObjectMapperUtil.serializeToBytes(ProductTD.PRODUCT3, format);
 
         final BulkRequest bulkRequest = new BulkRequest()
-                .add(new IndexRequest().index(PRODUCT_INDEX).id("product1").source(product1, XContentType.JSON))
-                .add(new IndexRequest().index(PRODUCT_INDEX).id("product2").source(product2, XContentType.JSON))
-                .add(new IndexRequest().index(PRODUCT_INDEX).id("product3").source(product3, XContentType.JSON))
+                .add(new IndexRequest().index(PRODUCT_INDEX).id("product1").source(product1, format.xContentType()))
+                .add(new IndexRequest().index(PRODUCT_INDEX).id("product2").source(product2, format.xContentType()))
+                .add(new IndexRequest().index(PRODUCT_INDEX).id("product3").source(product3, format.xContentType()))
                 .setRefreshPolicy(RefreshPolicy.IMMEDIATE);
 
         BulkResponse response = CLIENT.bulk(bulkRequest, RequestOptions.DEFAULT);
@@ -120,13 +126,11 @@ public class ProductClientTest extends Assert
                         .query(QueryBuilders.matchAllQuery())
                         .sort(new FieldSortBuilder("id").order(SortOrder.ASC)));
 
-        SearchResponse searchResponse = CLIENT.search(searchRequest, RequestOptions.DEFAULT);
+        SearchResponse searchResponse = CLIENT.search(searchRequest, WireFormat.getDefault().requestOptions());
 
         assertEquals(RestStatus.OK, searchResponse.status());
 
-        List<Product> products = Arrays.stream(searchResponse.getHits().getHits())
-                .map(searchHit -> ObjectMapperUtil.deserialize(Product.class, searchHit.getSourceAsString()))
-                .collect(Collectors.toList());
+        List<Product> products = SearchHitDecoder.of(Product.class).decode(searchResponse);
 
         assertEquals(ProductTD.ALL_ORDERED, products);
     }
@@ -143,13 +147,11 @@ public class ProductClientTest extends Assert
                                 .lt(Timestamp.valueOf(LocalDateTime.now()).getTime()))
                         .sort(new FieldSortBuilder("id").order(SortOrder.ASC)));
 
-        SearchResponse searchResponse = CLIENT.search(searchRequest, RequestOptions.DEFAULT);
+        SearchResponse searchResponse = CLIENT.search(searchRequest, WireFormat.getDefault().requestOptions());
 
         assertEquals(RestStatus.OK, searchResponse.status());
 
-        List<Product> products = Arrays.stream(searchResponse.getHits().getHits())
-                .map(searchHit -> ObjectMapperUtil.deserialize(Product.class, searchHit.getSourceAsString()))
-                .collect(Collectors.toList());
+        List<Product> products = SearchHitDecoder.of(Product.class).decode(searchResponse);
 
         assertEquals(Arrays.asList(ProductTD.PRODUCT1), products);
     }
@@ -166,13 +168,11 @@ public class ProductClientTest extends Assert
                                 .field("description"))
                         .sort(new FieldSortBuilder("id").order(SortOrder.ASC)));
 
-        SearchResponse searchResponse = CLIENT.search(searchRequest, RequestOptions.DEFAULT);
+        SearchResponse searchResponse = CLIENT.search(searchRequest, WireFormat.getDefault().requestOptions());
 
         assertEquals(RestStatus.OK, searchResponse.status());
 
-        List<Product> products = Arrays.stream(searchResponse.getHits().getHits())
-                .map(searchHit -> ObjectMapperUtil.deserialize(Product.class, searchHit.getSourceAsString()))
-                .collect(Collectors.toList());
+        List<Product> products = SearchHitDecoder.of(Product.class).decode(searchResponse);
 
         assertEquals(Arrays.asList(ProductTD.PRODUCT1), products);
     }
@@ -190,14 +190,38 @@ public class ProductClientTest extends Assert
                                 .should(QueryBuilders.wildcardQuery("name", "Samsung")))
                         .sort(new FieldSortBuilder("id").order(SortOrder.ASC)));
 
-        SearchResponse searchResponse = CLIENT.search(searchRequest, RequestOptions.DEFAULT);
+        SearchResponse searchResponse = CLIENT.search(searchRequest, WireFormat.getDefault().requestOptions());
 
         assertEquals(RestStatus.OK, searchResponse.status());
 
-        List<Product> products = Arrays.stream(searchResponse.getHits().getHits())
-                .map(searchHit -> ObjectMapperUtil.deserialize(Product.class, searchHit.getSourceAsString()))
-                .collect(Collectors.toList());
+        List<Product> products = SearchHitDecoder.of(Product.class).decode(searchResponse);
 
         assertEquals(Arrays.asList(ProductTD.PRODUCT1, ProductTD.PRODUCT2), products);
     }
+
+    @Test
+    public void testProjection() throws Exception
+    {
+        final SearchRequest searchRequest = new SearchRequest()
+                .indices(PRODUCT_INDEX)
+                .requestCache(false)
+                .source(SourceProjection.of(ProductSummary.class).apply(new SearchSourceBuilder()
+                        .query(QueryBuilders.matchAllQuery())
+                        .sort(new FieldSortBuilder("id").order(SortOrder.ASC))));
+
+        // Body: {"query":{"match_all":{"boost":1.0}},"_source":{"includes":["id","name","price","productType"],"excludes":[]},"sort":[{"id":{"order":"asc"}}]}
+        SearchResponse searchResponse = CLIENT.search(searchRequest, WireFormat.getDefault().requestOptions());
+
+        assertEquals(RestStatus.OK, searchResponse.status());
+
+        List<ProductSummary> summaries = SearchHitDecoder.of(ProductSummary.class).decode(searchResponse);
+        assertEquals(ProductTD.ALL_ORDERED.stream().map(Product::getName).collect(Collectors.toList()),
+                summaries.stream().map(ProductSummary::getName).collect(Collectors.toList()));
+
+        // Model class gets projected fields only
+        Product product = SearchHitDecoder.of(Product.class).decode(searchResponse.getHits().getAt(0));
+        assertEquals(ProductTD.PRODUCT1.getName(), product.getName());
+        assertNull(product.getDescription());
+        assertNull(product.getImage());
+    }
 }
@@ -0,0 +1,103 @@
+package com.sme.elasticsearch.restclient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import org.apache.http.HttpHost;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sme.elasticsearch.model.Article;
+import com.sme.elasticsearch.model.Order;
+import com.sme.elasticsearch.repository.ArticleRepository;
+import com.sme.elasticsearch.repository.AsyncLimiter;
+import com.sme.elasticsearch.repository.OrderRepository;
+import com.sme.elasticsearch.td.ArticleTD;
+import com.sme.elasticsearch.td.OrderTD;
+
+/**
+ * Unit tests of asynchronous repositories.
+ */
+public class RepositoryTest extends Assert
+{
+    private static final String ARTICLE_INDEX = "repository_articles";
+    private static final String ORDER_INDEX = "repository_orders";
+    private static final RestHighLevelClient CLIENT = new RestHighLevelClient(RestClient.builder(new HttpHost("localhost", 9200, "http")));
+
+    private final AsyncLimiter limiter = new AsyncLimiter(16);
+    private final ArticleRepository articles = new ArticleRepository(CLIENT, ARTICLE_INDEX, limiter);
+    private final OrderRepository orders = new OrderRepository(CLIENT, ORDER_INDEX, limiter);
+
+    @Before
+    public void setUp() throws Exception
+    {
+        for (String index : new String[] {ARTICLE_INDEX, ORDER_INDEX})
+        {
+            if (CLIENT.indices().exists(new GetIndexRequest(index), RequestOptions.DEFAULT))
+            {
+                CLIENT.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+            }
+        }
+
+        articles.setRefreshPolicy(RefreshPolicy.IMMEDIATE);
+        orders.setRefreshPolicy(RefreshPolicy.IMMEDIATE);
+
+        BulkResponse articleResponse = articles.saveAll(ArticleTD.ALL_ORDERED).get();
+        BulkResponse orderResponse = orders.saveAll(OrderTD.ALL_ORDERED).get();
+        assertFalse(articleResponse.buildFailureMessage(), articleResponse.hasFailures());
+        assertFalse(orderResponse.buildFailureMessage(), orderResponse.hasFailures());
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception
+    {
+        CLIENT.close();
+    }
+
+    @Test
+    public void testFanOut() throws Exception
+    {
+        List<CompletableFuture<Article>> futures = new ArrayList<>();
+        for (int i = 0; i < 300; i++)
+        {
+            futures.add(articles.findById(i % 3 + 1));
+        }
+        assertTrue("Expects limited in-flight requests", limiter.getInFlight() <= 16);
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        for (int i = 0; i < futures.size(); i++)
+        {
+            assertEquals(ArticleTD.ALL_ORDERED.get(i % 3), futures.get(i).get());
+        }
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testCompose() throws Exception
+    {
+        // Orders of the article found by text
+        List<Order> found = articles.findByText("name3", 10)
+                .thenCompose(list -> orders.findByArticle(list.get(0).getId(), 10))
+                .get();
+        assertEquals(Arrays.asList(OrderTD.ORDER2), found);
+
+        assertEquals(Arrays.asList(ArticleTD.ARTICLE1, ArticleTD.ARTICLE3), articles.findByIds(Arrays.asList(1, 3, 4)).get());
+        assertNull(articles.findById(4).get());
+
+        assertTrue(articles.delete(1).get());
+        assertFalse(articles.delete(1).get());
+        assertEquals(Arrays.asList(2, 3), articles.findByIds(Arrays.asList(1, 2, 3)).get().stream().map(Article::getId).collect(Collectors.toList()));
+    }
+}
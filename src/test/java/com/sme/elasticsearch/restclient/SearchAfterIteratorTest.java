@@ -0,0 +1,71 @@
+package com.sme.elasticsearch.restclient;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.elasticsearch.index.query.QueryBuilders;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sme.elasticsearch.model.Article;
+import com.sme.elasticsearch.search.SearchAfterIterator;
+
+/**
+ * Unit tests of {@link SearchAfterIterator}.
+ */
+public class SearchAfterIteratorTest extends AGeneratedIndexTest
+{
+    private static final String INDEX = "search_after_articles";
+    private static final int ARTICLES = 1050;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception
+    {
+        recreateIndex(INDEX, GENERATOR.articles(ARTICLES));
+    }
+
+    @Test
+    public void testAllPages() throws Exception
+    {
+        try (Stream<Article> articles = SearchAfterIterator.stream(client, INDEX, QueryBuilders.matchAllQuery(), Article.class, 100))
+        {
+            List<Integer> ids = articles.map(Article::getId).collect(Collectors.toList());
+            assertEquals(IntStream.rangeClosed(1, ARTICLES).boxed().collect(Collectors.toList()), ids);
+        }
+    }
+
+    @Test
+    public void testQuery() throws Exception
+    {
+        try (Stream<Article> articles = SearchAfterIterator.stream(client, INDEX, QueryBuilders.termQuery("active", true), Article.class, 100))
+        {
+            assertEquals(GENERATOR.articles(ARTICLES).filter(Article::isActive).collect(Collectors.toList()), articles.collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testPartialConsumption() throws Exception
+    {
+        try (SearchAfterIterator<Article> iterator = new SearchAfterIterator<>(client, INDEX, QueryBuilders.matchAllQuery(), Article.class, 100))
+        {
+            for (int i = 1; i <= 150; i++)
+            {
+                assertEquals(i, iterator.next().getId());
+            }
+
+            iterator.close();
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception
+    {
+        try (SearchAfterIterator<Article> iterator = new SearchAfterIterator<>(client, INDEX, QueryBuilders.termQuery("id", -1), Article.class, 100))
+        {
+            assertFalse(iterator.hasNext());
+        }
+    }
+}
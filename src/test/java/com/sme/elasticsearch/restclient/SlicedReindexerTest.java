@@ -0,0 +1,87 @@
+package com.sme.elasticsearch.restclient;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.elasticsearch.action.admin.indices.refresh.RefreshRequest;
+import org.elasticsearch.action.get.GetRequest;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.core.CountRequest;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sme.elasticsearch.index.SlicedReindexer;
+import com.sme.elasticsearch.model.Product;
+
+import util.ObjectMapperUtil;
+import util.WireFormat;
+
+/**
+ * Unit tests of {@link SlicedReindexer}.
+ */
+public class SlicedReindexerTest extends AGeneratedIndexTest
+{
+    private static final String SOURCE_INDEX = "reindex_products_source";
+    private static final String TARGET_INDEX = "reindex_products_target";
+    private static final int PRODUCTS = 500;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        deleteIndex(TARGET_INDEX);
+        recreateIndex(SOURCE_INDEX, GENERATOR.products(PRODUCTS));
+    }
+
+    @Test
+    public void testReindexWithTransform() throws Exception
+    {
+        Path checkpointDirectory = Files.createTempDirectory("reindex");
+        long copied = new SlicedReindexer(client, SOURCE_INDEX, TARGET_INDEX)
+                .setSlices(3)
+                .setPageSize(50)
+                .setDocumentsPerSecond(5000)
+                .setCheckpointDirectory(checkpointDirectory)
+                .setQuery(QueryBuilders.termQuery("active", true))
+                .setTransform(Product.class, p ->
+                {
+                    p.setName(p.getName().toUpperCase());
+                    return p;
+                })
+                .reindex();
+
+        long active = GENERATOR.products(PRODUCTS).filter(Product::isActive).count();
+        assertEquals(active, copied);
+
+        client.indices().refresh(new RefreshRequest(TARGET_INDEX), RequestOptions.DEFAULT);
+        assertEquals(active, client.count(new CountRequest(TARGET_INDEX), RequestOptions.DEFAULT).getCount());
+        assertEquals("Expects deleted checkpoints", 0, Files.list(checkpointDirectory).count());
+
+        Product expected = GENERATOR.products(PRODUCTS).filter(Product::isActive).findFirst().get();
+        Product product = ObjectMapperUtil.readerFor(Product.class, WireFormat.getDefault())
+                .readValue(client.get(new GetRequest(TARGET_INDEX, String.valueOf(expected.getId())), RequestOptions.DEFAULT).getSourceAsBytes());
+        assertEquals(expected.getName().toUpperCase(), product.getName());
+    }
+
+    @Test
+    public void testResume() throws Exception
+    {
+        Path checkpointDirectory = Files.createTempDirectory("reindex");
+        // The first slice is copied up to id 100 by a failed run, the second slice is completed
+        Files.write(checkpointDirectory.resolve("reindex-" + SOURCE_INDEX + "-" + TARGET_INDEX + "-0-of-2.properties"), "last=100\n".getBytes());
+        Files.write(checkpointDirectory.resolve("reindex-" + SOURCE_INDEX + "-" + TARGET_INDEX + "-1-of-2.properties"), "done=true\n".getBytes());
+
+        long copied = new SlicedReindexer(client, SOURCE_INDEX, TARGET_INDEX)
+                .setSlices(2)
+                .setCheckpointDirectory(checkpointDirectory)
+                .reindex();
+
+        assertTrue("Expects only rest of the first slice, but " + copied, copied > 0 && copied < PRODUCTS / 2);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoDocumentsPerSecond() throws Exception
+    {
+        new SlicedReindexer(client, SOURCE_INDEX, TARGET_INDEX).setDocumentsPerSecond(0);
+    }
+}
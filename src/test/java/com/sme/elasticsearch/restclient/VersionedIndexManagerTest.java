@@ -0,0 +1,158 @@
+package com.sme.elasticsearch.restclient;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpHost;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.client.core.CountRequest;
+import org.elasticsearch.client.indices.CreateIndexRequest;
+import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sme.elasticsearch.index.VersionedIndexManager;
+import com.sme.elasticsearch.td.TestDataGenerator;
+
+/**
+ * Unit tests of {@link VersionedIndexManager}.
+ */
+public class VersionedIndexManagerTest extends Assert
+{
+    private static final String ALIAS = "versioned_products";
+    private static final RestHighLevelClient CLIENT = new RestHighLevelClient(RestClient.builder(new HttpHost("localhost", 9200, "http")));
+
+    private final TestDataGenerator generator = new TestDataGenerator(1L, 100);
+    private VersionedIndexManager manager;
+    private String mapping;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        for (String index : new String[] {ALIAS, ALIAS + "_v*"})
+        {
+            if (CLIENT.indices().exists(new GetIndexRequest(index), RequestOptions.DEFAULT))
+            {
+                CLIENT.indices().delete(new DeleteIndexRequest(index), RequestOptions.DEFAULT);
+            }
+        }
+
+        String fileName = VersionedIndexManagerTest.class.getClassLoader().getResource("mappings/Product.json").getFile();
+        mapping = FileUtils.readFileToString(new File(fileName), "UTF-8");
+
+        manager = new VersionedIndexManager(CLIENT, ALIAS, Files.createTempDirectory("versioned-index"))
+                .addWarmQuery(new SearchSourceBuilder().query(QueryBuilders.matchAllQuery()).size(0));
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception
+    {
+        CLIENT.close();
+    }
+
+    @Test
+    public void testDeploy() throws Exception
+    {
+        assertNull(manager.getCurrentIndex());
+
+        String v1 = manager.deploy(mapping, (index, indexer) -> generator.products(100).forEach(p -> indexer.index(index, p)));
+        assertEquals(ALIAS + "_v1", v1);
+        assertEquals(v1, manager.getCurrentIndex());
+        assertEquals(100, count(ALIAS));
+
+        String v2 = manager.deploy(mapping, (index, indexer) -> generator.products(150).forEach(p -> indexer.index(index, p)));
+        assertEquals(ALIAS + "_v2", v2);
+        assertEquals(v2, manager.getCurrentIndex());
+        assertEquals(150, count(ALIAS));
+        assertFalse("Expects deleted old version", CLIENT.indices().exists(new GetIndexRequest(v1), RequestOptions.DEFAULT));
+
+        // The alias is the write index
+        CLIENT.index(new IndexRequest(ALIAS).id("1000").source("id", 1000).setRefreshPolicy(RefreshPolicy.IMMEDIATE), RequestOptions.DEFAULT);
+        assertEquals(151, count(v2));
+    }
+
+    @Test
+    public void testWritesDuringLoad() throws Exception
+    {
+        String v1 = manager.deploy(mapping, (index, indexer) -> generator.products(10).forEach(p -> indexer.index(index, p)));
+
+        String v2 = manager.deploy(mapping, (index, indexer) ->
+        {
+            generator.products(10).forEach(p -> indexer.index(index, p));
+            try
+            {
+                // The write would be lost with the old version
+                CLIENT.index(new IndexRequest(ALIAS).id("1000").source("id", 1000), RequestOptions.DEFAULT);
+                fail("Expects blocked writes into the old version");
+            }
+            catch (ElasticsearchStatusException e)
+            {
+                assertEquals(RestStatus.FORBIDDEN, e.status());
+            }
+
+            // A newer version of a concurrent deploy
+            CLIENT.indices().create(new CreateIndexRequest(ALIAS + "_v3"), RequestOptions.DEFAULT);
+        });
+
+        assertEquals(v2, manager.getCurrentIndex());
+        assertFalse("Expects deleted old version", CLIENT.indices().exists(new GetIndexRequest(v1), RequestOptions.DEFAULT));
+        assertTrue("Expects kept newer version", CLIENT.indices().exists(new GetIndexRequest(ALIAS + "_v3"), RequestOptions.DEFAULT));
+    }
+
+    @Test
+    public void testFailedLoad() throws Exception
+    {
+        String v1 = manager.deploy(mapping, (index, indexer) -> generator.products(10).forEach(p -> indexer.index(index, p)));
+
+        try
+        {
+            // The strict mapping rejects unknown fields
+            manager.deploy(mapping, (index, indexer) -> indexer.add(new IndexRequest(index).id("1").source("unknown", "value")));
+            fail("Expects failed load");
+        }
+        catch (IllegalStateException e)
+        {
+            assertTrue(e.getMessage().contains("Cannot load 1 documents"));
+        }
+
+        assertEquals(v1, manager.getCurrentIndex());
+        assertFalse("Expects deleted failed version", CLIENT.indices().exists(new GetIndexRequest(ALIAS + "_v2"), RequestOptions.DEFAULT));
+        assertEquals(10, count(ALIAS));
+
+        // The old version is unblocked by removing the setting
+        GetSettingsResponse settings = CLIENT.indices().getSettings(new GetSettingsRequest().indices(v1).names("index.blocks.write"), RequestOptions.DEFAULT);
+        assertNull(settings.getSetting(v1, "index.blocks.write"));
+        CLIENT.index(new IndexRequest(ALIAS).id("1000").source("id", 1000).setRefreshPolicy(RefreshPolicy.IMMEDIATE), RequestOptions.DEFAULT);
+        assertEquals(11, count(ALIAS));
+    }
+
+    @Test
+    public void testReplacePhysicalIndex() throws Exception
+    {
+        CLIENT.indices().create(new CreateIndexRequest(ALIAS), RequestOptions.DEFAULT);
+
+        String v1 = manager.deploy(mapping, (index, indexer) -> generator.products(10).forEach(p -> indexer.index(index, p)));
+
+        assertEquals(v1, manager.getCurrentIndex());
+        assertEquals(10, count(ALIAS));
+    }
+
+    private static long count(String index) throws Exception
+    {
+        return CLIENT.count(new CountRequest(index), RequestOptions.DEFAULT).getCount();
+    }
+}
@@ -0,0 +1,137 @@
+package com.sme.elasticsearch.search;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link SearchResultCache}.
+ */
+public class SearchResultCacheTest extends Assert
+{
+    private static final String[] PRODUCTS = {"products"};
+
+    private final AtomicLong clock = new AtomicLong();
+    private final SearchResultCache cache = new SearchResultCache(2, 10, TimeUnit.SECONDS, clock::get);
+
+    @Test
+    public void testHitAndTtl() throws Exception
+    {
+        SearchResponse response = response();
+        cache.put(PRODUCTS, query("computure"), cache.generations(PRODUCTS), response);
+
+        // Equal source built by other instance
+        assertSame(response, cache.get(PRODUCTS, query("computure")));
+        assertNull(cache.get(PRODUCTS, query("motherboard")));
+        assertNull(cache.get(new String[] {"articles"}, query("computure")));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(11));
+        assertNull("Expects expired response", cache.get(PRODUCTS, query("computure")));
+        assertEquals(0, cache.size());
+
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(0.25d, cache.getHitRatio(), 0d);
+    }
+
+    @Test
+    public void testLru() throws Exception
+    {
+        cache.put(PRODUCTS, query("a"), cache.generations(PRODUCTS), response());
+        cache.put(PRODUCTS, query("b"), cache.generations(PRODUCTS), response());
+        assertNotNull(cache.get(PRODUCTS, query("a")));
+        cache.put(PRODUCTS, query("c"), cache.generations(PRODUCTS), response());
+
+        assertNull("Expects evicted least recently used", cache.get(PRODUCTS, query("b")));
+        assertNotNull(cache.get(PRODUCTS, query("a")));
+        assertNotNull(cache.get(PRODUCTS, query("c")));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testInvalidation() throws Exception
+    {
+        String[] indices = {"products", "articles"};
+        cache.put(indices, query("a"), cache.generations(indices), response());
+        assertNotNull("Expects the same indices in other order", cache.get(new String[] {"articles", "products"}, query("a")));
+
+        cache.invalidate(new IndexRequest("articles").id("1"));
+        assertNull(cache.get(indices, query("a")));
+
+        // Written during the search
+        long[] generations = cache.generations(PRODUCTS);
+        cache.invalidate("products");
+        cache.put(PRODUCTS, query("a"), generations, response());
+        assertEquals(0, cache.size());
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        cache.put(PRODUCTS, query("a"), cache.generations(PRODUCTS), response());
+        assertNotNull(cache.get(PRODUCTS, query("a")));
+        BulkRequest bulkRequest = new BulkRequest().add(new IndexRequest("products").id("1").source("id", 1));
+        cache.listener(new BulkProcessor.Listener()
+        {
+            @Override
+            public void beforeBulk(long executionId, BulkRequest request)
+            {
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, BulkResponse response)
+            {
+            }
+
+            @Override
+            public void afterBulk(long executionId, BulkRequest request, Throwable failure)
+            {
+            }
+        }).afterBulk(1L, bulkRequest, new BulkResponse(new BulkItemResponse[0], 1L));
+        assertNull(cache.get(PRODUCTS, query("a")));
+    }
+
+    @Test
+    public void testRefreshInterval() throws Exception
+    {
+        cache.invalidate("products");
+        // The response can miss written documents
+        cache.put(PRODUCTS, query("a"), cache.generations(PRODUCTS), response());
+        assertEquals(0, cache.size());
+
+        // Read before the refresh, received after it
+        long[] generations = cache.generations(PRODUCTS);
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        cache.put(PRODUCTS, query("a"), generations, response());
+        assertEquals(0, cache.size());
+
+        cache.put(PRODUCTS, query("a"), cache.generations(PRODUCTS), response());
+        assertNotNull(cache.get(PRODUCTS, query("a")));
+
+        // Written documents are visible after the write
+        cache.invalidate("products", RefreshPolicy.WAIT_UNTIL);
+        assertNull(cache.get(PRODUCTS, query("a")));
+        cache.put(PRODUCTS, query("a"), cache.generations(PRODUCTS), response());
+        assertNotNull(cache.get(PRODUCTS, query("a")));
+    }
+
+    private static SearchSourceBuilder query(String text)
+    {
+        return new SearchSourceBuilder().query(QueryBuilders.matchQuery("name", text)).size(10);
+    }
+
+    private static SearchResponse response()
+    {
+        return new SearchResponse(InternalSearchResponse.empty(), null, 1, 1, 0, 1L, ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY);
+    }
+}
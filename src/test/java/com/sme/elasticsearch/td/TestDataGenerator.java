@@ -0,0 +1,199 @@
+package com.sme.elasticsearch.td;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import com.sme.elasticsearch.model.Article;
+import com.sme.elasticsearch.model.Order;
+import com.sme.elasticsearch.model.OrderItem;
+import com.sme.elasticsearch.model.Product;
+
+import util.PojoGenericBuilder;
+
+/**
+ * <p>
+ * Seeded generator of high volume test data.
+ * </p>
+ * Every instance is a pure function of the seed and its id, so streams are lazy, hold no generated data and can be processed in parallel:
+ * <ul>
+ * <li>prices follow log-normal distribution with median about 20.00;</li>
+ * <li>orders have 1 + geometric number of items, popular articles are ordered more often (log-uniform article ids);</li>
+ * <li>product types are skewed the same way as articles.</li>
+ * </ul>
+ * Orders refer to articles of {@link #articles(int)} stream with the same seed and catalog size.
+ */
+public class TestDataGenerator
+{
+    // Fixed base to get the same dates in every run
+    private static final long BASE_DATE = 1588291200000L; // 2020-05-01
+    private static final int PRODUCT_TYPES = 20;
+    private static final int MAX_ORDER_ITEMS = 50;
+
+    private static final String[] ADJECTIVES = {"Black", "White", "Red", "Wireless", "Portable", "Compact", "Gaming", "Office", "Smart", "Classic"};
+    private static final String[] NOUNS = {"keyboard", "mouse", "monitor", "computure", "motherboard", "bag", "headset", "cable", "charger", "speaker"};
+
+    private static final long ARTICLE_SALT = 0x41L;
+    private static final long PRODUCT_SALT = 0x50L;
+    private static final long ORDER_SALT = 0x4FL;
+
+    private final long seed;
+    private final int catalogSize;
+
+    /**
+     * Create generator.
+     *
+     * @param seed The seed of all generated data;
+     * @param catalogSize The number of articles referred by orders.
+     */
+    public TestDataGenerator(long seed, int catalogSize)
+    {
+        this.seed = seed;
+        this.catalogSize = catalogSize;
+    }
+
+    /**
+     * Lazy stream of articles with 1..count ids.
+     *
+     * @param count The number of articles;
+     * @return Returns stream of articles.
+     */
+    public Stream<Article> articles(int count)
+    {
+        return IntStream.rangeClosed(1, count).mapToObj(this::article);
+    }
+
+    /**
+     * Lazy stream of products with 1..count ids.
+     *
+     * @param count The number of products;
+     * @return Returns stream of products.
+     */
+    public Stream<Product> products(int count)
+    {
+        return IntStream.rangeClosed(1, count).mapToObj(this::product);
+    }
+
+    /**
+     * Lazy stream of orders with 1..count ids.
+     *
+     * @param count The number of orders;
+     * @return Returns stream of orders.
+     */
+    public Stream<Order> orders(int count)
+    {
+        return IntStream.rangeClosed(1, count).mapToObj(this::order);
+    }
+
+    /**
+     * Generate article with the given id.
+     *
+     * @param id The id of article;
+     * @return Returns article.
+     */
+    public Article article(int id)
+    {
+        Random random = random(ARTICLE_SALT, id);
+        String name = name(random);
+        return new PojoGenericBuilder<>(Article::new)
+                .with(Article::setId, id)
+                .with(Article::setName, name + " " + id)
+                .with(Article::setDescription, description(random, name))
+                .with(Article::setPriceMinor, priceMinor(random))
+                .with(Article::setActive, random.nextInt(10) != 0)
+                .build();
+    }
+
+    /**
+     * Generate product with the given id.
+     *
+     * @param id The id of product;
+     * @return Returns product.
+     */
+    public Product product(int id)
+    {
+        Random random = random(PRODUCT_SALT, id);
+        String name = name(random);
+        long price = priceMinor(random);
+        return new PojoGenericBuilder<>(Product::new)
+                .with(Product::setId, id)
+                .with(Product::setName, name + " " + id)
+                .with(Product::setDescription, description(random, name))
+                .with(Product::setCreatedDate, new Date(BASE_DATE - TimeUnit.MINUTES.toMillis(random.nextInt(365 * 24 * 60))))
+                .with(Product::setPriceMinor, price)
+                .with(Product::setActive, random.nextInt(10) != 0)
+                .with(Product::setProductType, "Type" + skewed(random, PRODUCT_TYPES))
+                .with(Product::setTotalMinor, price + price / 5)
+                .with(Product::setImage, "http://localhost:8080/resources/image" + id + ".gif")
+                .build();
+    }
+
+    /**
+     * Generate order with the given id.
+     *
+     * @param id The id of order;
+     * @return Returns order.
+     */
+    public Order order(int id)
+    {
+        Random random = random(ORDER_SALT, id);
+        Order order = new PojoGenericBuilder<>(Order::new)
+                .with(Order::setId, id)
+                .with(Order::setOrderNo, "order" + id)
+                .build();
+
+        int items = Math.min(MAX_ORDER_ITEMS, 1 + geometric(random, 0.35d));
+        for (int i = 1; i <= items; i++)
+        {
+            order.addOrderItem(new PojoGenericBuilder<>(OrderItem::new)
+                    .with(OrderItem::setId, i)
+                    .with(OrderItem::setQuantity, 1 + geometric(random, 0.6d))
+                    .with(OrderItem::setArticle, article(skewed(random, catalogSize)))
+                    .build());
+        }
+        return order;
+    }
+
+    private Random random(long salt, int id)
+    {
+        return new Random(mix(seed ^ mix(salt * 0x9E3779B97F4A7C15L + id)));
+    }
+
+    // SplitMix64 finalizer to decorrelate seeds of neighbour ids
+    private static long mix(long value)
+    {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static String name(Random random)
+    {
+        return ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " " + NOUNS[random.nextInt(NOUNS.length)];
+    }
+
+    private static String description(Random random, String name)
+    {
+        return name + ", " + (1 << random.nextInt(7)) + "GB, " + ADJECTIVES[random.nextInt(ADJECTIVES.length)];
+    }
+
+    private static long priceMinor(Random random)
+    {
+        // log-normal with median 20.00
+        return Math.max(1L, Math.round(Math.exp(Math.log(2000d) + random.nextGaussian())));
+    }
+
+    private static int geometric(Random random, double p)
+    {
+        return (int) (Math.log(1d - random.nextDouble()) / Math.log(1d - p));
+    }
+
+    // Log-uniform value in 1..size, small values are much more frequent
+    private static int skewed(Random random, int size)
+    {
+        return Math.min(size, (int) Math.pow(size + 1, random.nextDouble()));
+    }
+}
@@ -0,0 +1,52 @@
+package util;
+
+import java.util.Arrays;
+
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.sme.elasticsearch.model.Order;
+import com.sme.elasticsearch.model.ProductSummary;
+
+/**
+ * Unit tests of {@link SourceProjection}.
+ */
+public class SourceProjectionTest extends Assert
+{
+    @Test
+    public void testViewFields() throws Exception
+    {
+        assertEquals(Arrays.asList("id", "name", "price", "productType"), SourceProjection.of(ProductSummary.class).includes());
+    }
+
+    @Test
+    public void testNestedFields() throws Exception
+    {
+        assertEquals(Arrays.asList("id",
+                "orderItems.article.active",
+                "orderItems.article.description",
+                "orderItems.article.id",
+                "orderItems.article.name",
+                "orderItems.article.price",
+                "orderItems.id",
+                "orderItems.quantity",
+                "orderNo",
+                "totalAmount"),
+                SourceProjection.of(Order.class).includes());
+    }
+
+    @Test
+    public void testApply() throws Exception
+    {
+        SearchSourceBuilder sourceBuilder = SourceProjection.of("orderNo", "orderItems.quantity").apply(new SearchSourceBuilder());
+
+        assertArrayEquals(new String[] {"orderNo", "orderItems.quantity"}, sourceBuilder.fetchSource().includes());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyFields() throws Exception
+    {
+        SourceProjection.of(new String[0]);
+    }
+}